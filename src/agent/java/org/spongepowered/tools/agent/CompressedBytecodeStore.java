@@ -0,0 +1,126 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.tools.agent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Bytecode store which keeps deflated bytecode in memory. Bytecode is only
+ * inflated again when a target is re-transformed
+ */
+class CompressedBytecodeStore implements IBytecodeStore {
+
+    /**
+     * Deflated bytecode and the original length
+     */
+    static final class Entry {
+
+        final byte[] data;
+
+        final int length;
+
+        Entry(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+
+    }
+
+    private final Map<String, Entry> classes = new HashMap<String, Entry>();
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    private final Inflater inflater = new Inflater();
+
+    private byte[] buffer = new byte[8192];
+
+    private long size;
+
+    private long footprint;
+
+    @Override
+    public synchronized void put(String name, byte[] bytecode) {
+        this.deflater.reset();
+        this.deflater.setInput(bytecode);
+        this.deflater.finish();
+        int length = 0;
+        while (!this.deflater.finished()) {
+            if (length == this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+            }
+            length += this.deflater.deflate(this.buffer, length, this.buffer.length - length);
+        }
+
+        Entry previous = this.classes.put(name, new Entry(Arrays.copyOf(this.buffer, length), bytecode.length));
+        this.size += bytecode.length;
+        this.footprint += length;
+        if (previous != null) {
+            this.size -= previous.length;
+            this.footprint -= previous.data.length;
+        }
+    }
+
+    @Override
+    public synchronized byte[] get(String name) {
+        Entry entry = this.classes.get(name);
+        if (entry == null) {
+            return null;
+        }
+
+        byte[] bytecode = new byte[entry.length];
+        this.inflater.reset();
+        this.inflater.setInput(entry.data);
+        try {
+            int length = 0;
+            while (length < bytecode.length && !this.inflater.finished()) {
+                length += this.inflater.inflate(bytecode, length, bytecode.length - length);
+            }
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Stored bytecode for " + name + " is corrupt", ex);
+        }
+        return bytecode;
+    }
+
+    @Override
+    public synchronized int size() {
+        return this.classes.size();
+    }
+
+    @Override
+    public synchronized long getBytecodeSize() {
+        return this.size;
+    }
+
+    @Override
+    public synchronized long getMemoryFootprint() {
+        return this.footprint;
+    }
+
+}
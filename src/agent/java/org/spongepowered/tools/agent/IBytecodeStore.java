@@ -0,0 +1,69 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.tools.agent;
+
+/**
+ * Storage for the original bytecode of mixin target classes, retained by the
+ * hot-swap agent so that targets can be re-transformed when a mixin changes
+ */
+interface IBytecodeStore {
+
+    /**
+     * Store the bytecode for a class, replacing any previously stored bytecode
+     *
+     * @param name Name of the class
+     * @param bytecode Bytecode to store
+     */
+    public abstract void put(String name, byte[] bytecode);
+
+    /**
+     * Get the stored bytecode for a class
+     *
+     * @param name Name of the class
+     * @return Stored bytecode or null if no bytecode is stored for the class
+     */
+    public abstract byte[] get(String name);
+
+    /**
+     * Get the number of classes in the store
+     */
+    public abstract int size();
+
+    /**
+     * Get the total size of the bytecode in this store before any encoding
+     *
+     * @return size in bytes
+     */
+    public abstract long getBytecodeSize();
+
+    /**
+     * Get the approximate amount of heap memory used to hold the bytecode in
+     * this store
+     *
+     * @return size in bytes
+     */
+    public abstract long getMemoryFootprint();
+
+}
@@ -0,0 +1,283 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.tools.agent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bytecode store which writes bytecode to a spill file and keeps only the
+ * location and length of each class in memory. The file is written and read
+ * through memory-mapped segments, each of which is mapped once when it is
+ * created. When a class is stored again its bytecode is written over its
+ * previous slot if it fits, otherwise the previous slot is freed and reused
+ * by the next class which fits in it, so that repeatedly re-recording
+ * classes does not grow the file without bound.
+ */
+class MappedFileBytecodeStore implements IBytecodeStore {
+
+    /**
+     * Location of a class in the spill file
+     */
+    static final class Extent {
+
+        final int segment;
+
+        final int offset;
+
+        final int length;
+
+        /**
+         * Size of the slot in the file, which may be larger than the bytecode
+         * if the slot was reused
+         */
+        final int capacity;
+
+        Extent(int segment, int offset, int length, int capacity) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.capacity = capacity;
+        }
+
+        Extent resize(int length) {
+            return new Extent(this.segment, this.offset, length, this.capacity);
+        }
+
+    }
+
+    /**
+     * Size of each mapped segment of the spill file, classes larger than this
+     * are given a segment of their own
+     */
+    static final int SEGMENT_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * Approximate heap size of each index entry, excluding the name
+     */
+    private static final int INDEX_ENTRY_SIZE = 64;
+
+    private final Map<String, Extent> index = new HashMap<String, Extent>();
+
+    /**
+     * Slots freed by replaced bytecode, by capacity
+     */
+    private final TreeMap<Integer, List<Extent>> free = new TreeMap<Integer, List<Extent>>();
+
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+    private final File file;
+
+    private final RandomAccessFile raf;
+
+    private final FileChannel channel;
+
+    private final int segmentSize;
+
+    /**
+     * Segment currently being appended to
+     */
+    private MappedByteBuffer current;
+
+    /**
+     * Total length of the mapped segments
+     */
+    private long length;
+
+    /**
+     * Total capacity of the slots allocated in the mapped segments
+     */
+    private long allocated;
+
+    private long size;
+
+    private boolean closed;
+
+    MappedFileBytecodeStore(File file) throws IOException {
+        this(file, MappedFileBytecodeStore.SEGMENT_SIZE);
+    }
+
+    MappedFileBytecodeStore(File file, int segmentSize) throws IOException {
+        this.file = file;
+        this.segmentSize = segmentSize;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = this.raf.getChannel();
+        this.channel.truncate(0);
+    }
+
+    /**
+     * Get the spill file used by this store
+     */
+    File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Get the total capacity of the slots in the spill file, including slots
+     * which are free
+     */
+    synchronized long getAllocatedSize() {
+        return this.allocated;
+    }
+
+    @Override
+    public synchronized void put(String name, byte[] bytecode) {
+        this.checkOpen();
+        Extent previous = this.index.get(name);
+        Extent extent;
+        if (previous != null && bytecode.length <= previous.capacity) {
+            extent = previous.resize(bytecode.length);
+        } else {
+            if (previous != null) {
+                this.release(previous);
+            }
+            extent = this.allocate(name, bytecode.length);
+        }
+
+        ByteBuffer view = this.segments.get(extent.segment).duplicate();
+        view.position(extent.offset);
+        view.put(bytecode);
+        this.index.put(name, extent);
+        this.size += bytecode.length - (previous != null ? previous.length : 0);
+    }
+
+    @Override
+    public synchronized byte[] get(String name) {
+        this.checkOpen();
+        Extent extent = this.index.get(name);
+        if (extent == null) {
+            return null;
+        }
+
+        byte[] bytecode = new byte[extent.length];
+        ByteBuffer view = this.segments.get(extent.segment).duplicate();
+        view.position(extent.offset);
+        view.get(bytecode);
+        return bytecode;
+    }
+
+    @Override
+    public synchronized int size() {
+        return this.index.size();
+    }
+
+    @Override
+    public synchronized long getBytecodeSize() {
+        return this.size;
+    }
+
+    @Override
+    public synchronized long getMemoryFootprint() {
+        long footprint = 0;
+        for (String name : this.index.keySet()) {
+            footprint += MappedFileBytecodeStore.INDEX_ENTRY_SIZE + name.length() * 2;
+        }
+        for (List<Extent> slots : this.free.values()) {
+            footprint += slots.size() * MappedFileBytecodeStore.INDEX_ENTRY_SIZE;
+        }
+        return footprint;
+    }
+
+    /**
+     * Close the spill file. The store cannot be used once it is closed.
+     */
+    synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+        this.current = null;
+        this.segments.clear();
+        this.index.clear();
+        this.free.clear();
+        try {
+            this.raf.close();
+        } catch (IOException ex) {
+            // ignore
+        }
+    }
+
+    /**
+     * Find a slot for bytecode of the specified length, reusing the smallest
+     * free slot which fits or appending a new slot to the current segment
+     */
+    private Extent allocate(String name, int length) {
+        Map.Entry<Integer, List<Extent>> fit = this.free.ceilingEntry(length);
+        if (fit != null) {
+            List<Extent> slots = fit.getValue();
+            Extent slot = slots.remove(slots.size() - 1);
+            if (slots.isEmpty()) {
+                this.free.remove(fit.getKey());
+            }
+            return slot.resize(length);
+        }
+
+        if (this.current == null || this.current.remaining() < length) {
+            try {
+                this.current = this.map(Math.max(this.segmentSize, length));
+            } catch (IOException ex) {
+                throw new IllegalStateException("Error writing bytecode for " + name + " to " + this.file, ex);
+            }
+        }
+
+        Extent slot = new Extent(this.segments.size() - 1, this.current.position(), length, length);
+        this.current.position(this.current.position() + length);
+        this.allocated += length;
+        return slot;
+    }
+
+    private void release(Extent slot) {
+        List<Extent> slots = this.free.get(slot.capacity);
+        if (slots == null) {
+            slots = new ArrayList<Extent>();
+            this.free.put(slot.capacity, slots);
+        }
+        slots.add(slot);
+    }
+
+    private MappedByteBuffer map(int segmentSize) throws IOException {
+        MappedByteBuffer segment = this.channel.map(FileChannel.MapMode.READ_WRITE, this.length, segmentSize);
+        this.length += segmentSize;
+        this.segments.add(segment);
+        return segment;
+    }
+
+    private void checkOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("Bytecode store " + this.file + " is closed");
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.tools.agent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bytecode store which keeps bytecode in memory as-is
+ */
+class MemoryBytecodeStore implements IBytecodeStore {
+
+    private final Map<String, byte[]> classes = new HashMap<String, byte[]>();
+
+    private long size;
+
+    @Override
+    public synchronized void put(String name, byte[] bytecode) {
+        byte[] previous = this.classes.put(name, bytecode);
+        this.size += bytecode.length - (previous != null ? previous.length : 0);
+    }
+
+    @Override
+    public synchronized byte[] get(String name) {
+        return this.classes.get(name);
+    }
+
+    @Override
+    public synchronized int size() {
+        return this.classes.size();
+    }
+
+    @Override
+    public synchronized long getBytecodeSize() {
+        return this.size;
+    }
+
+    @Override
+    public synchronized long getMemoryFootprint() {
+        return this.size;
+    }
+
+}
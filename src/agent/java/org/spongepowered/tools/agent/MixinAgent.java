@@ -30,7 +30,10 @@ import java.lang.instrument.IllegalClassFormatException;
 import java.lang.instrument.Instrumentation;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -52,17 +55,30 @@ public class MixinAgent implements IHotSwap {
      */
     class Transformer implements ClassFileTransformer {
 
+        /**
+         * Target classes currently being redefined by this transformer, their
+         * bytecode is already transformed and is passed through unchanged
+         */
+        private final Set<Class<?>> redefining = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+
         @Override
         public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain domain, byte[] classfileBuffer)
                 throws IllegalClassFormatException {
-            if (classBeingRedefined == null) {
+            if (classBeingRedefined == null || this.redefining.contains(classBeingRedefined)) {
                 return null;
             }
             
             byte[] mixinBytecode = MixinAgent.classLoader.getFakeMixinBytecode(classBeingRedefined);
             if (mixinBytecode != null) {
+                String mixinClass = className.replace('/', '.');
                 List<String> targets = this.reloadMixin(className, classfileBuffer);
-                if (targets == null || !this.reApplyMixins(targets)) {
+                if (targets == null) {
+                    return MixinAgent.ERROR_BYTECODE;
+                }
+                if (!this.reApplyMixins(mixinClass, targets)) {
+                    // The targets were not redefined, so keep the mixin as it was when they were last transformed
+                    MixinAgent.logger.info("Reverting mixin {} to its previous bytecode", mixinClass);
+                    MixinAgent.this.classTransformer.revertReload(mixinClass);
                     return MixinAgent.ERROR_BYTECODE;
                 }
                 
@@ -92,32 +108,91 @@ public class MixinAgent implements IHotSwap {
         }
 
         /**
-         * Re-apply all mixins to the supplied list of target classes.
+         * Re-apply all mixins to the supplied list of target classes. All of
+         * the targets are transformed first and are then redefined together in
+         * a single call, if any target fails to transform then none of the
+         * targets are redefined.
          * 
+         * @param mixinClass Name of the reloaded mixin
          * @param targets Target classes to re-transform
          * @return true if all targets were transformed, false if transformation
          *          failed
          */
-        private boolean reApplyMixins(List<String> targets) {
+        private boolean reApplyMixins(String mixinClass, List<String> targets) {
+            List<ClassDefinition> definitions = new ArrayList<ClassDefinition>(targets.size());
             for (String target : targets) {
-                String targetName = target.replace('/', '.');
-                MixinAgent.logger.debug("Re-transforming target class {}", target);
-                try {
-                    Class<?> targetClass = Launch.classLoader.findClass(targetName);
-                    byte[] targetBytecode = MixinAgent.classLoader.getOriginalTargetBytecode(targetName);
-                    if (targetBytecode == null) {
-                        MixinAgent.logger.error("Target class {} bytecode is not registered", targetName);
-                        return false;
-                    }
-                    targetBytecode = MixinAgent.this.classTransformer.transform(null, targetName, targetBytecode);
-                    MixinAgent.instrumentation.redefineClasses(new ClassDefinition(targetClass, targetBytecode));
-                } catch (Throwable th) {
-                    MixinAgent.logger.error("Error while re-transforming target class " + target, th);
+                ClassDefinition definition = this.reTransformTarget(mixinClass, target);
+                if (definition == null) {
+                    MixinAgent.logger.error("Re-transforming target class {} failed, none of the {} target classes will be redefined",
+                            target, targets.size());
                     return false;
                 }
+                definitions.add(definition);
+            }
+            
+            for (ClassDefinition definition : definitions) {
+                this.redefining.add(definition.getDefinitionClass());
+            }
+            
+            try {
+                MixinAgent.logger.debug("Redefining {} target classes", definitions.size());
+                MixinAgent.instrumentation.redefineClasses(definitions.toArray(new ClassDefinition[definitions.size()]));
+            } catch (Throwable th) {
+                MixinAgent.logger.error("Error while redefining target classes " + targets, th);
+                return false;
+            } finally {
+                for (ClassDefinition definition : definitions) {
+                    this.redefining.remove(definition.getDefinitionClass());
+                }
             }
+            
+            for (ClassDefinition definition : definitions) {
+                MixinAgent.classLoader.addTransformedTargetClass(definition.getDefinitionClass().getName(), definition.getDefinitionClassFile());
+            }
+            
+            IBytecodeStore store = MixinAgent.classLoader.getTargetStore();
+            IBytecodeStore transformedStore = MixinAgent.classLoader.getTransformedTargetStore();
+            MixinAgent.logger.debug("Hot-swap stores hold {} target classes, {} KB of bytecode using {} KB of memory", store.size(),
+                    (store.getBytecodeSize() + transformedStore.getBytecodeSize()) / 1024, MixinAgent.getTargetBytecodeFootprint() / 1024);
             return true;
         }
+        
+        /**
+         * Re-transform a single target class. If the target was previously
+         * redefined by the agent and the reload only changed method bodies in
+         * the mixin, the bytecode it was redefined with is patched, otherwise
+         * all mixins are re-applied to the original bytecode
+         * 
+         * @param mixinClass Name of the reloaded mixin
+         * @param target Target class to re-transform
+         * @return definition for the re-transformed class, or null if
+         *          transformation failed
+         */
+        private ClassDefinition reTransformTarget(String mixinClass, String target) {
+            String targetName = target.replace('/', '.');
+            MixinAgent.logger.debug("Re-transforming target class {}", target);
+            try {
+                Class<?> targetClass = Launch.classLoader.findClass(targetName);
+                byte[] targetBytecode = MixinAgent.classLoader.getOriginalTargetBytecode(targetName);
+                if (targetBytecode == null) {
+                    MixinAgent.logger.error("Target class {} bytecode is not registered", targetName);
+                    return null;
+                }
+                byte[] currentBytecode = MixinAgent.classLoader.getTransformedTargetBytecode(targetName);
+                byte[] patchedBytecode = null;
+                if (currentBytecode != null) {
+                    patchedBytecode = MixinAgent.this.classTransformer.patch(mixinClass, targetName, targetBytecode, currentBytecode);
+                }
+                if (patchedBytecode != null) {
+                    return new ClassDefinition(targetClass, patchedBytecode);
+                }
+                targetBytecode = MixinAgent.this.classTransformer.transform(null, targetName, targetBytecode);
+                return new ClassDefinition(targetClass, targetBytecode);
+            } catch (Throwable th) {
+                MixinAgent.logger.error("Error while re-transforming target class " + target, th);
+                return null;
+            }
+        }
     }
 
     /**
@@ -178,6 +253,17 @@ public class MixinAgent implements IHotSwap {
         MixinAgent.classLoader.addTargetClass(name, bytecode);
     }
 
+    /**
+     * Gets the approximate amount of memory used to retain the original
+     * bytecode of mixin target classes for hot-swapping
+     *
+     * @return footprint in bytes
+     */
+    public static long getTargetBytecodeFootprint() {
+        return MixinAgent.classLoader.getTargetStore().getMemoryFootprint()
+                + MixinAgent.classLoader.getTransformedTargetStore().getMemoryFootprint();
+    }
+
     /**
      * Sets the instrumentation instance so that the mixin agents can redefine
      * mixins.
@@ -24,6 +24,7 @@
  */
 package org.spongepowered.tools.agent;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -34,6 +35,7 @@ import org.spongepowered.asm.lib.MethodVisitor;
 import org.spongepowered.asm.lib.Opcodes;
 import org.spongepowered.asm.lib.Type;
 import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
 import org.spongepowered.asm.util.Constants;
 
 /**
@@ -50,10 +52,16 @@ class MixinAgentClassLoader extends ClassLoader {
     private Map<Class<?>, byte[]> mixins = new HashMap<Class<?>, byte[]>();
 
     /**
-     * Mapping that keep track of bytecode for classes that are targeted by
-     * mixins
+     * Store that keeps track of bytecode for classes that are targeted by
+     * mixins, created when the first target is registered
      */
-    private Map<String, byte[]> targets = new HashMap<String, byte[]>();
+    private IBytecodeStore targets;
+
+    /**
+     * Store that keeps track of the bytecode target classes were last
+     * redefined with by the agent, created when the first target is redefined
+     */
+    private IBytecodeStore transformedTargets;
 
     /**
      * Add a fake mixin class
@@ -81,7 +89,18 @@ class MixinAgentClassLoader extends ClassLoader {
      * @param bytecode Bytecode of the target class
      */
     void addTargetClass(String name, byte[] bytecode) {
-        this.targets.put(name, bytecode);
+        this.getTargetStore().put(name, bytecode);
+    }
+
+    /**
+     * Registers the bytecode a class targeted by a mixin was redefined with
+     * after a mixin was reloaded
+     *
+     * @param name Name of the target class
+     * @param bytecode Bytecode the target class was redefined with
+     */
+    void addTransformedTargetClass(String name, byte[] bytecode) {
+        this.getTransformedTargetStore().put(name, bytecode);
     }
 
     /**
@@ -101,7 +120,74 @@ class MixinAgentClassLoader extends ClassLoader {
      * @return Original bytecode
      */
     byte[] getOriginalTargetBytecode(String name) {
-        return this.targets.get(name);
+        return this.getTargetStore().get(name);
+    }
+
+    /**
+     * Gets the bytecode a target class was last redefined with by the agent
+     *
+     * @param name Name of the target class
+     * @return Redefined bytecode, or null if the target was not redefined
+     */
+    byte[] getTransformedTargetBytecode(String name) {
+        return this.getTransformedTargetStore().get(name);
+    }
+
+    /**
+     * Gets the store used for original target bytecode, creating it if
+     * necessary using the type specified by {@link Option#HOT_SWAP_STORE}
+     *
+     * @return Target bytecode store
+     */
+    synchronized IBytecodeStore getTargetStore() {
+        if (this.targets == null) {
+            this.targets = MixinAgentClassLoader.createTargetStore(MixinEnvironment.getCurrentEnvironment().getOptionValue(Option.HOT_SWAP_STORE));
+        }
+        return this.targets;
+    }
+
+    /**
+     * Gets the store used for the bytecode of target classes redefined by
+     * the agent, creating it if necessary
+     *
+     * @return Redefined target bytecode store
+     */
+    synchronized IBytecodeStore getTransformedTargetStore() {
+        if (this.transformedTargets == null) {
+            this.transformedTargets = MixinAgentClassLoader.createTargetStore(
+                    MixinEnvironment.getCurrentEnvironment().getOptionValue(Option.HOT_SWAP_STORE));
+        }
+        return this.transformedTargets;
+    }
+
+    private static IBytecodeStore createTargetStore(String type) {
+        if ("compressed".equalsIgnoreCase(type)) {
+            MixinAgentClassLoader.logger.info("Storing hot-swap target bytecode compressed in memory");
+            return new CompressedBytecodeStore();
+        }
+
+        if ("file".equalsIgnoreCase(type)) {
+            try {
+                final File file = File.createTempFile("mixin-hotswap", ".bin");
+                file.deleteOnExit();
+                MixinAgentClassLoader.logger.info("Storing hot-swap target bytecode in {}", file.getAbsolutePath());
+                final MappedFileBytecodeStore store = new MappedFileBytecodeStore(file);
+                Runtime.getRuntime().addShutdownHook(new Thread("Mixin hot-swap store shutdown") {
+                    @Override
+                    public void run() {
+                        store.close();
+                        file.delete();
+                    }
+                });
+                return store;
+            } catch (Exception ex) {
+                MixinAgentClassLoader.logger.error("Unable to create hot-swap bytecode spill file, storing bytecode in memory", ex);
+            }
+        } else if (type != null && !"memory".equalsIgnoreCase(type)) {
+            MixinAgentClassLoader.logger.warn("Unknown hot-swap store type {}, storing bytecode in memory", type);
+        }
+
+        return new MemoryBytecodeStore();
     }
 
     /**
@@ -24,9 +24,12 @@
  */
 package org.spongepowered.tools.obfuscation;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -43,6 +46,8 @@ import org.spongepowered.asm.util.Constants;
 import org.spongepowered.tools.obfuscation.interfaces.IMixinAnnotationProcessor;
 import org.spongepowered.tools.obfuscation.interfaces.IObfuscationManager;
 
+import com.google.common.base.Charsets;
+
 /**
  * Obfuscation Manager for mixin Annotation Processor
  */
@@ -104,17 +109,43 @@ public class ObfuscationManager implements IObfuscationManager {
             return;
         }
         
-        PrintWriter writer = null;
+        StringBuilder json = new StringBuilder();
+        this.refMapper.write(json);
+        byte[] jsonBytes = json.toString().getBytes(Charsets.UTF_8);
+        
+        if (!this.writeRefFile(this.outRefMapFileName, "refmap", jsonBytes)) {
+            return;
+        }
+        
+        // The index records a digest of the JSON so that it is ignored if the JSON is later changed
+        try {
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            this.refMapper.writeIndex(index, jsonBytes);
+            this.writeRefFile(this.outRefMapFileName + ReferenceMapper.INDEX_SUFFIX, "refmap index", index.toByteArray());
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+    
+    /**
+     * Write out a refmap file
+     * 
+     * @return true if the file was written
+     */
+    private boolean writeRefFile(String fileName, String description, byte[] bytes) {
+        OutputStream out = null;
         
         try {
-            writer = this.newWriter(this.outRefMapFileName, "refmap");
-            this.refMapper.write(writer);
+            out = this.newOutputStream(fileName, description);
+            out.write(bytes);
+            return true;
         } catch (IOException ex) {
             ex.printStackTrace();
+            return false;
         } finally {
-            if (writer != null) {
+            if (out != null) {
                 try {
-                    writer.close();
+                    out.close();
                 } catch (Exception ex) {
                     // oh well
                 }
@@ -123,19 +154,19 @@ public class ObfuscationManager implements IObfuscationManager {
     }
     
     /**
-     * Open a writer for an output file
+     * Open a binary output stream for an output file
      */
-    private PrintWriter newWriter(String fileName, String description) throws IOException {
+    private OutputStream newOutputStream(String fileName, String description) throws IOException {
         if (fileName.matches("^.*[\\\\/:].*$")) {
-            File outSrgFile = new File(fileName);
-            outSrgFile.getParentFile().mkdirs();
-            this.ap.printMessage(Kind.NOTE, "Writing " + description + " to " + outSrgFile.getAbsolutePath());
-            return new PrintWriter(outSrgFile);
+            File outFile = new File(fileName);
+            outFile.getParentFile().mkdirs();
+            this.ap.printMessage(Kind.NOTE, "Writing " + description + " to " + outFile.getAbsolutePath());
+            return new BufferedOutputStream(new FileOutputStream(outFile));
         }
         
-        FileObject outSrg = this.ap.getProcessingEnvironment().getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", fileName);
-        this.ap.printMessage(Kind.NOTE, "Writing " + description + " to " + new File(outSrg.toUri()).getAbsolutePath());
-        return new PrintWriter(outSrg.openWriter());
+        FileObject outResource = this.ap.getProcessingEnvironment().getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", fileName);
+        this.ap.printMessage(Kind.NOTE, "Writing " + description + " to " + new File(outResource.toUri()).getAbsolutePath());
+        return new BufferedOutputStream(outResource.openOutputStream());
     }
     
     /* (non-Javadoc)
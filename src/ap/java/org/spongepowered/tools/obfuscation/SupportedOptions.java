@@ -48,6 +48,7 @@ public final class SupportedOptions {
     public static final String OVERWRITE_ERROR_LEVEL     = "overwriteErrorLevel";
     public static final String DEFAULT_OBFUSCATION_ENV   = "defaultObfuscationEnv";
     public static final String DEPENDENCY_TARGETS_FILE   = "dependencyTargetsFile";
+    public static final String SRG_INDEX_DIR             = "srgIndexDir";
 
     public static final Set<String> all = ImmutableSet.<String>of(
         SupportedOptions.TOKENS,
@@ -63,7 +64,8 @@ public final class SupportedOptions {
         SupportedOptions.DISABLE_OVERWRITE_CHECKER,
         SupportedOptions.OVERWRITE_ERROR_LEVEL,
         SupportedOptions.DEFAULT_OBFUSCATION_ENV,
-        SupportedOptions.DEPENDENCY_TARGETS_FILE
+        SupportedOptions.DEPENDENCY_TARGETS_FILE,
+        SupportedOptions.SRG_INDEX_DIR
     );
     
     private SupportedOptions() {}
@@ -50,6 +50,9 @@ import org.spongepowered.asm.util.ObfuscationUtil;
 import org.spongepowered.asm.util.ObfuscationUtil.IClassRemapper;
 import org.spongepowered.tools.obfuscation.interfaces.IMixinAnnotationProcessor;
 
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
 /**
  * Stores information relevant to a particular target obfuscation environment.
  * 
@@ -139,9 +142,21 @@ class TargetObfuscationEnvironment {
                 return false;
             }
             
-            int successCount = 0;
+            int successCount = 0, failCount = 0;
             this.srgs = new SrgContainer();
             
+            File index = this.getSrgIndexFile();
+            if (index != null && index.isFile()) {
+                try {
+                    this.ap.printMessage(Kind.NOTE, "Loading " + this.type + " mappings from index " + index.getAbsolutePath());
+                    this.srgs.readSrg(index);
+                    return true;
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    this.srgs = new SrgContainer();
+                }
+            }
+            
             for (String srgFileName : this.reobfSrgFileNames) {
                 File reobfSrgFile = new File(srgFileName);
                 try {
@@ -149,21 +164,55 @@ class TargetObfuscationEnvironment {
                         this.ap.printMessage(Kind.NOTE, "Loading " + this.type + " mappings from " + reobfSrgFile.getAbsolutePath());
                         this.srgs.readSrg(reobfSrgFile);
                         successCount++;
+                    } else {
+                        failCount++;
                     }
                 } catch (Exception ex) {
                     ex.printStackTrace();
+                    failCount++;
                 }
             }
             
             if (successCount < 1) {
                 this.ap.printMessage(Kind.ERROR, "No valid SRG files for " + this.type + " could be read, processing may not be sucessful.");
                 this.srgs = null;
+            } else if (index != null && failCount == 0) {
+                // Only index a complete set of mappings, otherwise a missing or broken file would be masked by the index
+                try {
+                    index.getParentFile().mkdirs();
+                    this.srgs.writeIndex(index);
+                } catch (IOException ex) {
+                    this.ap.printMessage(Kind.WARNING, "Could not write " + this.type + " mapping index to " + index.getAbsolutePath());
+                }
             }
         }
         
         return this.srgs != null;
     }
 
+    /**
+     * Get the location of the binary index for the current set of SRG files,
+     * the index name is derived from the paths, sizes and modification times
+     * of the SRG files so that a stale index is never used
+     * 
+     * @return index file, or null if indexing is not enabled
+     */
+    File getSrgIndexFile() {
+        String indexDir = this.ap.getOption(SupportedOptions.SRG_INDEX_DIR);
+        if (indexDir == null) {
+            return null;
+        }
+        
+        StringBuilder key = new StringBuilder(this.type.getKey());
+        for (String srgFileName : this.reobfSrgFileNames) {
+            File srgFile = new File(srgFileName);
+            key.append('|').append(srgFile.getAbsolutePath()).append(':').append(srgFile.length()).append(':').append(srgFile.lastModified());
+        }
+        
+        String hash = Hashing.md5().hashString(key, Charsets.UTF_8).toString();
+        return new File(indexDir, this.type.getKey() + "-" + hash + ".srgx");
+    }
+
     /**
      * Get the type
      */
@@ -25,12 +25,17 @@
 package org.spongepowered.asm.launch;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -38,6 +43,7 @@ import org.spongepowered.asm.mixin.MixinEnvironment;
 import org.spongepowered.asm.mixin.MixinEnvironment.CompatibilityLevel;
 import org.spongepowered.asm.mixin.MixinEnvironment.Phase;
 import org.spongepowered.asm.mixin.Mixins;
+import org.spongepowered.asm.util.Constants;
 
 import net.minecraft.launchwrapper.ITweaker;
 import net.minecraft.launchwrapper.Launch;
@@ -160,20 +166,24 @@ public class MixinTweaker implements ITweaker {
 
     /**
      * Scan the classpath for mixin containers (containers which declare the
-     * mixin tweaker in their manifest) and add agents for them
+     * mixin tweaker in their manifest) and add agents for them, and register
+     * classes from any premixed jars
      */
     private void scanClasspath() {
         for (URL url : Launch.classLoader.getSources()) {
             try {
                 URI uri = url.toURI();
-                if (this.containers.containsKey(uri)) {
-                    continue;
-                }
-                MixinTweaker.logger.debug("Scanning {} for mixin tweaker", uri);
                 if (!"file".equals(uri.getScheme()) || !new File(uri).exists()) {
                     continue;
                 }
                 MainAttributes attributes = MainAttributes.of(uri);
+                if (attributes.get(Constants.PREMIXED_ATTRIBUTE) != null) {
+                    MixinTweaker.registerPremixedClasses(new File(uri));
+                }
+                if (this.containers.containsKey(uri)) {
+                    continue;
+                }
+                MixinTweaker.logger.debug("Scanning {} for mixin tweaker", uri);
                 String tweaker = attributes.get(MixinTweaker.MFATT_TWEAKER);
                 if (MixinTweaker.class.getName().equals(tweaker)) {
                     MixinTweaker.logger.debug("{} contains a mixin tweaker, adding agents", uri);
@@ -185,6 +195,40 @@ public class MixinTweaker implements ITweaker {
         }
     }
 
+    /**
+     * Register the classes which are marked as premixed in the manifest of
+     * the specified jar
+     * 
+     * @param jar Premixed jar
+     */
+    private static void registerPremixedClasses(File jar) {
+        JarFile jarFile = null;
+        try {
+            jarFile = new JarFile(jar);
+            Manifest manifest = jarFile.getManifest();
+            int count = 0;
+            for (Entry<String, Attributes> entry : manifest.getEntries().entrySet()) {
+                String name = entry.getKey();
+                String fingerprint = entry.getValue().getValue(Constants.PREMIXED_ATTRIBUTE);
+                if (name.endsWith(".class") && fingerprint != null) {
+                    Mixins.registerPremixedClass(name.substring(0, name.length() - 6).replace('/', '.'), fingerprint);
+                    count++;
+                }
+            }
+            MixinTweaker.logger.info("Registered {} premixed classes from {}", count, jar);
+        } catch (IOException ex) {
+            MixinTweaker.logger.warn("Error reading premixed classes from {}: {}", jar, ex.getMessage());
+        } finally {
+            if (jarFile != null) {
+                try {
+                    jarFile.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+        }
+    }
+
     /* (non-Javadoc)
      * @see net.minecraft.launchwrapper.ITweaker#getLaunchTarget()
      */
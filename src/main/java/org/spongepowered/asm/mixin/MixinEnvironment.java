@@ -329,6 +329,69 @@ public final class MixinEnvironment implements ITokenProvider {
          */
         HOT_SWAP("hotSwap"),
         
+        /**
+         * Storage used by the hot-swap agent for the original bytecode of
+         * mixin targets: <tt>memory</tt> (default), <tt>compressed</tt> to
+         * deflate the bytecode in memory or <tt>file</tt> to spill it to a
+         * memory-mapped temporary file
+         */
+        HOT_SWAP_STORE(Option.HOT_SWAP, "store", false),
+        
+        /**
+         * Allow mixins to be applied to different target classes on different
+         * threads at the same time. Application to any single target class is
+         * still serialised, as is application of any single mixin to its
+         * targets. Ignored when hot-swap is enabled.
+         */
+        CONCURRENT_TRANSFORM("concurrent"),
+        
+        /**
+         * Load mixin bytecode and target class metadata on multiple threads
+         * when configs are prepared. Mixins are still initialised and
+         * registered in order on the selecting thread, but all transformers
+         * in the chain must be safe to call concurrently.
+         */
+        PARALLEL_PREPARE("parallelPrepare"),
+        
+        /**
+         * Enable the persistent cache of transformed classes. Classes whose
+         * bytecode and mixins are unchanged since a previous session are
+         * loaded from the cache instead of having their mixins re-applied.
+         * The cache is not used when hot-swap is enabled.
+         */
+        CLASS_CACHE("cache"),
+        
+        /**
+         * Directory in which to store the class cache, defaults to
+         * <tt>.mixin.cache</tt> in the working directory
+         */
+        CLASS_CACHE_DIR(Option.CLASS_CACHE, "dir", false),
+        
+        /**
+         * Only compute stack map frames for target methods which were added or
+         * modified by mixins. Unmodified methods are copied from the original
+         * class bytecode. Applies to classes of version 50 and above whose
+         * version is not raised by a mixin.
+         */
+        INCREMENTAL_FRAMES("incrementalFrames"),
+        
+        /**
+         * Only run name transformers and known hierarchy transformers (see
+         * {@link MixinEnvironment#addHierarchyTransformer}) when reading class
+         * metadata, rather than the whole delegation list. Only safe when no
+         * other transformer alters the hierarchy or member signatures of the
+         * classes it transforms.
+         */
+        LIMIT_METADATA_TRANSFORMERS("limitMetadataTransformers"),
+        
+        /**
+         * Non-cancellable callbacks which do not capture a return value use a
+         * single callback info instance per injection site, held in a synthetic
+         * static field of the target class and created in its static
+         * initialiser, instead of allocating a new instance per call
+         */
+        SHARE_CALLBACK_INFO("shareCallbackInfo"),
+        
         /**
          * Parent for environment settings
          */
@@ -618,12 +681,30 @@ public final class MixinEnvironment implements ITokenProvider {
      * Known re-entrant transformers, other re-entrant transformers will
      * detected automatically 
      */
-    private static final Set<String> excludeTransformers = Sets.<String>newHashSet(
+    private static final Set<String> excludeTransformers = Sets.<String>newCopyOnWriteArraySet(Sets.<String>newHashSet(
         "net.minecraftforge.fml.common.asm.transformers.EventSubscriptionTransformer",
         "cpw.mods.fml.common.asm.transformers.EventSubscriptionTransformer",
         "net.minecraftforge.fml.common.asm.transformers.TerminalTransformer",
         "cpw.mods.fml.common.asm.transformers.TerminalTransformer"
-    );
+    ));
+    
+    /**
+     * Known transformers which alter the class hierarchy, access or member
+     * signatures. When {@link Option#LIMIT_METADATA_TRANSFORMERS} is enabled,
+     * only these (and name transformers) are run when reading class metadata.
+     */
+    private static final Set<String> hierarchyTransformers = Sets.<String>newCopyOnWriteArraySet(Sets.<String>newHashSet(
+        "net.minecraftforge.fml.common.asm.transformers.DeobfuscationTransformer",
+        "cpw.mods.fml.common.asm.transformers.DeobfuscationTransformer",
+        "net.minecraftforge.fml.common.asm.transformers.AccessTransformer",
+        "cpw.mods.fml.common.asm.transformers.AccessTransformer",
+        "net.minecraftforge.fml.common.asm.transformers.ModAccessTransformer",
+        "cpw.mods.fml.common.asm.transformers.ModAccessTransformer",
+        "net.minecraftforge.fml.common.asm.transformers.MarkerTransformer",
+        "cpw.mods.fml.common.asm.transformers.MarkerTransformer",
+        "net.minecraftforge.fml.common.asm.transformers.SideTransformer",
+        "cpw.mods.fml.common.asm.transformers.SideTransformer"
+    ));
 
     /**
      * Currently active environment
@@ -699,12 +780,18 @@ public final class MixinEnvironment implements ITokenProvider {
      * re-entrant transformers. Detected re-entrant transformers will be
      * subsequently removed.
      */
-    private List<IClassTransformer> transformers;
+    private volatile List<IClassTransformer> transformers;
+    
+    /**
+     * Subset of the local transformer chain which is run when reading class
+     * metadata, built along with the main chain
+     */
+    private volatile List<IClassTransformer> metadataTransformers;
     
     /**
      * Class name transformer (if present)
      */
-    private IClassNameTransformer nameTransformer;
+    private volatile IClassNameTransformer nameTransformer;
     
     /**
      * Obfuscation context (refmap key to use in this environment) 
@@ -1040,11 +1127,31 @@ public final class MixinEnvironment implements ITokenProvider {
      * @return current transformer delegation list (read-only)
      */
     public List<IClassTransformer> getTransformers() {
-        if (this.transformers == null) {
+        List<IClassTransformer> transformers = this.transformers;
+        if (transformers == null) {
+            transformers = this.buildTransformerDelegationList();
+        }
+        
+        return Collections.unmodifiableList(transformers);
+    }
+
+    /**
+     * Returns (and generates if necessary) the list of delegate transformers
+     * which need to be run when reading class metadata. This is the full
+     * delegation list unless {@link Option#LIMIT_METADATA_TRANSFORMERS} is
+     * enabled, in which case it consists of any name transformers and the
+     * known hierarchy transformers.
+     * 
+     * @return current metadata transformer list (read-only)
+     */
+    public List<IClassTransformer> getHierarchyTransformers() {
+        List<IClassTransformer> transformers = this.metadataTransformers;
+        if (transformers == null || this.transformers == null) {
             this.buildTransformerDelegationList();
+            transformers = this.metadataTransformers;
         }
         
-        return Collections.unmodifiableList(this.transformers);
+        return Collections.unmodifiableList(transformers);
     }
 
     /**
@@ -1059,6 +1166,20 @@ public final class MixinEnvironment implements ITokenProvider {
         this.transformers = null;
     }
 
+    /**
+     * Registers a transformer which alters the class hierarchy, access or
+     * member signatures of the classes it transforms, and must therefore be
+     * run when reading class metadata
+     * 
+     * @param name Class transformer name to add
+     */
+    public void addHierarchyTransformer(String name) {
+        MixinEnvironment.hierarchyTransformers.add(name);
+        
+        // Force rebuild of the list
+        this.transformers = null;
+    }
+
     /**
      * Map a class name back to its obfuscated counterpart 
      * 
@@ -1081,11 +1202,15 @@ public final class MixinEnvironment implements ITokenProvider {
      * Builds the transformer list to apply to loaded mixin bytecode. Since
      * generating this list requires inspecting each transformer by name (to
      * cope with the new wrapper functionality added by FML) we generate the
-     * list just once per environment and cache the result.
+     * list just once per environment and cache the result. The list is only
+     * published once complete, so that concurrent transformers never observe
+     * a partially built chain.
+     * 
+     * @return the new delegation list
      */
-    private void buildTransformerDelegationList() {
+    private List<IClassTransformer> buildTransformerDelegationList() {
         MixinEnvironment.logger.debug("Rebuilding transformer delegation list:");
-        this.transformers = new ArrayList<IClassTransformer>();
+        List<IClassTransformer> transformers = new ArrayList<IClassTransformer>();
         for (IClassTransformer transformer : Launch.classLoader.getTransformers()) {
             String transformerName = transformer.getClass().getName();
             boolean include = true;
@@ -1098,13 +1223,13 @@ public final class MixinEnvironment implements ITokenProvider {
             boolean ignoreTransformer = transformer.getClass().getAnnotation(Resource.class) != null;
             if (include && !ignoreTransformer && !transformerName.contains(MixinTransformer.class.getName())) {
                 MixinEnvironment.logger.debug("  Adding:    {}", transformerName);
-                this.transformers.add(transformer);
+                transformers.add(transformer);
             } else {
                 MixinEnvironment.logger.debug("  Excluding: {}", transformerName);
             }
         }
 
-        MixinEnvironment.logger.debug("Transformer delegation list created with {} entries", this.transformers.size());
+        MixinEnvironment.logger.debug("Transformer delegation list created with {} entries", transformers.size());
         
         for (IClassTransformer transformer : Launch.classLoader.getTransformers()) {
             if (transformer instanceof IClassNameTransformer) {
@@ -1112,6 +1237,35 @@ public final class MixinEnvironment implements ITokenProvider {
                 this.nameTransformer = (IClassNameTransformer) transformer;
             }
         }
+        
+        List<IClassTransformer> metadataTransformers = transformers;
+        if (this.getOption(Option.LIMIT_METADATA_TRANSFORMERS)) {
+            metadataTransformers = new ArrayList<IClassTransformer>();
+            List<String> skipped = new ArrayList<String>();
+            for (IClassTransformer transformer : transformers) {
+                if (transformer instanceof IClassNameTransformer || MixinEnvironment.isHierarchyTransformer(transformer.getClass().getName())) {
+                    metadataTransformers.add(transformer);
+                } else {
+                    skipped.add(transformer.getClass().getName());
+                }
+            }
+            if (!skipped.isEmpty()) {
+                MixinEnvironment.logger.info("Transformers {} will not be run when reading class metadata", skipped);
+            }
+        }
+        
+        this.metadataTransformers = metadataTransformers;
+        this.transformers = transformers;
+        return transformers;
+    }
+
+    private static boolean isHierarchyTransformer(String transformerName) {
+        for (String hierarchyClass : MixinEnvironment.hierarchyTransformers) {
+            if (transformerName.contains(hierarchyClass)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /* (non-Javadoc)
@@ -26,7 +26,9 @@ package org.spongepowered.asm.mixin;
 
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -57,6 +59,12 @@ public final class Mixins {
      */
     private static final Set<String> errorHandlers = new LinkedHashSet<String>();
     
+    /**
+     * Classes which had their mixins applied ahead of time, mapped to the
+     * fingerprint of the mixins which were applied
+     */
+    private static final Map<String, String> premixedClasses = new ConcurrentHashMap<String, String>();
+    
     private Mixins() {}
     
     /**
@@ -118,4 +126,29 @@ public final class Mixins {
         return Collections.<String>unmodifiableSet(Mixins.errorHandlers);
     }
 
+    /**
+     * Register a class which had its mixins applied ahead of time by the
+     * premixer. Mixins will not be applied to the class again at runtime as
+     * long as the mixins selected for the class at runtime have the same
+     * fingerprint as the mixins which were applied by the premixer.
+     * 
+     * @param className Fully qualified class name
+     * @param fingerprint Fingerprint of the mixins applied by the premixer
+     */
+    public static void registerPremixedClass(String className, String fingerprint) {
+        if (className != null && fingerprint != null) {
+            Mixins.premixedClasses.put(className, fingerprint);
+        }
+    }
+
+    /**
+     * Get the classes which have been registered as premixed
+     * 
+     * @return unmodifiable view of premixed class names mapped to the
+     *      fingerprint of the mixins applied to each
+     */
+    public static Map<String, String> getPremixedClasses() {
+        return Collections.<String, String>unmodifiableMap(Mixins.premixedClasses);
+    }
+
 }
@@ -77,6 +77,14 @@ public @interface Inject {
      * return behaviour can then be controlled from within the callback by
      * interacting with the supplied {@link CallbackInfo} object.
      * 
+     * <p>When the <tt>mixin.shareCallbackInfo</tt> option is enabled (see
+     * {@link org.spongepowered.asm.mixin.MixinEnvironment.Option#SHARE_CALLBACK_INFO
+     * SHARE_CALLBACK_INFO}), callbacks which are not cancellable and which do
+     * not capture a return value are passed a single {@link CallbackInfo}
+     * instance shared by every invocation of the injection site, rather than
+     * allocating a new one for each call. Handlers should therefore not retain
+     * the supplied {@link CallbackInfo}.</p>
+     * 
      * @return true if this injector should inject appropriate RETURN opcodes
      *      which allow it to be cancelled
      */
@@ -49,6 +49,7 @@ import org.spongepowered.asm.mixin.injection.points.BeforeStringInvoke;
 import org.spongepowered.asm.mixin.injection.points.JumpInsnPoint;
 import org.spongepowered.asm.mixin.injection.points.MethodHead;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
+import org.spongepowered.asm.mixin.injection.struct.InsnIndex;
 import org.spongepowered.asm.mixin.injection.throwables.InvalidInjectionException;
 import org.spongepowered.asm.mixin.transformer.MixinTargetContext;
 import org.spongepowered.asm.util.ASMHelper;
@@ -92,6 +93,26 @@ public abstract class InjectionPoint {
      */
     public abstract boolean find(String desc, InsnList insns, Collection<AbstractInsnNode> nodes);
 
+    /**
+     * Find injection points in the supplied insn list, using the supplied
+     * index of the insn list to locate candidate nodes where possible. The
+     * default implementation ignores the index and calls {@link #find(String,
+     * InsnList, Collection)}.
+     * 
+     * @param desc Method descriptor, supplied to allow return types and
+     *      arguments etc. to be determined
+     * @param insns Insn list to search in, the strategy MUST ONLY add nodes
+     *      from this list to the {@code nodes} collection
+     * @param nodes Collection of nodes to populate. Injectors should NOT make
+     *      any assumptions about the state of this collection and should only
+     *      call the <b>add()</b> method
+     * @param index Index of the supplied insn list, can be null
+     * @return true if one or more injection points were found
+     */
+    public boolean find(String desc, InsnList insns, Collection<AbstractInsnNode> nodes, InsnIndex index) {
+        return this.find(desc, insns, nodes);
+    }
+
     /* (non-Javadoc)
      * @see java.lang.Object#toString()
      */
@@ -109,11 +130,10 @@ public abstract class InjectionPoint {
      * @return Next insn or the same insn if last in the list
      */
     protected static AbstractInsnNode nextNode(InsnList insns, AbstractInsnNode insn) {
-        int index = insns.indexOf(insn) + 1;
-        if (index > 0 && index < insns.size()) {
-            return insns.get(index);
-        }
-        return insn;
+        // Walk the list rather than using indexOf, which rebuilds the list's
+        // index cache after every modification made by an injector
+        AbstractInsnNode next = insn.getNext();
+        return next != null ? next : insn;
     }
 
     /**
@@ -150,16 +170,21 @@ public abstract class InjectionPoint {
             super(points);
         }
 
-        @SuppressWarnings("unchecked")
         @Override
         public boolean find(String desc, InsnList insns, Collection<AbstractInsnNode> nodes) {
+            return this.find(desc, insns, nodes, null);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public boolean find(String desc, InsnList insns, Collection<AbstractInsnNode> nodes, InsnIndex index) {
             boolean found = false;
 
             ArrayList<AbstractInsnNode>[] allNodes = (ArrayList<AbstractInsnNode>[]) Array.newInstance(ArrayList.class, this.components.length);
 
             for (int i = 0; i < this.components.length; i++) {
                 allNodes[i] = new ArrayList<AbstractInsnNode>();
-                this.components[i].find(desc, insns, allNodes[i]);
+                this.components[i].find(desc, insns, allNodes[i], index);
             }
 
             ArrayList<AbstractInsnNode> alpha = allNodes[0];
@@ -197,10 +222,15 @@ public abstract class InjectionPoint {
 
         @Override
         public boolean find(String desc, InsnList insns, Collection<AbstractInsnNode> nodes) {
+            return this.find(desc, insns, nodes, null);
+        }
+
+        @Override
+        public boolean find(String desc, InsnList insns, Collection<AbstractInsnNode> nodes, InsnIndex index) {
             LinkedHashSet<AbstractInsnNode> allNodes = new LinkedHashSet<AbstractInsnNode>();
 
             for (int i = 0; i < this.components.length; i++) {
-                this.components[i].find(desc, insns, allNodes);
+                this.components[i].find(desc, insns, allNodes, index);
             }
 
             nodes.addAll(allNodes);
@@ -237,12 +267,17 @@ public abstract class InjectionPoint {
 
         @Override
         public boolean find(String desc, InsnList insns, Collection<AbstractInsnNode> nodes) {
+            return this.find(desc, insns, nodes, null);
+        }
+
+        @Override
+        public boolean find(String desc, InsnList insns, Collection<AbstractInsnNode> nodes, InsnIndex index) {
             List<AbstractInsnNode> list = (nodes instanceof List) ? (List<AbstractInsnNode>) nodes : new ArrayList<AbstractInsnNode>(nodes);
 
-            this.input.find(desc, insns, nodes);
+            this.input.find(desc, insns, nodes, index);
 
             for (int i = 0; i < list.size(); i++) {
-                list.set(i, insns.get(insns.indexOf(list.get(i)) + this.shift));
+                list.set(i, this.shift(list.get(i)));
             }
 
             if (nodes != list) {
@@ -252,6 +287,28 @@ public abstract class InjectionPoint {
 
             return nodes.size() > 0;
         }
+
+        /**
+         * Walk from the supplied insn by the shift amount. This is linear in
+         * the shift rather than the method size and does not depend on the
+         * insn list's index cache, which is invalidated by every insertion.
+         * 
+         * @param insn Insn to shift from
+         * @return shifted insn
+         */
+        private AbstractInsnNode shift(AbstractInsnNode insn) {
+            AbstractInsnNode node = insn;
+            for (int i = 0; i < this.shift && node != null; i++) {
+                node = node.getNext();
+            }
+            for (int i = 0; i > this.shift && node != null; i--) {
+                node = node.getPrevious();
+            }
+            if (node == null) {
+                throw new IndexOutOfBoundsException("Shift by " + this.shift + " moves injection point outside the method");
+            }
+            return node;
+        }
     }
 
     /**
@@ -36,6 +36,254 @@ import org.spongepowered.asm.util.Constants;
  */
 public class CallbackInfoReturnable<R> extends CallbackInfo {
 
+    /**
+     * Callback info for a RETURN injection in a method returning <tt>byte</tt>,
+     * holds the return value without boxing it. Setting a <tt>null</tt>
+     * return value is treated as setting <tt>0</tt>.
+     */
+    public static class ByteReturnable extends CallbackInfoReturnable<Byte> {
+        
+        private byte returnValueB;
+        
+        public ByteReturnable(String name, boolean cancellable, byte returnValue) {
+            super(name, cancellable);
+            this.returnValueB = returnValue;
+        }
+        
+        @Override
+        public void setReturnValue(Byte returnValue) throws CancellationException {
+            super.setReturnValue(returnValue);
+            this.returnValueB = returnValue != null ? returnValue.byteValue() : 0;
+        }
+        
+        @Override
+        public Byte getReturnValue() {
+            return Byte.valueOf(this.returnValueB);
+        }
+        
+        @Override
+        public byte getReturnValueB() {
+            return this.returnValueB;
+        }
+    }
+
+    /**
+     * Callback info for a RETURN injection in a method returning <tt>char</tt>,
+     * holds the return value without boxing it. Setting a <tt>null</tt>
+     * return value is treated as setting <tt>0</tt>.
+     */
+    public static class CharReturnable extends CallbackInfoReturnable<Character> {
+        
+        private char returnValueC;
+        
+        public CharReturnable(String name, boolean cancellable, char returnValue) {
+            super(name, cancellable);
+            this.returnValueC = returnValue;
+        }
+        
+        @Override
+        public void setReturnValue(Character returnValue) throws CancellationException {
+            super.setReturnValue(returnValue);
+            this.returnValueC = returnValue != null ? returnValue.charValue() : 0;
+        }
+        
+        @Override
+        public Character getReturnValue() {
+            return Character.valueOf(this.returnValueC);
+        }
+        
+        @Override
+        public char getReturnValueC() {
+            return this.returnValueC;
+        }
+    }
+
+    /**
+     * Callback info for a RETURN injection in a method returning <tt>double</tt>,
+     * holds the return value without boxing it. Setting a <tt>null</tt>
+     * return value is treated as setting <tt>0.0</tt>.
+     */
+    public static class DoubleReturnable extends CallbackInfoReturnable<Double> {
+        
+        private double returnValueD;
+        
+        public DoubleReturnable(String name, boolean cancellable, double returnValue) {
+            super(name, cancellable);
+            this.returnValueD = returnValue;
+        }
+        
+        @Override
+        public void setReturnValue(Double returnValue) throws CancellationException {
+            super.setReturnValue(returnValue);
+            this.returnValueD = returnValue != null ? returnValue.doubleValue() : 0.0;
+        }
+        
+        @Override
+        public Double getReturnValue() {
+            return Double.valueOf(this.returnValueD);
+        }
+        
+        @Override
+        public double getReturnValueD() {
+            return this.returnValueD;
+        }
+    }
+
+    /**
+     * Callback info for a RETURN injection in a method returning <tt>float</tt>,
+     * holds the return value without boxing it. Setting a <tt>null</tt>
+     * return value is treated as setting <tt>0.0F</tt>.
+     */
+    public static class FloatReturnable extends CallbackInfoReturnable<Float> {
+        
+        private float returnValueF;
+        
+        public FloatReturnable(String name, boolean cancellable, float returnValue) {
+            super(name, cancellable);
+            this.returnValueF = returnValue;
+        }
+        
+        @Override
+        public void setReturnValue(Float returnValue) throws CancellationException {
+            super.setReturnValue(returnValue);
+            this.returnValueF = returnValue != null ? returnValue.floatValue() : 0.0F;
+        }
+        
+        @Override
+        public Float getReturnValue() {
+            return Float.valueOf(this.returnValueF);
+        }
+        
+        @Override
+        public float getReturnValueF() {
+            return this.returnValueF;
+        }
+    }
+
+    /**
+     * Callback info for a RETURN injection in a method returning <tt>int</tt>,
+     * holds the return value without boxing it. Setting a <tt>null</tt>
+     * return value is treated as setting <tt>0</tt>.
+     */
+    public static class IntReturnable extends CallbackInfoReturnable<Integer> {
+        
+        private int returnValueI;
+        
+        public IntReturnable(String name, boolean cancellable, int returnValue) {
+            super(name, cancellable);
+            this.returnValueI = returnValue;
+        }
+        
+        @Override
+        public void setReturnValue(Integer returnValue) throws CancellationException {
+            super.setReturnValue(returnValue);
+            this.returnValueI = returnValue != null ? returnValue.intValue() : 0;
+        }
+        
+        @Override
+        public Integer getReturnValue() {
+            return Integer.valueOf(this.returnValueI);
+        }
+        
+        @Override
+        public int getReturnValueI() {
+            return this.returnValueI;
+        }
+    }
+
+    /**
+     * Callback info for a RETURN injection in a method returning <tt>long</tt>,
+     * holds the return value without boxing it. Setting a <tt>null</tt>
+     * return value is treated as setting <tt>0L</tt>.
+     */
+    public static class LongReturnable extends CallbackInfoReturnable<Long> {
+        
+        private long returnValueJ;
+        
+        public LongReturnable(String name, boolean cancellable, long returnValue) {
+            super(name, cancellable);
+            this.returnValueJ = returnValue;
+        }
+        
+        @Override
+        public void setReturnValue(Long returnValue) throws CancellationException {
+            super.setReturnValue(returnValue);
+            this.returnValueJ = returnValue != null ? returnValue.longValue() : 0L;
+        }
+        
+        @Override
+        public Long getReturnValue() {
+            return Long.valueOf(this.returnValueJ);
+        }
+        
+        @Override
+        public long getReturnValueJ() {
+            return this.returnValueJ;
+        }
+    }
+
+    /**
+     * Callback info for a RETURN injection in a method returning <tt>short</tt>,
+     * holds the return value without boxing it. Setting a <tt>null</tt>
+     * return value is treated as setting <tt>0</tt>.
+     */
+    public static class ShortReturnable extends CallbackInfoReturnable<Short> {
+        
+        private short returnValueS;
+        
+        public ShortReturnable(String name, boolean cancellable, short returnValue) {
+            super(name, cancellable);
+            this.returnValueS = returnValue;
+        }
+        
+        @Override
+        public void setReturnValue(Short returnValue) throws CancellationException {
+            super.setReturnValue(returnValue);
+            this.returnValueS = returnValue != null ? returnValue.shortValue() : 0;
+        }
+        
+        @Override
+        public Short getReturnValue() {
+            return Short.valueOf(this.returnValueS);
+        }
+        
+        @Override
+        public short getReturnValueS() {
+            return this.returnValueS;
+        }
+    }
+
+    /**
+     * Callback info for a RETURN injection in a method returning <tt>boolean</tt>,
+     * holds the return value without boxing it. Setting a <tt>null</tt>
+     * return value is treated as setting <tt>false</tt>.
+     */
+    public static class BooleanReturnable extends CallbackInfoReturnable<Boolean> {
+        
+        private boolean returnValueZ;
+        
+        public BooleanReturnable(String name, boolean cancellable, boolean returnValue) {
+            super(name, cancellable);
+            this.returnValueZ = returnValue;
+        }
+        
+        @Override
+        public void setReturnValue(Boolean returnValue) throws CancellationException {
+            super.setReturnValue(returnValue);
+            this.returnValueZ = returnValue != null ? returnValue.booleanValue() : false;
+        }
+        
+        @Override
+        public Boolean getReturnValue() {
+            return Boolean.valueOf(this.returnValueZ);
+        }
+        
+        @Override
+        public boolean getReturnValueZ() {
+            return this.returnValueZ;
+        }
+    }
+
     private R returnValue;
 
     public CallbackInfoReturnable(String name, boolean cancellable) {
@@ -124,6 +372,37 @@ public class CallbackInfoReturnable<R> extends CallbackInfo {
     public boolean getReturnValueZ() { if (this.returnValue == null) { return false; } return (Boolean)  this.returnValue; }
     // CHECKSTYLE:ON
 
+    /**
+     * Get the class to instantiate for a callback at a RETURN in a method with
+     * the specified return type, primitive return types use a specialised
+     * subclass which does not box the return value
+     * 
+     * @param returnType Return type of the target method
+     * @return internal name of the callback info class
+     */
+    static String getReturnableClassName(Type returnType) {
+        switch (returnType.getSort()) {
+            case Type.BOOLEAN:
+                return Type.getInternalName(BooleanReturnable.class);
+            case Type.CHAR:
+                return Type.getInternalName(CharReturnable.class);
+            case Type.BYTE:
+                return Type.getInternalName(ByteReturnable.class);
+            case Type.SHORT:
+                return Type.getInternalName(ShortReturnable.class);
+            case Type.INT:
+                return Type.getInternalName(IntReturnable.class);
+            case Type.FLOAT:
+                return Type.getInternalName(FloatReturnable.class);
+            case Type.LONG:
+                return Type.getInternalName(LongReturnable.class);
+            case Type.DOUBLE:
+                return Type.getInternalName(DoubleReturnable.class);
+            default:
+                return CallbackInfo.getCallInfoClassName(returnType);
+        }
+    }
+
     static String getReturnAccessor(Type returnType) {
         if (returnType.getSort() == Type.OBJECT || returnType.getSort() == Type.ARRAY) {
             return "getReturnValue";
@@ -30,6 +30,7 @@ import java.util.List;
 import org.spongepowered.asm.lib.Opcodes;
 import org.spongepowered.asm.lib.Type;
 import org.spongepowered.asm.lib.tree.*;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
 import org.spongepowered.asm.mixin.injection.Coerce;
 import org.spongepowered.asm.mixin.injection.InjectionNodes.InjectionNode;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
@@ -105,6 +106,13 @@ public class CallbackInjector extends Injector {
          */
         final boolean isAtReturn;
 
+        /**
+         * Class of the callback info instantiated for this callback, a
+         * primitive-specialised returnable when capturing a primitive return
+         * value
+         */
+        final String callbackInfoClass;
+
         /**
          * Callback descriptor without locals
          */
@@ -179,6 +187,7 @@ public class CallbackInjector extends Injector {
             this.argNames = argNames != null ? argNames.toArray(new String[argNames.size()]) : null;
             this.canCaptureLocals = captureLocals && locals != null && locals.length > this.frameSize;
             this.isAtReturn = this.node instanceof InsnNode && this.isValueReturnOpcode(this.node.getOpcode());
+            this.callbackInfoClass = this.isAtReturn ? CallbackInfoReturnable.getReturnableClassName(target.returnType) : target.callbackInfoClass;
             this.desc = target.getCallbackDescriptor(this.localTypes, target.arguments);
             this.descl = target.getCallbackDescriptor(true, this.localTypes, target.arguments, this.frameSize, this.extraArgs);
 
@@ -293,6 +302,12 @@ public class CallbackInjector extends Injector {
      */
     private final String identifier;
     
+    /**
+     * Number of shared callback info fields created by this injector, used to
+     * generate unique field names
+     */
+    private int sharedCallbackInfos;
+    
     /**
      * Make a new CallbackInjector with the supplied args
      * 
@@ -341,7 +356,7 @@ public class CallbackInjector extends Injector {
         LocalVariableNode[] locals = null;
 
         if (this.localCapture.isCaptureLocals() || this.localCapture.isPrintLocals()) {
-            locals = Locals.getLocalsAt(this.classNode, target.method, node.getCurrentTarget());
+            locals = target.getLocalsAt(node.getCurrentTarget());
         }
 
         this.inject(new Callback(this.methodNode, target, node, locals, this.localCapture.isCaptureLocals()));
@@ -508,7 +523,7 @@ public class CallbackInjector extends Injector {
      * @param store store the callback info in a local variable
      */
     private void createCallbackInfo(final Callback callback, boolean store) {
-        callback.add(new TypeInsnNode(Opcodes.NEW, callback.target.callbackInfoClass), true, !store);
+        callback.add(new TypeInsnNode(Opcodes.NEW, callback.callbackInfoClass), true, !store);
         callback.add(new InsnNode(Opcodes.DUP), true, true);
         
         this.invokeCallbackInfoCtor(callback, store);
@@ -523,11 +538,66 @@ public class CallbackInjector extends Injector {
     private void loadOrCreateCallbackInfo(final Callback callback) {
         if (this.cancellable) {
             callback.add(new VarInsnNode(Opcodes.ALOAD, callback.marshallVar), false, true);
+        } else if (this.canShareCallbackInfo(callback)) {
+            FieldNode field = this.createSharedCallbackInfo(callback);
+            callback.add(new FieldInsnNode(Opcodes.GETSTATIC, this.classNode.name, field.name, field.desc), false, true);
         } else {
             this.createCallbackInfo(callback, false);
         }
     }
 
+    /**
+     * A non-cancellable callback info carries no per-call state unless it is
+     * capturing a return value, so a single instance can be shared by every
+     * invocation of the injection site. Only enabled with
+     * {@link Option#SHARE_CALLBACK_INFO}.
+     * 
+     * @param callback callback handle
+     * @return true if the callback can use a shared callback info
+     */
+    private boolean canShareCallbackInfo(final Callback callback) {
+        return this.info.getContext().getEnvironment().getOption(Option.SHARE_CALLBACK_INFO)
+                && !this.cancellable && !callback.isAtReturn && (this.classNode.access & Opcodes.ACC_INTERFACE) == 0;
+    }
+
+    /**
+     * Creates a synthetic static field in the target class holding the shared
+     * callback info for the specified callback. The field is initialised at
+     * the start of the class initialiser so that it is available even if the
+     * target method is called during static initialisation.
+     * 
+     * @param callback callback handle
+     * @return generated field
+     */
+    private FieldNode createSharedCallbackInfo(final Callback callback) {
+        String name = String.format("%s$info$%d", this.methodNode.name, this.sharedCallbackInfos++);
+        String desc = "L" + callback.target.callbackInfoClass + ";";
+        FieldNode field = new FieldNode(Opcodes.ASM5, Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC,
+                name, desc, null, null);
+        this.classNode.fields.add(field);
+        
+        MethodNode clinit = ASMHelper.findMethod(this.classNode, Constants.CLINIT, "()V");
+        if (clinit == null) {
+            clinit = new MethodNode(Opcodes.ASM5, Opcodes.ACC_STATIC, Constants.CLINIT, "()V", null, null);
+            clinit.instructions.add(new InsnNode(Opcodes.RETURN));
+            this.classNode.methods.add(clinit);
+        }
+        
+        InsnList init = new InsnList();
+        init.add(new TypeInsnNode(Opcodes.NEW, callback.target.callbackInfoClass));
+        init.add(new InsnNode(Opcodes.DUP));
+        init.add(new LdcInsnNode(this.getIdentifier(callback)));
+        init.add(new InsnNode(Opcodes.ICONST_0));
+        init.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, callback.target.callbackInfoClass, Constants.CTOR,
+                CallbackInfo.getConstructorDescriptor(), false));
+        init.add(new FieldInsnNode(Opcodes.PUTSTATIC, this.classNode.name, name, desc));
+        
+        Target initialiser = this.info.getContext().getTargetMethod(clinit);
+        initialiser.insns.insert(init);
+        initialiser.setMaxStack(4);
+        return field;
+    }
+
     /**
      * If this is a ReturnEventInfo AND we are right before a RETURN opcode (so
      * we can expect the *original* return value to be on the stack, then we dup
@@ -557,10 +627,10 @@ public class CallbackInjector extends Injector {
         if (callback.isAtReturn) {
             callback.add(new VarInsnNode(callback.target.returnType.getOpcode(Opcodes.ILOAD), callback.marshallVar), true, !store);
             callback.add(new MethodInsnNode(Opcodes.INVOKESPECIAL,
-                    callback.target.callbackInfoClass, Constants.CTOR, CallbackInfo.getConstructorDescriptor(callback.target.returnType), false));
+                    callback.callbackInfoClass, Constants.CTOR, CallbackInfo.getConstructorDescriptor(callback.target.returnType), false));
         } else {
             callback.add(new MethodInsnNode(Opcodes.INVOKESPECIAL,
-                    callback.target.callbackInfoClass, Constants.CTOR, CallbackInfo.getConstructorDescriptor(), false));
+                    callback.callbackInfoClass, Constants.CTOR, CallbackInfo.getConstructorDescriptor(), false));
         }
     }
 
@@ -641,7 +711,7 @@ public class CallbackInjector extends Injector {
             callback.add(new VarInsnNode(Opcodes.ALOAD, callback.marshallVar));
             String accessor = CallbackInfoReturnable.getReturnAccessor(callback.target.returnType);
             String descriptor = CallbackInfoReturnable.getReturnDescriptor(callback.target.returnType);
-            callback.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, callback.target.callbackInfoClass, accessor, descriptor, false));
+            callback.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, callback.callbackInfoClass, accessor, descriptor, false));
             if (callback.target.returnType.getSort() == Type.OBJECT) {
                 callback.add(new TypeInsnNode(Opcodes.CHECKCAST, callback.target.returnType.getInternalName()));
             }
@@ -130,7 +130,7 @@ public abstract class Injector {
         this.sanityCheck(target, injectionPoints);
 
         List<InjectionNode> myNodes = new ArrayList<InjectionNode>();
-        for (AbstractInsnNode node : this.findTargetNodes(target.method, injectionPoints)) {
+        for (AbstractInsnNode node : this.findTargetNodes(target, injectionPoints)) {
             this.addTargetNode(target, myNodes, node);
         }
         return myNodes;
@@ -141,6 +141,7 @@ public abstract class Injector {
     }
     
     public final void inject(Target target, List<InjectionNode> nodes) {
+        target.invalidateIndex();
         for (InjectionNode node : nodes) {
             if (node.isRemoved()) {
                 if (this.info.getContext().getEnvironment().getOption(Option.DEBUG_VERBOSE)) {
@@ -156,21 +157,21 @@ public abstract class Injector {
      * Use the supplied InjectionPoints to find target insns in the target
      * method
      * 
-     * @param into Target method
+     * @param target Target method
      * @param injectionPoints List of injection points parsed from At
      *      annotations on the callback method
      * @return Target insn nodes in the target method
      */
-    protected Set<AbstractInsnNode> findTargetNodes(MethodNode into, List<InjectionPoint> injectionPoints) {
+    protected Set<AbstractInsnNode> findTargetNodes(Target target, List<InjectionPoint> injectionPoints) {
         Set<AbstractInsnNode> targetNodes = new HashSet<AbstractInsnNode>();
 
         // Defensive objects, so that injectionPoint instances can't modify our working copies
-        ReadOnlyInsnList insns = new ReadOnlyInsnList(into.instructions);
+        ReadOnlyInsnList insns = new ReadOnlyInsnList(target.insns);
         Collection<AbstractInsnNode> nodes = new ArrayList<AbstractInsnNode>(32);
 
         for (InjectionPoint injectionPoint : injectionPoints) {
             nodes.clear();
-            if (this.findTargetNodes(into, injectionPoint, insns, nodes)) {
+            if (this.findTargetNodes(target, injectionPoint, insns, nodes)) {
                 targetNodes.addAll(nodes);
             }
         }
@@ -179,8 +180,8 @@ public abstract class Injector {
         return targetNodes;
     }
 
-    protected boolean findTargetNodes(MethodNode into, InjectionPoint injectionPoint, InsnList insns, Collection<AbstractInsnNode> nodes) {
-        return injectionPoint.find(into.desc, insns, nodes);
+    protected boolean findTargetNodes(Target target, InjectionPoint injectionPoint, InsnList insns, Collection<AbstractInsnNode> nodes) {
+        return injectionPoint.find(target.method.desc, insns, nodes, target.getIndex());
     }
 
     protected void sanityCheck(Target target, List<InjectionPoint> injectionPoints) {
@@ -31,7 +31,6 @@ import org.spongepowered.asm.lib.Opcodes;
 import org.spongepowered.asm.lib.Type;
 import org.spongepowered.asm.lib.tree.AbstractInsnNode;
 import org.spongepowered.asm.lib.tree.InsnList;
-import org.spongepowered.asm.lib.tree.MethodNode;
 import org.spongepowered.asm.lib.tree.VarInsnNode;
 import org.spongepowered.asm.mixin.injection.InjectionNodes.InjectionNode;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
@@ -109,11 +108,11 @@ public class ModifyVariableInjector extends Injector {
     }
     
     @Override
-    protected boolean findTargetNodes(MethodNode into, InjectionPoint injectionPoint, InsnList insns, Collection<AbstractInsnNode> nodes) {
+    protected boolean findTargetNodes(Target target, InjectionPoint injectionPoint, InsnList insns, Collection<AbstractInsnNode> nodes) {
         if (injectionPoint instanceof ContextualInjectionPoint) {
-            return ((ContextualInjectionPoint)injectionPoint).find(this.info.getContext().getTargetMethod(into), nodes);
+            return ((ContextualInjectionPoint)injectionPoint).find(target, nodes);
         }
-        return injectionPoint.find(into.desc, insns, nodes);
+        return injectionPoint.find(target.method.desc, insns, nodes, target.getIndex());
     }
 
     /* (non-Javadoc)
@@ -24,10 +24,13 @@
  */
 package org.spongepowered.asm.mixin.injection.points;
 
+import java.util.List;
+
 import org.spongepowered.asm.lib.Opcodes;
 import org.spongepowered.asm.lib.tree.AbstractInsnNode;
 import org.spongepowered.asm.lib.tree.FieldInsnNode;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
+import org.spongepowered.asm.mixin.injection.struct.InsnIndex;
 
 /**
  * <p>This injection point searches for GETFIELD and PUTFIELD (and static
@@ -74,6 +77,11 @@ public class BeforeFieldAccess extends BeforeInvoke {
         this.opcode = data.getOpcode(-1, Opcodes.GETFIELD, Opcodes.PUTFIELD, Opcodes.GETSTATIC, Opcodes.PUTSTATIC, -1);
     }
 
+    @Override
+    protected List<AbstractInsnNode> getCandidates(InsnIndex index) {
+        return index.getFieldAccesses(this.target.name);
+    }
+
     @Override
     protected boolean matchesInsn(AbstractInsnNode insn) {
         return insn instanceof FieldInsnNode && (((FieldInsnNode) insn).getOpcode() == this.opcode || this.opcode == -1);
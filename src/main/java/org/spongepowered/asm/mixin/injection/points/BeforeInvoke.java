@@ -25,6 +25,7 @@
 package org.spongepowered.asm.mixin.injection.points;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.ListIterator;
 
 import org.apache.logging.log4j.LogManager;
@@ -34,6 +35,7 @@ import org.spongepowered.asm.lib.tree.InsnList;
 import org.spongepowered.asm.lib.tree.MethodInsnNode;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
+import org.spongepowered.asm.mixin.injection.struct.InsnIndex;
 import org.spongepowered.asm.mixin.injection.struct.MemberInfo;
 
 /**
@@ -86,11 +88,26 @@ public class BeforeInvoke extends InjectionPoint {
 
     protected final String className;
 
+    /**
+     * True if a subclass overrides {@link #inspectInsn}, see
+     * {@link #isIndexable}
+     */
+    private final boolean inspectsInsns;
+
+    /**
+     * True if a subclass overrides the deprecated
+     * {@link #matchesInsn(MemberInfo, int)}, which requires a MemberInfo to be
+     * created for each matching insn
+     */
+    private final boolean matchesMembers;
+
     public BeforeInvoke(InjectionPointData data) {
         this.target = data.getTarget();
         this.ordinal = data.getOrdinal();
         this.logging = data.get("log", false);
         this.className = this.getClass().getSimpleName();
+        this.inspectsInsns = BeforeInvoke.isOverridden(this.getClass(), "inspectInsn", String.class, InsnList.class, AbstractInsnNode.class);
+        this.matchesMembers = BeforeInvoke.isOverridden(this.getClass(), "matchesInsn", MemberInfo.class, int.class);
     }
 
     public BeforeInvoke setLogging(boolean logging) {
@@ -121,18 +138,16 @@ public class BeforeInvoke extends InjectionPoint {
             AbstractInsnNode insn = iter.next();
 
             if (this.matchesInsn(insn)) {
-                MemberInfo nodeInfo = new MemberInfo(insn);
-
                 if (this.logging) {
-                    this.logger.info("{} is considering insn {}", this.className, nodeInfo);
+                    this.logger.info("{} is considering insn {}", this.className, new MemberInfo(insn));
                 }
 
-                if (this.target.matches(nodeInfo.owner, nodeInfo.name, nodeInfo.desc)) {
+                if (this.target.matches(insn)) {
                     if (this.logging) {
                         this.logger.info("{} > found a matching insn, checking preconditions...", this.className);
                     }
                     
-                    if (this.matchesInsn(nodeInfo, ordinal)) {
+                    if (this.matchesInsn(insn, ordinal)) {
                         if (this.logging) {
                             this.logger.info("{} > > > found a matching insn at ordinal {}", this.className, ordinal);
                         }
@@ -154,6 +169,84 @@ public class BeforeInvoke extends InjectionPoint {
         return found;
     }
 
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.mixin.injection.InjectionPoint
+     *      #find(java.lang.String, org.spongepowered.asm.lib.tree.InsnList,
+     *      java.util.Collection,
+     *      org.spongepowered.asm.mixin.injection.struct.InsnIndex)
+     */
+    @Override
+    public boolean find(String desc, InsnList insns, Collection<AbstractInsnNode> nodes, InsnIndex index) {
+        if (index == null || !this.isIndexable()) {
+            return this.find(desc, insns, nodes);
+        }
+        
+        int ordinal = 0;
+        boolean found = false;
+
+        if (this.logging) {
+            this.logger.info("{} is searching for an injection point in method with descriptor {}", this.className, desc);
+        }
+
+        for (AbstractInsnNode insn : this.getCandidates(index)) {
+            if (!this.matchesInsn(insn)) {
+                continue;
+            }
+            
+            AbstractInsnNode previous = insn.getPrevious();
+            if (previous != null) {
+                this.inspectInsn(desc, insns, previous);
+            }
+            
+            if (this.logging) {
+                this.logger.info("{} is considering insn {}", this.className, new MemberInfo(insn));
+            }
+
+            if (this.target.matches(insn)) {
+                if (this.matchesInsn(insn, ordinal)) {
+                    if (this.logging) {
+                        this.logger.info("{} > > > found a matching insn at ordinal {}", this.className, ordinal);
+                    }
+                    
+                    found |= this.addInsn(insns, nodes, insn);
+
+                    if (this.ordinal == ordinal) {
+                        break;
+                    }
+                }
+
+                ordinal++;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Get whether this injection point can search the insn index. The indexed
+     * search only passes the insn immediately preceding each candidate to
+     * {@link #inspectInsn} rather than every insn in the method, so by default
+     * subclasses which override {@link #inspectInsn} use the linear search.
+     * Subclasses whose inspection only depends on the preceding insn can
+     * return true here to use the index.
+     * 
+     * @return true if the insn index can be used
+     */
+    protected boolean isIndexable() {
+        return !this.inspectsInsns;
+    }
+
+    /**
+     * Get the candidate insns from the supplied index, candidates are in insn
+     * list order and are filtered further by {@link #matchesInsn}
+     * 
+     * @param index Insn index for the method being searched
+     * @return candidate insns
+     */
+    protected List<AbstractInsnNode> getCandidates(InsnIndex index) {
+        return index.getInvocations(this.target.name);
+    }
+
     protected boolean addInsn(InsnList insns, Collection<AbstractInsnNode> nodes, AbstractInsnNode insn) {
         nodes.add(insn);
         return true;
@@ -167,10 +260,48 @@ public class BeforeInvoke extends InjectionPoint {
         // stub for subclasses
     }
 
+    /**
+     * Get whether the specified subclass overrides a method declared by
+     * BeforeInvoke
+     */
+    static boolean isOverridden(Class<?> type, String name, Class<?>... args) {
+        for (Class<?> cls = type; cls != BeforeInvoke.class; cls = cls.getSuperclass()) {
+            try {
+                cls.getDeclaredMethod(name, args);
+                return true;
+            } catch (NoSuchMethodException ex) {
+                // not declared by this class
+            }
+        }
+        return false;
+    }
+
+    protected boolean matchesInsn(AbstractInsnNode insn, int ordinal) {
+        if (!this.matchesMembers && !this.logging) {
+            return this.matchesOrdinal(ordinal);
+        }
+        return this.matchesInsn(new MemberInfo(insn), ordinal);
+    }
+
+    /**
+     * Called by the default implementation of
+     * {@link #matchesInsn(AbstractInsnNode, int)} for matching insns, only if
+     * a subclass overrides this method or logging is enabled
+     * 
+     * @param nodeInfo Member info for the matching insn
+     * @param ordinal Ordinal of the matching insn
+     * @return true if the insn should be selected
+     * @deprecated Override {@link #matchesInsn(AbstractInsnNode, int)} instead
+     */
+    @Deprecated
     protected boolean matchesInsn(MemberInfo nodeInfo, int ordinal) {
         if (this.logging) {
             this.logger.info("{} > > comparing target ordinal {} with current ordinal {}", this.className, this.ordinal, ordinal);
         }
+        return this.matchesOrdinal(ordinal);
+    }
+
+    private boolean matchesOrdinal(int ordinal) {
         return this.ordinal == -1 || this.ordinal == ordinal;
     }
 }
@@ -25,7 +25,7 @@
 package org.spongepowered.asm.mixin.injection.points;
 
 import java.util.Collection;
-import java.util.ListIterator;
+import java.util.Iterator;
 
 import org.spongepowered.asm.lib.Opcodes;
 import org.spongepowered.asm.lib.Type;
@@ -34,6 +34,7 @@ import org.spongepowered.asm.lib.tree.InsnList;
 import org.spongepowered.asm.lib.tree.InsnNode;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
+import org.spongepowered.asm.mixin.injection.struct.InsnIndex;
 
 /**
  * <p>This injection point searches for RETURN opcodes in the target method and
@@ -79,13 +80,24 @@ public class BeforeReturn extends InjectionPoint {
 
     @Override
     public boolean find(String desc, InsnList insns, Collection<AbstractInsnNode> nodes) {
+        return this.find(desc, insns, nodes, null);
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.mixin.injection.InjectionPoint
+     *      #find(java.lang.String, org.spongepowered.asm.lib.tree.InsnList,
+     *      java.util.Collection,
+     *      org.spongepowered.asm.mixin.injection.struct.InsnIndex)
+     */
+    @Override
+    public boolean find(String desc, InsnList insns, Collection<AbstractInsnNode> nodes, InsnIndex index) {
         boolean found = false;
         
         // RETURN opcode varies based on return type, thus we calculate what opcode we're actually looking for by inspecting the target method
         int returnOpcode = Type.getReturnType(desc).getOpcode(Opcodes.IRETURN);
         int ordinal = 0;
 
-        ListIterator<AbstractInsnNode> iter = insns.iterator();
+        Iterator<AbstractInsnNode> iter = index != null ? index.getInsns(returnOpcode).iterator() : insns.iterator();
         while (iter.hasNext()) {
             AbstractInsnNode insn = iter.next();
 
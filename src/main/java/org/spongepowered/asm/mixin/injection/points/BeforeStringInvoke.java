@@ -30,7 +30,7 @@ import org.spongepowered.asm.lib.tree.AbstractInsnNode;
 import org.spongepowered.asm.lib.tree.InsnList;
 import org.spongepowered.asm.lib.tree.LdcInsnNode;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
-import org.spongepowered.asm.mixin.injection.struct.MemberInfo;
+import org.spongepowered.asm.mixin.injection.struct.InsnIndex;
 
 /**
  * <p>Like {@link BeforeInvoke}, this injection point searches for
@@ -117,6 +117,22 @@ public class BeforeStringInvoke extends BeforeInvoke {
         return super.find(desc, insns, nodes);
     }
 
+    @Override
+    public boolean find(String desc, InsnList insns, Collection<AbstractInsnNode> nodes, InsnIndex index) {
+        this.foundLdc = false;
+
+        return super.find(desc, insns, nodes, index);
+    }
+
+    /**
+     * The LDC must immediately precede the invocation, so only the previous
+     * insn needs to be inspected and the index can be used
+     */
+    @Override
+    protected boolean isIndexable() {
+        return true;
+    }
+
     @Override
     protected void inspectInsn(String desc, InsnList insns, AbstractInsnNode insn) {
         if (insn instanceof LdcInsnNode) {
@@ -134,10 +150,10 @@ public class BeforeStringInvoke extends BeforeInvoke {
     }
 
     @Override
-    protected boolean matchesInsn(MemberInfo nodeInfo, int ordinal) {
+    protected boolean matchesInsn(AbstractInsnNode insn, int ordinal) {
         if (this.logging) {
             this.logger.info("{} > > found LDC \"{}\" = {}", this.className, this.ldcValue, this.foundLdc);
         }
-        return this.foundLdc && super.matchesInsn(nodeInfo, ordinal);
+        return this.foundLdc && super.matchesInsn(insn, ordinal);
     }
 }
@@ -25,7 +25,7 @@
 package org.spongepowered.asm.mixin.injection.points;
 
 import java.util.Collection;
-import java.util.ListIterator;
+import java.util.Iterator;
 
 import org.spongepowered.asm.lib.Opcodes;
 import org.spongepowered.asm.lib.tree.AbstractInsnNode;
@@ -33,6 +33,7 @@ import org.spongepowered.asm.lib.tree.InsnList;
 import org.spongepowered.asm.lib.tree.JumpInsnNode;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
+import org.spongepowered.asm.mixin.injection.struct.InsnIndex;
 
 /**
  * <p>This injection point searches for JUMP opcodes (if, try/catch, continue,
@@ -83,10 +84,24 @@ public class JumpInsnPoint extends InjectionPoint {
 
     @Override
     public boolean find(String desc, InsnList insns, Collection<AbstractInsnNode> nodes) {
+        return this.find(desc, insns, nodes, null);
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.mixin.injection.InjectionPoint
+     *      #find(java.lang.String, org.spongepowered.asm.lib.tree.InsnList,
+     *      java.util.Collection,
+     *      org.spongepowered.asm.mixin.injection.struct.InsnIndex)
+     */
+    @Override
+    public boolean find(String desc, InsnList insns, Collection<AbstractInsnNode> nodes, InsnIndex index) {
         boolean found = false;
         int ordinal = 0;
 
-        ListIterator<AbstractInsnNode> iter = insns.iterator();
+        Iterator<AbstractInsnNode> iter = insns.iterator();
+        if (index != null) {
+            iter = (this.opCode == -1 ? index.getInsnsOfType(AbstractInsnNode.JUMP_INSN) : index.getInsns(this.opCode)).iterator();
+        }
         while (iter.hasNext()) {
             AbstractInsnNode insn = iter.next();
 
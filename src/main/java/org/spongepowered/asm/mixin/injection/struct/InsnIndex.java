@@ -0,0 +1,180 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.injection.struct;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import org.spongepowered.asm.lib.tree.AbstractInsnNode;
+import org.spongepowered.asm.lib.tree.FieldInsnNode;
+import org.spongepowered.asm.lib.tree.InsnList;
+import org.spongepowered.asm.lib.tree.MethodInsnNode;
+
+/**
+ * Index of the instructions in a target method, built in a single pass so that
+ * injection points can look up candidate instructions instead of each scanning
+ * the whole method. All lists returned by the index are in instruction order.
+ * The index describes the method at the time it was built and is discarded by
+ * the {@link Target} once injection into the method begins.
+ */
+public class InsnIndex {
+    
+    /**
+     * Number of insn node types, see {@link AbstractInsnNode#getType}
+     */
+    private static final int NODE_TYPES = AbstractInsnNode.LINE + 1;
+
+    /**
+     * Size of the insn list when the index was built
+     */
+    private final int size;
+    
+    /**
+     * Instructions by opcode
+     */
+    private final List<AbstractInsnNode>[] opcodes;
+    
+    /**
+     * Instructions by node type
+     */
+    private final List<AbstractInsnNode>[] types;
+    
+    /**
+     * Method invocations by method name
+     */
+    private final Map<String, List<AbstractInsnNode>> invocations = new HashMap<String, List<AbstractInsnNode>>();
+
+    /**
+     * Field accesses by field name
+     */
+    private final Map<String, List<AbstractInsnNode>> fieldAccesses = new HashMap<String, List<AbstractInsnNode>>();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public InsnIndex(InsnList insns) {
+        this.size = insns.size();
+        this.opcodes = new List[256];
+        this.types = new List[InsnIndex.NODE_TYPES];
+        
+        for (ListIterator<AbstractInsnNode> iter = insns.iterator(); iter.hasNext();) {
+            AbstractInsnNode insn = iter.next();
+            InsnIndex.add(this.types, insn.getType(), insn);
+            
+            int opcode = insn.getOpcode();
+            if (opcode < 0) {
+                continue;
+            }
+            
+            InsnIndex.add(this.opcodes, opcode, insn);
+            if (insn instanceof MethodInsnNode) {
+                InsnIndex.add(this.invocations, ((MethodInsnNode)insn).name, insn);
+            } else if (insn instanceof FieldInsnNode) {
+                InsnIndex.add(this.fieldAccesses, ((FieldInsnNode)insn).name, insn);
+            }
+        }
+    }
+    
+    /**
+     * Get the size of the insn list at the time the index was built
+     */
+    public int size() {
+        return this.size;
+    }
+    
+    /**
+     * Get all instructions with the specified opcode
+     * 
+     * @param opcode opcode to find
+     * @return matching instructions
+     */
+    public List<AbstractInsnNode> getInsns(int opcode) {
+        return InsnIndex.get(this.opcodes, opcode);
+    }
+    
+    /**
+     * Get all instructions of the specified node type, for example
+     * {@link AbstractInsnNode#JUMP_INSN}
+     * 
+     * @param type node type to find
+     * @return matching instructions
+     */
+    public List<AbstractInsnNode> getInsnsOfType(int type) {
+        return InsnIndex.get(this.types, type);
+    }
+    
+    /**
+     * Get all method invocations, optionally filtered by name
+     * 
+     * @param name Method name, or null to return all invocations
+     * @return matching instructions
+     */
+    public List<AbstractInsnNode> getInvocations(String name) {
+        return name != null ? InsnIndex.get(this.invocations, name) : this.getInsnsOfType(AbstractInsnNode.METHOD_INSN);
+    }
+    
+    /**
+     * Get all field accesses, optionally filtered by name
+     * 
+     * @param name Field name, or null to return all field accesses
+     * @return matching instructions
+     */
+    public List<AbstractInsnNode> getFieldAccesses(String name) {
+        return name != null ? InsnIndex.get(this.fieldAccesses, name) : this.getInsnsOfType(AbstractInsnNode.FIELD_INSN);
+    }
+    
+    private static void add(List<AbstractInsnNode>[] lists, int index, AbstractInsnNode insn) {
+        if (lists[index] == null) {
+            lists[index] = new ArrayList<AbstractInsnNode>();
+        }
+        lists[index].add(insn);
+    }
+    
+    private static <K> void add(Map<K, List<AbstractInsnNode>> map, K key, AbstractInsnNode insn) {
+        List<AbstractInsnNode> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<AbstractInsnNode>();
+            map.put(key, list);
+        }
+        list.add(insn);
+    }
+    
+    private static List<AbstractInsnNode> get(List<AbstractInsnNode>[] lists, int index) {
+        if (index < 0 || index >= lists.length || lists[index] == null) {
+            return Collections.<AbstractInsnNode>emptyList();
+        }
+        return Collections.unmodifiableList(lists[index]);
+    }
+    
+    private static <K> List<AbstractInsnNode> get(Map<K, List<AbstractInsnNode>> map, K key) {
+        List<AbstractInsnNode> list = map.get(key);
+        if (list == null) {
+            return Collections.<AbstractInsnNode>emptyList();
+        }
+        return Collections.unmodifiableList(list);
+    }
+}
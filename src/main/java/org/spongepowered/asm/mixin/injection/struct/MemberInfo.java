@@ -24,6 +24,8 @@
  */
 package org.spongepowered.asm.mixin.injection.struct;
 
+import java.util.regex.Pattern;
+
 import org.spongepowered.asm.lib.Type;
 import org.spongepowered.asm.lib.tree.AbstractInsnNode;
 import org.spongepowered.asm.lib.tree.FieldInsnNode;
@@ -34,6 +36,9 @@ import org.spongepowered.asm.mixin.throwables.MixinException;
 import org.spongepowered.asm.obfuscation.SrgMethod;
 import org.spongepowered.asm.util.SignaturePrinter;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * <p>Information bundle about a member (method or field) parsed from a String
  * token in another annotation, this is used where target members need to be
@@ -76,6 +81,27 @@ import org.spongepowered.asm.util.SignaturePrinter;
  */
 public class MemberInfo {
     
+    /**
+     * Maximum number of parsed members to retain in {@link #parsed}
+     */
+    private static final int MAX_CACHED_MEMBERS = 4096;
+    
+    private static final Pattern WHITESPACE = Pattern.compile("\\s");
+    
+    private static final Pattern VALID_OWNER = Pattern.compile("(?i)^[\\w\\p{Sc}/]+$");
+    
+    private static final Pattern VALID_NAME = Pattern.compile("(?i)^<?[\\w\\p{Sc}]+>?$");
+    
+    private static final Pattern VALID_DESC = Pattern.compile("^(\\([\\w\\p{Sc}\\[/;]*\\))?\\[?[\\w\\p{Sc}/;]+$");
+    
+    /**
+     * Members parsed so far, keyed by the string they were parsed from after
+     * remapping. Members are immutable so instances are shared between callers
+     */
+    private static final Cache<String, MemberInfo> parsed = CacheBuilder.newBuilder()
+            .maximumSize(MemberInfo.MAX_CACHED_MEMBERS)
+            .build();
+    
     /**
      * Member owner in internal form but without L;, can be null
      */
@@ -281,7 +307,7 @@ public class MemberInfo {
     public MemberInfo validate() throws InvalidMemberDescriptorException {
         // Extremely naive class name validation, just to spot really egregious errors
         if (this.owner != null) {
-            if (!this.owner.matches("(?i)^[\\w\\p{Sc}/]+$")) {
+            if (!MemberInfo.VALID_OWNER.matcher(this.owner).matches()) {
                 throw new InvalidMemberDescriptorException("Invalid owner: " + this.owner);
             }
             try {
@@ -294,12 +320,12 @@ public class MemberInfo {
         }
         
         // Also naive validation, we're looking for stupid errors here
-        if (this.name != null && !this.name.matches("(?i)^<?[\\w\\p{Sc}]+>?$")) {
+        if (this.name != null && !MemberInfo.VALID_NAME.matcher(this.name).matches()) {
             throw new InvalidMemberDescriptorException("Invalid name: " + this.name);
         }
         
         if (this.desc != null) {
-            if (!this.desc.matches("^(\\([\\w\\p{Sc}\\[/;]*\\))?\\[?[\\w\\p{Sc}/;]+$")) {
+            if (!MemberInfo.VALID_DESC.matcher(this.desc).matches()) {
                 throw new InvalidMemberDescriptorException("Invalid descriptor: " + this.desc);
             }
             if (this.isField()) {
@@ -367,6 +393,36 @@ public class MemberInfo {
         return ordinal == 0 || this.matchAll;
     }
 
+    /**
+     * Test whether this MemberInfo matches the owner, name and descriptor of
+     * the supplied insn, which must be a MethodInsnNode or FieldInsnNode. This
+     * is equivalent to <tt>matches(new MemberInfo(insn))</tt> but compares the
+     * insn's fields directly without allocating.
+     * 
+     * @param insn instruction node to compare with
+     * @return true if all non-null values in this reference match the insn
+     */
+    public boolean matches(AbstractInsnNode insn) {
+        if (insn instanceof MethodInsnNode) {
+            MethodInsnNode methodNode = (MethodInsnNode) insn;
+            return this.matchesMember(methodNode.owner, methodNode.name, methodNode.desc);
+        } else if (insn instanceof FieldInsnNode) {
+            FieldInsnNode fieldNode = (FieldInsnNode) insn;
+            return this.matchesMember(fieldNode.owner, fieldNode.name, fieldNode.desc);
+        }
+        throw new IllegalArgumentException("insn must be an instance of MethodInsnNode or FieldInsnNode");
+    }
+    
+    private boolean matchesMember(String owner, String name, String desc) {
+        // Name is the most selective so test it first, insn strings are shared
+        // per class by the ClassReader so their hashes are usually cached
+        return MemberInfo.equal(this.name, name) && MemberInfo.equal(this.desc, desc) && MemberInfo.equal(this.owner, owner);
+    }
+    
+    private static boolean equal(String expected, String actual) {
+        return expected == null || actual == null || expected == actual || (expected.hashCode() == actual.hashCode() && expected.equals(actual));
+    }
+
     /**
      * Test whether this MemberInfo matches the supplied values. Null values are
      * ignored.
@@ -463,23 +519,40 @@ public class MemberInfo {
     }
     
     /**
-     * Parse a MemberInfo from a string
+     * Parse a MemberInfo from a string. The string is remapped first and the
+     * parsed member is then shared with any other caller which parses the same
+     * (remapped) string
      * 
-     * @param name String to parse MemberInfo from
+     * @param string String to parse MemberInfo from
      * @param refMapper Reference mapper to use
      * @param mixinClass Mixin class to use for remapping
      * @return parsed MemberInfo
      */
-    private static MemberInfo parse(String name, ReferenceMapper refMapper, String mixinClass) {
-        String desc = null;
-        String owner = null;
-        
-        name = name.replaceAll("\\s", "");
+    private static MemberInfo parse(String string, ReferenceMapper refMapper, String mixinClass) {
+        String name = MemberInfo.WHITESPACE.matcher(string).replaceAll("");
 
         if (refMapper != null) {
             name = refMapper.remap(mixinClass, name);
         }
         
+        MemberInfo member = MemberInfo.parsed.getIfPresent(name);
+        if (member == null) {
+            member = MemberInfo.parseMember(name);
+            MemberInfo.parsed.put(name, member);
+        }
+        return member;
+    }
+    
+    /**
+     * Parse a MemberInfo from a remapped string with whitespace removed
+     * 
+     * @param name String to parse MemberInfo from
+     * @return parsed MemberInfo
+     */
+    private static MemberInfo parseMember(String name) {
+        String desc = null;
+        String owner = null;
+        
         int lastDotPos = name.lastIndexOf('.');
         int semiColonPos = name.indexOf(';');
         if (lastDotPos > -1) {
@@ -28,10 +28,13 @@ import org.spongepowered.asm.lib.Type;
 import org.spongepowered.asm.lib.tree.AbstractInsnNode;
 import org.spongepowered.asm.lib.tree.ClassNode;
 import org.spongepowered.asm.lib.tree.InsnList;
+import org.spongepowered.asm.lib.tree.LocalVariableNode;
 import org.spongepowered.asm.lib.tree.MethodNode;
 import org.spongepowered.asm.mixin.injection.InjectionNodes;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.util.ASMHelper;
+import org.spongepowered.asm.util.Locals;
+import org.spongepowered.asm.util.LocalsModel;
 
 /**
  * Information about the current injection target, mainly just convenience
@@ -95,6 +98,18 @@ public class Target implements Comparable<Target> {
      * Method's original max locals 
      */
     private final int maxLocals;
+    
+    /**
+     * Index of the method instructions, built on demand for injection point
+     * discovery
+     */
+    private InsnIndex index;
+    
+    /**
+     * Model of the locals in the method, built on demand for injectors which
+     * capture or modify locals
+     */
+    private LocalsModel locals;
 
     /**
      * Make a new Target for the supplied method
@@ -116,6 +131,47 @@ public class Target implements Comparable<Target> {
         this.callbackDescriptor = String.format("(%sL%s;)V", method.desc.substring(1, method.desc.indexOf(')')), this.callbackInfoClass);
     }
     
+    /**
+     * Get an index of the instructions in the target method for use by
+     * injection points. The index is rebuilt if it has been invalidated or the
+     * method has grown or shrunk since it was built.
+     * 
+     * @return instruction index
+     */
+    public InsnIndex getIndex() {
+        if (this.index == null || this.index.size() != this.insns.size()) {
+            this.index = new InsnIndex(this.insns);
+        }
+        return this.index;
+    }
+    
+    /**
+     * Discard the instruction index, called when instructions in the target
+     * method are about to be modified
+     */
+    public void invalidateIndex() {
+        this.index = null;
+    }
+    
+    /**
+     * Enumerate the locals at the specified position in the target method,
+     * see {@link Locals#getLocalsAt}. The locals are modelled in a single pass
+     * over the method the first time they are requested and the model is then
+     * shared by all injectors working on this target, until injected code
+     * changes the locals and the model is rebuilt.
+     * 
+     * @param node Node indicating the position at which to determine the locals
+     *      state
+     * @return A sparse array containing a view (hopefully) of the locals at the
+     *      specified location
+     */
+    public LocalVariableNode[] getLocalsAt(AbstractInsnNode node) {
+        if (this.locals == null || !this.locals.isCurrent()) {
+            this.locals = new LocalsModel(this.classNode, this.method);
+        }
+        return this.locals.getLocalsAt(node);
+    }
+    
     /**
      * Get the original max locals of the method
      * 
@@ -0,0 +1,318 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.refmap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Binary, pre-indexed form of a {@link ReferenceMapper refmap}. The index is
+ * split into one section per obfuscation context (plus one for the "default"
+ * mappings) and a section is only decoded the first time its context is used,
+ * lookups within a section are resolved using the open-addressed hash table
+ * stored in the section itself.
+ * 
+ * <p>Layout: magic, version, digest of the JSON refmap the index was written
+ * alongside, offset of the default section, number of named contexts followed
+ * by the name and offset of each. Each section contains a
+ * string table, the entry count, the slot count, the slots (entry index + 1,
+ * or 0 for an empty slot) and finally the entries as (owner, reference, value)
+ * string indices.</p>
+ */
+final class ReferenceMapIndex {
+    
+    /**
+     * A single decoded context section
+     */
+    static final class Section {
+        
+        private final ByteBuffer buffer;
+        
+        private final String[] strings;
+        
+        private final int slotMask;
+        
+        private final int slotsBase;
+        
+        private final int entriesBase;
+        
+        /**
+         * Reverse index used to resolve references with no owner
+         */
+        private final Map<String, String> references = new HashMap<String, String>();
+        
+        Section(ByteBuffer buffer, int offset, String context) {
+            this.buffer = buffer;
+            buffer.position(offset);
+            this.strings = new String[buffer.getInt()];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < this.strings.length; i++) {
+                int length = buffer.getInt();
+                if (length > bytes.length) {
+                    bytes = new byte[length * 2];
+                }
+                buffer.get(bytes, 0, length);
+                this.strings[i] = new String(bytes, 0, length, ReferenceMapIndex.UTF8);
+            }
+            int entryCount = buffer.getInt();
+            int slotCount = buffer.getInt();
+            this.slotMask = slotCount - 1;
+            this.slotsBase = buffer.position();
+            this.entriesBase = this.slotsBase + slotCount * 4;
+            
+            for (int entry = 0; entry < entryCount; entry++) {
+                ReferenceMapper.indexReference(this.references, context, this.get(entry, 0), this.get(entry, 1), this.get(entry, 2));
+            }
+        }
+        
+        String remap(String className, String reference) {
+            if (className == null) {
+                String remapped = this.references.get(reference);
+                return remapped != null ? remapped : reference;
+            }
+            
+            int hash = ReferenceMapIndex.hash(className, reference);
+            for (int slot = hash & this.slotMask;; slot = (slot + 1) & this.slotMask) {
+                int entry = this.buffer.getInt(this.slotsBase + slot * 4) - 1;
+                if (entry < 0) {
+                    return reference;
+                }
+                if (reference.equals(this.get(entry, 1)) && className.equals(this.get(entry, 0))) {
+                    return this.get(entry, 2);
+                }
+            }
+        }
+        
+        private String get(int entry, int field) {
+            return this.strings[this.buffer.getInt(this.entriesBase + (entry * 3 + field) * 4)];
+        }
+        
+    }
+    
+    static final int MAGIC = 0x52454658; // REFX
+    
+    static final int VERSION = 2;
+    
+    static final int DIGEST_SIZE = 20;
+    
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    private final ByteBuffer buffer;
+    
+    private final int defaultOffset;
+    
+    /**
+     * Section offsets for each named context 
+     */
+    private final Map<String, Integer> contextOffsets = new HashMap<String, Integer>();
+    
+    /**
+     * Sections which have been decoded so far
+     */
+    private final Map<String, Section> sections = new HashMap<String, Section>();
+    
+    private Section defaultSection;
+    
+    ReferenceMapIndex(String resource, ByteBuffer buffer, byte[] digest) {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != ReferenceMapIndex.MAGIC) {
+            throw new IllegalArgumentException("Invalid refmap index " + resource);
+        }
+        buffer.position(4);
+        if (buffer.getInt() != ReferenceMapIndex.VERSION) {
+            throw new IllegalArgumentException("Unsupported refmap index version in " + resource);
+        }
+        byte[] indexDigest = new byte[ReferenceMapIndex.DIGEST_SIZE];
+        buffer.get(indexDigest);
+        if (!Arrays.equals(indexDigest, digest)) {
+            throw new IllegalArgumentException("Refmap index for " + resource + " does not match the refmap");
+        }
+        this.defaultOffset = buffer.getInt();
+        int contextCount = buffer.getInt();
+        for (int i = 0; i < contextCount; i++) {
+            byte[] name = new byte[buffer.getInt()];
+            buffer.get(name);
+            this.contextOffsets.put(new String(name, ReferenceMapIndex.UTF8), Integer.valueOf(buffer.getInt()));
+        }
+    }
+    
+    /**
+     * Remap a reference in the specified context, falling back to the default
+     * mappings if the context is null or not present in the index
+     */
+    String remap(String context, String className, String reference) {
+        return this.getSection(context).remap(className, reference);
+    }
+    
+    private synchronized Section getSection(String context) {
+        if (context != null) {
+            Section section = this.sections.get(context);
+            if (section != null) {
+                return section;
+            }
+            Integer offset = this.contextOffsets.get(context);
+            if (offset != null) {
+                section = new Section(this.buffer, offset.intValue(), context);
+                this.sections.put(context, section);
+                return section;
+            }
+        }
+        
+        if (this.defaultSection == null) {
+            this.defaultSection = new Section(this.buffer, this.defaultOffset, null);
+        }
+        return this.defaultSection;
+    }
+    
+    /**
+     * Write an index containing the supplied default and per-context mappings
+     * 
+     * @param defaults Default mappings
+     * @param contexts Mappings for each obfuscation context
+     * @param digest Digest of the JSON refmap, see {@link #digest}
+     * @param out Stream to write to
+     * @throws IOException if the index cannot be written
+     */
+    static void write(Map<String, Map<String, String>> defaults, Map<String, Map<String, Map<String, String>>> contexts, byte[] digest,
+            OutputStream out) throws IOException {
+        List<byte[]> names = new ArrayList<byte[]>();
+        List<byte[]> sections = new ArrayList<byte[]>();
+        sections.add(ReferenceMapIndex.writeSection(defaults));
+        int headerSize = 16 + ReferenceMapIndex.DIGEST_SIZE;
+        for (Entry<String, Map<String, Map<String, String>>> context : contexts.entrySet()) {
+            byte[] name = context.getKey().getBytes(ReferenceMapIndex.UTF8);
+            names.add(name);
+            sections.add(ReferenceMapIndex.writeSection(context.getValue()));
+            headerSize += 8 + name.length;
+        }
+        
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(ReferenceMapIndex.MAGIC);
+        data.writeInt(ReferenceMapIndex.VERSION);
+        data.write(digest, 0, ReferenceMapIndex.DIGEST_SIZE);
+        int offset = headerSize;
+        data.writeInt(offset);
+        offset += sections.get(0).length;
+        data.writeInt(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            data.writeInt(names.get(i).length);
+            data.write(names.get(i));
+            data.writeInt(offset);
+            offset += sections.get(i + 1).length;
+        }
+        for (byte[] section : sections) {
+            data.write(section);
+        }
+        data.flush();
+    }
+
+    private static byte[] writeSection(Map<String, Map<String, String>> mappings) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        List<int[]> entries = new ArrayList<int[]>();
+        for (Entry<String, Map<String, String>> owner : mappings.entrySet()) {
+            for (Entry<String, String> mapping : owner.getValue().entrySet()) {
+                entries.add(new int[] {
+                    ReferenceMapIndex.intern(strings, owner.getKey()),
+                    ReferenceMapIndex.intern(strings, mapping.getKey()),
+                    ReferenceMapIndex.intern(strings, mapping.getValue()),
+                    ReferenceMapIndex.hash(owner.getKey(), mapping.getKey())
+                });
+            }
+        }
+        
+        int slotCount = 2;
+        while (slotCount < entries.size() * 2) {
+            slotCount <<= 1;
+        }
+        int[] slots = new int[slotCount];
+        for (int entry = 0; entry < entries.size(); entry++) {
+            int slot = entries.get(entry)[3] & (slotCount - 1);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            slots[slot] = entry + 1;
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(strings.size());
+        for (String string : strings.keySet()) {
+            byte[] encoded = string.getBytes(ReferenceMapIndex.UTF8);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+        }
+        out.writeInt(entries.size());
+        out.writeInt(slotCount);
+        for (int slot : slots) {
+            out.writeInt(slot);
+        }
+        for (int[] entry : entries) {
+            out.writeInt(entry[0]);
+            out.writeInt(entry[1]);
+            out.writeInt(entry[2]);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+    
+    private static int intern(Map<String, Integer> strings, String string) {
+        Integer index = strings.get(string);
+        if (index == null) {
+            index = Integer.valueOf(strings.size());
+            strings.put(string, index);
+        }
+        return index.intValue();
+    }
+    
+    /**
+     * Compute the digest of a JSON refmap which is stored in the index header,
+     * the index is only used if the digest matches the JSON it accompanies
+     * 
+     * @param json JSON refmap bytes
+     * @return digest
+     */
+    static byte[] digest(byte[] json) {
+        return Hashing.sha1().hashBytes(json).asBytes();
+    }
+    
+    static int hash(String className, String reference) {
+        int h = (className.hashCode() * 31 + reference.hashCode()) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+}
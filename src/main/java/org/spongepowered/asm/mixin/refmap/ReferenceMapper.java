@@ -24,14 +24,30 @@
  */
 package org.spongepowered.asm.mixin.refmap;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Serializable;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Charsets;
 import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
@@ -45,22 +61,41 @@ import net.minecraft.launchwrapper.Launch;
  * to allow obfuscated references in injectors and other String-defined targets
  * to be remapped to the target obfsucation environment as appropriate. If the
  * refmap is absent the environment is assumed to be deobfuscated (eg. dev-time)
- * and injections and other transformations will fail if this is not the case. 
+ * and injections and other transformations will fail if this is not the case.
+ * 
+ * <p>The AP also writes a binary index of the refmap alongside the JSON (with
+ * the {@link #INDEX_SUFFIX} suffix), which is preferred when present since it
+ * is memory-mapped and only the active obfuscation context is decoded. The
+ * index is only used if it sits beside the JSON and was written from the same
+ * JSON, otherwise the JSON is parsed.</p>
  */
 public final class ReferenceMapper implements Serializable {
     
     private static final long serialVersionUID = 2L;
+    
+    private static final Logger logger = LogManager.getLogger("mixin");
 
     /**
      * Resource to attempt to load if no source is specified explicitly 
      */
     public static final String DEFAULT_RESOURCE = "mixin.refmap.json";
     
+    /**
+     * Suffix appended to the refmap resource name to locate the binary index
+     */
+    public static final String INDEX_SUFFIX = ".idx";
+    
     /**
      * Passthrough mapper, used as failover 
      */
     public static final ReferenceMapper DEFAULT_MAPPER = new ReferenceMapper(true);
     
+    /**
+     * Refmaps which have been loaded so far, keyed by resource name, so that
+     * configs which share a refmap also share the loaded instance
+     */
+    private static final Map<String, ReferenceMapper> loaded = new HashMap<String, ReferenceMapper>();
+    
     /**
      * "Default" mappings. The set of mappings to use as "default" is specified
      * by the AP. Each entry is keyed by the owning mixin, with the value map
@@ -80,11 +115,30 @@ public final class ReferenceMapper implements Serializable {
      */
     private final transient boolean readOnly; 
     
+    /**
+     * Binary index backing this refmap, null if the refmap was read from JSON
+     */
+    private final transient ReferenceMapIndex index;
+    
+    /**
+     * Reverse index from reference to remapped reference for each context
+     * (the default mappings use the null key), used to resolve references
+     * which have no owning class. Built on demand and discarded whenever a
+     * mapping is added
+     */
+    private final transient Map<String, Map<String, String>> references = new HashMap<String, Map<String, String>>();
+    
     /**
      * Current remapping context, used as the key into {@link data}
      */
     private transient String context = null;
     
+    /**
+     * Digest of the refmap resource this refmap was read from, null if the
+     * refmap was not read from a resource
+     */
+    private transient String resourceDigest;
+    
     /**
      * Create an empty refmap
      */
@@ -99,6 +153,17 @@ public final class ReferenceMapper implements Serializable {
      */
     private ReferenceMapper(boolean readOnly) {
         this.readOnly = readOnly;
+        this.index = null;
+    }
+    
+    /**
+     * Create a readonly refmap backed by a binary index
+     * 
+     * @param index refmap index
+     */
+    private ReferenceMapper(ReferenceMapIndex index) {
+        this.readOnly = true;
+        this.index = index;
     }
     
     /**
@@ -110,6 +175,17 @@ public final class ReferenceMapper implements Serializable {
         return this.context;
     }
     
+    /**
+     * Get a digest of the contents of the resource this refmap was read from,
+     * which changes whenever the refmap changes
+     * 
+     * @return resource digest, or null if this refmap was not read from a
+     *      resource
+     */
+    public String getResourceDigest() {
+        return this.resourceDigest;
+    }
+    
     /**
      * Set the current remap context, can be null
      * 
@@ -139,26 +215,22 @@ public final class ReferenceMapper implements Serializable {
      * @return remapped reference, returns original reference if not remapped
      */
     public String remapWithContext(String context, String className, String reference) {
+        if (this.index != null) {
+            return this.index.remap(context, className, reference);
+        }
+        
         Map<String, Map<String, String>> mappings = this.mappings;
         if (context != null) {
             mappings = this.data.get(context);
             if (mappings == null) {
                 mappings = this.mappings;
+                context = null;
             }
         }
-        return this.remap(mappings, className, reference);
-    }
-    
-    /**
-     * Remap the things
-     */
-    private String remap(Map<String, Map<String, String>> mappings, String className, String reference) {
+        
         if (className == null) {
-            for (Map<String, String> mapping : mappings.values()) {
-                if (mapping.containsKey(reference)) {
-                    return mapping.get(reference);
-                }
-            }
+            String remappedReference = this.getReferences(context, mappings).get(reference);
+            return remappedReference != null ? remappedReference : reference;
         }
         
         Map<String, String> classMappings = mappings.get(className);
@@ -169,6 +241,59 @@ public final class ReferenceMapper implements Serializable {
         return remappedReference != null ? remappedReference : reference;
     }
     
+    /**
+     * Get the reverse index for the specified context, building it if required
+     */
+    private synchronized Map<String, String> getReferences(String context, Map<String, Map<String, String>> mappings) {
+        Map<String, String> references = this.references.get(context);
+        if (references == null) {
+            references = new HashMap<String, String>();
+            for (Entry<String, Map<String, String>> classMappings : mappings.entrySet()) {
+                for (Entry<String, String> mapping : classMappings.getValue().entrySet()) {
+                    ReferenceMapper.indexReference(references, context, classMappings.getKey(), mapping.getKey(), mapping.getValue());
+                }
+            }
+            this.references.put(context, references);
+        }
+        return references;
+    }
+    
+    /**
+     * Build the reverse indices for all contexts so that ambiguous references
+     * are reported when the refmap is loaded
+     */
+    private void indexReferences() {
+        this.getReferences(null, this.mappings);
+        for (Entry<String, Map<String, Map<String, String>>> context : this.data.entrySet()) {
+            this.getReferences(context.getKey(), context.getValue());
+        }
+    }
+    
+    /**
+     * Add a reference to a reverse index. References which remap to different
+     * values for different owners are ambiguous, they are reported and stored
+     * with a null value so that they are not remapped without an owner
+     * 
+     * @param references Reverse index
+     * @param context Obfuscation context, for reporting
+     * @param className Owner of the mapping, for reporting
+     * @param reference Reference
+     * @param newReference Remapped reference
+     */
+    static void indexReference(Map<String, String> references, String context, String className, String reference, String newReference) {
+        if (!references.containsKey(reference)) {
+            references.put(reference, newReference);
+            return;
+        }
+        
+        String existing = references.get(reference);
+        if (existing != null && !existing.equals(newReference)) {
+            ReferenceMapper.logger.warn("Refmap reference {} in context {} is ambiguous, {} maps it to {} but it was already mapped to {}. "
+                    + "The reference will not be remapped unless an owner is specified", reference, context, className, newReference, existing);
+            references.put(reference, null);
+        }
+    }
+    
     /**
      * Add a mapping to this refmap
      * 
@@ -195,6 +320,9 @@ public final class ReferenceMapper implements Serializable {
             mappings.put(className, classMappings);
         }
         classMappings.put(reference, newReference);
+        synchronized (this) {
+            this.references.clear();
+        }
     }
     
     /**
@@ -207,26 +335,105 @@ public final class ReferenceMapper implements Serializable {
     }
     
     /**
-     * Read a new refmap from the specified resource
+     * Write this refmap out as a binary index to the specified stream. The
+     * index records a digest of the JSON refmap it is written alongside and is
+     * ignored at runtime unless it matches the JSON
+     * 
+     * @param out Stream to write to
+     * @param json Bytes of the JSON refmap written for this refmap
+     * @throws IOException if the index cannot be written
+     */
+    public void writeIndex(OutputStream out, byte[] json) throws IOException {
+        ReferenceMapIndex.write(this.mappings, this.data, ReferenceMapIndex.digest(json), out);
+    }
+    
+    /**
+     * Read a refmap from the specified resource, refmaps are only loaded once
+     * for each resource and are then shared. The binary index is used if it is
+     * available beside the JSON and matches it, otherwise the JSON refmap is
+     * parsed
      * 
      * @param resource Resource to read from
-     * @return new refmap or {@link #DEFAULT_MAPPER} if reading fails
+     * @return refmap or {@link #DEFAULT_MAPPER} if reading fails
      */
     public static ReferenceMapper read(String resource) {
-        Reader reader = null;
+        synchronized (ReferenceMapper.loaded) {
+            ReferenceMapper mapper = ReferenceMapper.loaded.get(resource);
+            if (mapper == null) {
+                mapper = ReferenceMapper.readResource(resource);
+                ReferenceMapper.loaded.put(resource, mapper);
+            }
+            return mapper;
+        }
+    }
+    
+    private static ReferenceMapper readResource(String resource) {
+        URL url = Launch.classLoader.getResource(resource);
+        if (url == null) {
+            return ReferenceMapper.DEFAULT_MAPPER;
+        }
+        
+        byte[] json;
         try {
-            reader = new InputStreamReader(Launch.classLoader.getResourceAsStream(resource));
-            return ReferenceMapper.read(reader);
-        } catch (Exception ex) {
+            json = ReferenceMapper.readBytes(url);
+        } catch (IOException ex) {
             return ReferenceMapper.DEFAULT_MAPPER;
-        } finally {
-            if (reader != null) {
+        }
+        
+        ReferenceMapper mapper = ReferenceMapper.readIndex(resource, url, json);
+        if (mapper == null) {
+            mapper = ReferenceMapper.read(new InputStreamReader(new ByteArrayInputStream(json), Charsets.UTF_8));
+        }
+        if (mapper != ReferenceMapper.DEFAULT_MAPPER) {
+            mapper.resourceDigest = Hashing.sha1().hashBytes(json).toString();
+        }
+        return mapper;
+    }
+    
+    /**
+     * Read the binary index which sits beside the JSON refmap, memory-mapping
+     * it if the index is a file on disk. The index is resolved relative to the
+     * JSON so that it is always read from the same location
+     * 
+     * @param resource Refmap resource
+     * @param url Location of the JSON refmap
+     * @param json JSON refmap bytes, the index must have been written for them
+     * @return new refmap or null if the index is missing, invalid or was not
+     *      written for the supplied JSON
+     */
+    static ReferenceMapper readIndex(String resource, URL url, byte[] json) {
+        try {
+            String path = url.getPath();
+            URL indexUrl = new URL(url, path.substring(path.lastIndexOf('/') + 1) + ReferenceMapper.INDEX_SUFFIX);
+            
+            ByteBuffer buffer;
+            if ("file".equals(indexUrl.getProtocol())) {
+                FileInputStream in = new FileInputStream(new File(indexUrl.toURI()));
                 try {
-                    reader.close();
-                } catch (IOException ex) {
-                    // don't really care
+                    FileChannel channel = in.getChannel();
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                } finally {
+                    in.close();
                 }
+            } else {
+                buffer = ByteBuffer.wrap(ReferenceMapper.readBytes(indexUrl));
             }
+            
+            return new ReferenceMapper(new ReferenceMapIndex(resource, buffer, ReferenceMapIndex.digest(json)));
+        } catch (FileNotFoundException ex) {
+            return null;
+        } catch (Exception ex) {
+            ReferenceMapper.logger.debug("Refmap index for {} was not used: {}", resource, ex.getMessage());
+            return null;
+        }
+    }
+    
+    private static byte[] readBytes(URL url) throws IOException {
+        InputStream in = url.openStream();
+        try {
+            return ByteStreams.toByteArray(in);
+        } finally {
+            in.close();
         }
     }
     
@@ -238,7 +445,9 @@ public final class ReferenceMapper implements Serializable {
      */
     public static ReferenceMapper read(Reader reader) {
         try {
-            return new Gson().fromJson(reader, ReferenceMapper.class);
+            ReferenceMapper mapper = new Gson().fromJson(reader, ReferenceMapper.class);
+            mapper.indexReferences();
+            return mapper;
         } catch (Exception ex) {
             return ReferenceMapper.DEFAULT_MAPPER;
         }
@@ -0,0 +1,185 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Memoised superclass queries over {@link ClassInfo}. The superclasses of each
+ * class are resolved once into an ancestor map, so that testing whether one
+ * class extends another is a single lookup rather than a walk of the
+ * hierarchy. Common superclass results are cached per pair of types. When a
+ * class gains a mixin, only the results which depend on that class or on the
+ * mixin are discarded.
+ */
+final class ClassHierarchy {
+    
+    private static final String JAVA_LANG_OBJECT = "java/lang/Object";
+    
+    /**
+     * Ancestors of each class, mapping the name of each superclass (or
+     * superclass target) to the ClassInfo which {@link
+     * ClassInfo#findSuperClass} returns for it
+     */
+    private final ConcurrentMap<ClassInfo, Map<String, ClassInfo>> ancestors = new ConcurrentHashMap<ClassInfo, Map<String, ClassInfo>>();
+    
+    /**
+     * Common superclass for each pair of types, keyed by both type names
+     */
+    private final ConcurrentMap<String, String> commonSuperClasses = new ConcurrentHashMap<String, String>();
+    
+    /**
+     * Find the specified superclass in the hierarchy of the supplied class,
+     * equivalent to a search with {@link ClassInfo.Traversal#NONE}
+     * 
+     * @param classInfo Class to search from
+     * @param superClass Superclass name to search for
+     * @return Matched superclass or null if not found
+     */
+    ClassInfo findSuperClass(ClassInfo classInfo, String superClass) {
+        return this.getAncestors(classInfo).get(superClass);
+    }
+    
+    /**
+     * Get the common superclass of the supplied types, as required by
+     * {@link MixinClassWriter}
+     * 
+     * @param type1 First type
+     * @param type2 Second type
+     * @return name of the common superclass
+     */
+    String getCommonSuperClass(String type1, String type2) {
+        String key = type1 + ";" + type2;
+        String commonSuperClass = this.commonSuperClasses.get(key);
+        if (commonSuperClass == null) {
+            commonSuperClass = this.findCommonSuperClass(type1, type2);
+            this.commonSuperClasses.put(key, commonSuperClass);
+        }
+        return commonSuperClass;
+    }
+    
+    /**
+     * Discard the cached results for the supplied classes and their subtypes.
+     * A subtype is any class whose ancestors include one of the classes,
+     * either by name or as the superclass which was matched for a superclass
+     * target.
+     * 
+     * @param classes Classes which changed
+     */
+    void invalidate(ClassInfo... classes) {
+        Set<String> invalidated = new HashSet<String>();
+        for (ClassInfo classInfo : classes) {
+            invalidated.add(classInfo.getName());
+        }
+        
+        for (Iterator<Entry<ClassInfo, Map<String, ClassInfo>>> iter = this.ancestors.entrySet().iterator(); iter.hasNext();) {
+            Entry<ClassInfo, Map<String, ClassInfo>> entry = iter.next();
+            if (ClassHierarchy.dependsOn(entry.getKey(), entry.getValue(), classes)) {
+                invalidated.add(entry.getKey().getName());
+                iter.remove();
+            }
+        }
+        
+        for (Iterator<String> iter = this.commonSuperClasses.keySet().iterator(); iter.hasNext();) {
+            String key = iter.next();
+            int separator = key.indexOf(';');
+            if (invalidated.contains(key.substring(0, separator)) || invalidated.contains(key.substring(separator + 1))) {
+                iter.remove();
+            }
+        }
+    }
+    
+    private static boolean dependsOn(ClassInfo classInfo, Map<String, ClassInfo> ancestors, ClassInfo[] classes) {
+        for (ClassInfo changed : classes) {
+            if (classInfo == changed || ancestors.containsKey(changed.getName()) || ancestors.containsValue(changed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private String findCommonSuperClass(String type1, String type2) {
+        ClassInfo c = ClassInfo.forName(type1);
+        ClassInfo d = ClassInfo.forName(type2);
+        
+        if (c.hasSuperClass(d)) {
+            return type2;
+        }
+        if (d.hasSuperClass(c)) {
+            return type1;
+        }
+        if (c.isInterface() || d.isInterface()) {
+            return ClassHierarchy.JAVA_LANG_OBJECT;
+        }
+        
+        do {
+            c = c.getSuperClass();
+            if (c == null) {
+                return ClassHierarchy.JAVA_LANG_OBJECT;
+            }
+        } while (!d.hasSuperClass(c));
+        
+        return c.getName();
+    }
+    
+    private Map<String, ClassInfo> getAncestors(ClassInfo classInfo) {
+        Map<String, ClassInfo> ancestors = this.ancestors.get(classInfo);
+        if (ancestors == null) {
+            ancestors = this.computeAncestors(classInfo);
+            this.ancestors.put(classInfo, ancestors);
+        }
+        return ancestors;
+    }
+    
+    /**
+     * Superclass targets are visited depth-first in the same order as the
+     * uncached search, and the first class found for each name is kept
+     */
+    private Map<String, ClassInfo> computeAncestors(ClassInfo classInfo) {
+        Map<String, ClassInfo> ancestors = new HashMap<String, ClassInfo>();
+        ClassInfo superClassInfo = classInfo.getSuperClass();
+        if (superClassInfo != null) {
+            for (ClassInfo superTarget : superClassInfo.getTargets()) {
+                if (!ancestors.containsKey(superTarget.getName())) {
+                    ancestors.put(superTarget.getName(), superClassInfo);
+                }
+                for (Entry<String, ClassInfo> ancestor : this.getAncestors(superTarget).entrySet()) {
+                    if (!ancestors.containsKey(ancestor.getKey())) {
+                        ancestors.put(ancestor.getKey(), ancestor.getValue());
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableMap(ancestors);
+    }
+}
@@ -25,6 +25,7 @@
 package org.spongepowered.asm.mixin.transformer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -32,9 +33,17 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.spongepowered.asm.lib.ClassReader;
+import org.spongepowered.asm.lib.ClassVisitor;
+import org.spongepowered.asm.lib.FieldVisitor;
+import org.spongepowered.asm.lib.MethodVisitor;
 import org.spongepowered.asm.lib.Opcodes;
 import org.spongepowered.asm.lib.tree.AbstractInsnNode;
 import org.spongepowered.asm.lib.tree.ClassNode;
@@ -49,6 +58,8 @@ import org.spongepowered.asm.mixin.Mutable;
 import org.spongepowered.asm.mixin.transformer.ClassInfo.Member.Type;
 import org.spongepowered.asm.mixin.transformer.MixinInfo.MixinClassNode;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
@@ -292,7 +303,9 @@ public class ClassInfo extends TreeInfo {
         }
 
         public void renameTo(String name) {
+            String oldName = this.currentName;
             this.currentName = name;
+            this.getOwner().onRenamed(this, oldName);
         }
 
         public boolean equals(String name, String desc) {
@@ -334,10 +347,16 @@ public class ClassInfo extends TreeInfo {
     public class Method extends Member {
 
         private final List<FrameData> frames;
+        
+        /**
+         * Class to read frames from on demand, null if the frames are known
+         */
+        private final ClassInfo frameSource;
 
         public Method(Member member) {
             super(member);
             this.frames = member instanceof Method ? ((Method)member).frames : null;
+            this.frameSource = member instanceof Method ? ((Method)member).frameSource : null;
         }
 
         public Method(MethodNode method) {
@@ -346,36 +365,38 @@ public class ClassInfo extends TreeInfo {
 
         public Method(MethodNode method, boolean injected) {
             super(Type.METHOD, method.name, method.desc, method.access, injected);
-            this.frames = this.gatherFrames(method);
+            this.frames = ClassInfo.gatherFrames(method);
+            this.frameSource = null;
         }
 
         public Method(String name, String desc) {
             super(Type.METHOD, name, desc, Opcodes.ACC_PUBLIC, false);
             this.frames = null;
+            this.frameSource = null;
         }
 
         public Method(String name, String desc, int access) {
             super(Type.METHOD, name, desc, access, false);
             this.frames = null;
+            this.frameSource = null;
         }
 
         public Method(String name, String desc, int access, boolean injected) {
             super(Type.METHOD, name, desc, access, injected);
             this.frames = null;
+            this.frameSource = null;
         }
 
-        private List<FrameData> gatherFrames(MethodNode method) {
-            List<FrameData> frames = new ArrayList<FrameData>();
-            for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
-                AbstractInsnNode insn = iter.next();
-                if (insn instanceof FrameNode) {
-                    frames.add(new FrameData(method.instructions.indexOf(insn), (FrameNode)insn));
-                }
-            }
-            return frames;
+        Method(String name, String desc, int access, ClassInfo frameSource) {
+            super(Type.METHOD, name, desc, access, false);
+            this.frames = null;
+            this.frameSource = frameSource;
         }
 
         public List<FrameData> getFrames() {
+            if (this.frameSource != null) {
+                return this.frameSource.getFrames(this.getOriginalName(), this.getDesc());
+            }
             return this.frames;
         }
 
@@ -464,17 +485,232 @@ public class ClassInfo extends TreeInfo {
         }
     }
 
+    /**
+     * Index of the members of a class by name, so that lookups only need to
+     * check the descriptors of overloads rather than scanning every member.
+     * Each member is indexed under both its original and its current name.
+     * 
+     * @param <M> member type
+     */
+    static class MemberIndex<M extends Member> {
+        
+        private final ConcurrentMap<String, List<M>> members = new ConcurrentHashMap<String, List<M>>();
+        
+        void add(M member) {
+            this.put(member.getOriginalName(), member);
+            if (!member.getName().equals(member.getOriginalName())) {
+                this.put(member.getName(), member);
+            }
+        }
+        
+        /**
+         * Re-index a member which was renamed, members which are not in this
+         * index (eg. copies) are ignored
+         * 
+         * @param member Renamed member
+         * @param oldName Previous current name of the member
+         * @return true if the member was re-indexed
+         */
+        synchronized boolean rename(M member, String oldName) {
+            if (!this.contains(member.getOriginalName(), member)) {
+                return false;
+            }
+            
+            if (!oldName.equals(member.getOriginalName())) {
+                List<M> bucket = this.members.get(oldName);
+                int index = bucket != null ? this.indexOf(bucket, member) : -1;
+                if (index > -1) {
+                    bucket.remove(index);
+                }
+            }
+            if (!member.getName().equals(member.getOriginalName())) {
+                this.put(member.getName(), member);
+            }
+            return true;
+        }
+        
+        M find(String name, String desc, int flags) {
+            List<M> bucket = this.members.get(name);
+            if (bucket != null) {
+                for (M member : bucket) {
+                    if (member.equals(name, desc) && member.matchesFlags(flags)) {
+                        return member;
+                    }
+                }
+            }
+            return null;
+        }
+        
+        private boolean contains(String name, M member) {
+            List<M> bucket = this.members.get(name);
+            return bucket != null && this.indexOf(bucket, member) > -1;
+        }
+        
+        private synchronized void put(String name, M member) {
+            List<M> bucket = this.members.get(name);
+            if (bucket == null) {
+                bucket = new CopyOnWriteArrayList<M>();
+                this.members.put(name, bucket);
+            }
+            if (this.indexOf(bucket, member) < 0) {
+                bucket.add(member);
+            }
+        }
+        
+        /**
+         * Members compare equal by name and descriptor so find by identity
+         */
+        private int indexOf(List<M> bucket, M member) {
+            for (int index = 0; index < bucket.size(); index++) {
+                if (bucket.get(index) == member) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+    }
+    
+    /**
+     * Key for a hierarchy lookup in {@link ClassInfo#failedLookups}
+     */
+    static final class LookupKey {
+        
+        private final String name;
+        
+        private final String desc;
+        
+        private final boolean includeThisClass;
+        
+        private final Traversal traversal;
+        
+        private final int flags;
+        
+        private final Type type;
+        
+        private final int hash;
+        
+        LookupKey(String name, String desc, boolean includeThisClass, Traversal traversal, int flags, Type type) {
+            this.name = name;
+            this.desc = desc;
+            this.includeThisClass = includeThisClass;
+            this.traversal = traversal;
+            this.flags = flags;
+            this.type = type;
+            
+            int hash = name.hashCode() * 31 + (desc != null ? desc.hashCode() : 0);
+            hash = hash * 31 + (flags << 3 | traversal.ordinal() << 1 | (includeThisClass ? 1 : 0));
+            this.hash = hash * 31 + type.ordinal();
+        }
+        
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof LookupKey)) {
+                return false;
+            }
+            LookupKey other = (LookupKey)obj;
+            return this.hash == other.hash && this.includeThisClass == other.includeThisClass && this.traversal == other.traversal
+                    && this.flags == other.flags && this.type == other.type && this.name.equals(other.name)
+                    && (this.desc == null ? other.desc == null : this.desc.equals(other.desc));
+        }
+    }
+
+    /**
+     * Builds a ClassInfo directly from class bytecode, visiting only the class
+     * header and member declarations. Frames for the methods of the class are
+     * read on demand.
+     */
+    static class MetadataReader extends ClassVisitor {
+        
+        /**
+         * Info being built, created when the header is visited 
+         */
+        private ClassInfo info;
+        
+        /**
+         * True if the class declares an enclosing method, in which case fields
+         * are not inspected
+         */
+        private boolean hasOuterClass;
+
+        MetadataReader() {
+            super(Opcodes.ASM5);
+        }
+        
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.info = new ClassInfo(name, superName, access, interfaces);
+        }
+        
+        @Override
+        public void visitOuterClass(String owner, String name, String desc) {
+            this.info.outerName = owner;
+            this.hasOuterClass = true;
+        }
+        
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            if (!this.hasOuterClass) {
+                if ((access & Opcodes.ACC_SYNTHETIC) != 0 && name.startsWith("this$")) {
+                    this.info.isProbablyStatic = false;
+                    this.info.outerName = desc.startsWith("L") ? desc.substring(1, desc.length() - 1) : desc;
+                }
+                
+                this.info.addMember(this.info.new Field(name, desc, access));
+            }
+            return null;
+        }
+        
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            if (!name.startsWith("<")) {
+                this.info.addMember(this.info.new Method(name, desc, access, this.info));
+            }
+            return null;
+        }
+
+        /**
+         * Read metadata for the supplied class bytecode
+         * 
+         * @param classBytes Class bytecode
+         * @return new ClassInfo
+         */
+        static ClassInfo read(byte[] classBytes) {
+            MetadataReader reader = new MetadataReader();
+            new ClassReader(classBytes).accept(reader, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return reader.info;
+        }
+    }
+
     private static final Logger logger = LogManager.getLogger("mixin");
 
     private static final String JAVA_LANG_OBJECT = "java/lang/Object";
+    
+    /**
+     * Maximum number of failed hierarchy lookups to retain per class
+     */
+    static final int MAX_FAILED_LOOKUPS = 256;
 
     /**
      * Loading and parsing classes is expensive, so keep a cache of all the
-     * information we generate
+     * information we generate. Failed lookups are cached as null, so all
+     * access is synchronised on the map itself.
      */
     private static final Map<String, ClassInfo> cache = new HashMap<String, ClassInfo>();
 
     private static final ClassInfo OBJECT = new ClassInfo();
+    
+    /**
+     * Memoised superclass queries
+     */
+    private static final ClassHierarchy hierarchy = new ClassHierarchy();
 
     static {
         ClassInfo.cache.put(ClassInfo.JAVA_LANG_OBJECT, ClassInfo.OBJECT);
@@ -493,13 +729,13 @@ public class ClassInfo extends TreeInfo {
     /**
      * Outer class name
      */
-    private final String outerName;
+    private String outerName;
 
     /**
      * True either if this is not an inner class or if it is an inner class but
      * does not contain a reference to its outer class.
      */
-    private final boolean isProbablyStatic;
+    private boolean isProbablyStatic;
 
     /**
      * Interfaces
@@ -515,17 +751,56 @@ public class ClassInfo extends TreeInfo {
      * Public and protected fields in this class
      */
     private final Set<Field> fields;
+    
+    /**
+     * Index of {@link #methods} by name
+     */
+    private final MemberIndex<Method> methodIndex = new MemberIndex<Method>();
+    
+    /**
+     * Index of {@link #fields} by name
+     */
+    private final MemberIndex<Field> fieldIndex = new MemberIndex<Field>();
+    
+    /**
+     * Incremented whenever a member, interface or mixin is added to this class
+     * or to any class its hierarchy lookups visit, or a member is renamed.
+     * Invalidates cached failed hierarchy lookups and cached hierarchy hashes
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+    
+    /**
+     * Generation at which this class was last registered with the classes in
+     * its hierarchy, see {@link #trackHierarchy}
+     */
+    private volatile int trackedGeneration = -1;
+    
+    /**
+     * Classes whose hierarchy lookups visit this class, their generation is
+     * incremented along with ours
+     */
+    private final Set<ClassInfo> dependents = Collections.newSetFromMap(new ConcurrentHashMap<ClassInfo, Boolean>());
+    
+    /**
+     * Hierarchy lookups which failed, mapped to the {@link #generation} at
+     * which they were attempted. Bounded since the set of names looked up is
+     * open-ended
+     */
+    private final Cache<LookupKey, Integer> failedLookups = CacheBuilder.newBuilder()
+            .concurrencyLevel(1)
+            .maximumSize(ClassInfo.MAX_FAILED_LOOKUPS)
+            .build();
 
     /**
      * Mixins which target this class
      */
-    private final Set<MixinInfo> mixins = new HashSet<MixinInfo>();
+    private final Set<MixinInfo> mixins = Collections.newSetFromMap(new ConcurrentHashMap<MixinInfo, Boolean>());
 
     /**
      * Map of mixin types to corresponding supertypes, to avoid repeated
      * lookups
      */
-    private final Map<ClassInfo, ClassInfo> correspondingTypes = new HashMap<ClassInfo, ClassInfo>();
+    private final Map<ClassInfo, ClassInfo> correspondingTypes = new ConcurrentHashMap<ClassInfo, ClassInfo>();
 
     /**
      * Mixin info if this class is a mixin itself
@@ -556,6 +831,12 @@ public class ClassInfo extends TreeInfo {
      * Outer class reference, not initialised until required
      */
     private ClassInfo outerClass;
+    
+    /**
+     * Frames for each method, keyed by name and descriptor, for classes read
+     * by the {@link MetadataReader}. Not initialised until required
+     */
+    private Map<String, List<FrameData>> methodFrames;
 
     /**
      * Private constructor used to initialise the ClassInfo for {@link Object}
@@ -584,6 +865,10 @@ public class ClassInfo extends TreeInfo {
         this.access = Opcodes.ACC_PUBLIC;
         this.isMixin = false;
         this.mixin = null;
+        
+        for (Method method : this.methods) {
+            this.methodIndex.add(method);
+        }
     }
 
     /**
@@ -594,10 +879,10 @@ public class ClassInfo extends TreeInfo {
     private ClassInfo(ClassNode classNode) {
         this.name = classNode.name;
         this.superName = classNode.superName != null ? classNode.superName : ClassInfo.JAVA_LANG_OBJECT;
-        this.methods = new HashSet<Method>();
-        this.fields = new HashSet<Field>();
+        this.methods = Collections.newSetFromMap(new ConcurrentHashMap<Method, Boolean>());
+        this.fields = Collections.newSetFromMap(new ConcurrentHashMap<Field, Boolean>());
         this.isInterface = ((classNode.access & Opcodes.ACC_INTERFACE) != 0);
-        this.interfaces = new HashSet<String>();
+        this.interfaces = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
         this.access = classNode.access;
         this.isMixin = classNode instanceof MixinClassNode;
         this.mixin = this.isMixin ? ((MixinClassNode)classNode).getMixin() : null;
@@ -622,7 +907,7 @@ public class ClassInfo extends TreeInfo {
                     }
                 }
 
-                this.fields.add(new Field(field, this.isMixin));
+                this.addMember(new Field(field, this.isMixin));
             }
         }
 
@@ -630,17 +915,196 @@ public class ClassInfo extends TreeInfo {
         this.outerName = outerName;
     }
 
+    /**
+     * Initialise a ClassInfo from the class header, members are added by the
+     * {@link MetadataReader}
+     * 
+     * @param name Class name
+     * @param superName Superclass name
+     * @param access Access flags
+     * @param interfaces Interfaces
+     */
+    private ClassInfo(String name, String superName, int access, String[] interfaces) {
+        this.name = name;
+        this.superName = superName != null ? superName : ClassInfo.JAVA_LANG_OBJECT;
+        this.methods = Collections.newSetFromMap(new ConcurrentHashMap<Method, Boolean>());
+        this.fields = Collections.newSetFromMap(new ConcurrentHashMap<Field, Boolean>());
+        this.isInterface = ((access & Opcodes.ACC_INTERFACE) != 0);
+        this.interfaces = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.access = access;
+        this.isMixin = false;
+        this.mixin = null;
+        this.isProbablyStatic = true;
+
+        if (interfaces != null) {
+            this.interfaces.addAll(Arrays.asList(interfaces));
+        }
+    }
+
+    private static List<FrameData> gatherFrames(MethodNode method) {
+        List<FrameData> frames = new ArrayList<FrameData>();
+        for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
+            AbstractInsnNode insn = iter.next();
+            if (insn instanceof FrameNode) {
+                frames.add(new FrameData(method.instructions.indexOf(insn), (FrameNode)insn));
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Get frames for a method of a class which was read by the {@link
+     * MetadataReader}. The first call parses the class in full, running the
+     * complete transformer chain, and gathers the frames for all methods.
+     * 
+     * @param methodName Original method name
+     * @param methodDesc Method descriptor
+     * @return frames for the method, empty if the method was not found
+     */
+    synchronized List<FrameData> getFrames(String methodName, String methodDesc) {
+        if (this.methodFrames == null) {
+            this.methodFrames = new HashMap<String, List<FrameData>>();
+            try {
+                ClassNode classNode = TreeInfo.getClassNode(this.name);
+                for (MethodNode method : classNode.methods) {
+                    this.methodFrames.put(method.name + method.desc, ClassInfo.gatherFrames(method));
+                }
+            } catch (Exception ex) {
+                ClassInfo.logger.warn("Could not read frames for {}: {}", this.name, ex.getMessage());
+            }
+        }
+        
+        List<FrameData> frames = this.methodFrames.get(methodName + methodDesc);
+        return frames != null ? frames : Collections.<FrameData>emptyList();
+    }
+
     void addInterface(String iface) {
         this.interfaces.add(iface);
+        this.invalidateLookups();
     }
 
     void addMethod(MethodNode method) {
         this.addMethod(method, true);
+        this.invalidateLookups();
     }
 
     private void addMethod(MethodNode method, boolean injected) {
         if (!method.name.startsWith("<")) {
-            this.methods.add(new Method(method, injected));
+            this.addMember(new Method(method, injected));
+        }
+    }
+    
+    private void addMember(Method method) {
+        this.methods.add(method);
+        this.methodIndex.add(method);
+    }
+    
+    private void addMember(Field field) {
+        this.fields.add(field);
+        this.fieldIndex.add(field);
+    }
+    
+    /**
+     * Callback from {@link Member#renameTo} to re-index the renamed member
+     * 
+     * @param member Renamed member
+     * @param oldName Previous name of the member
+     */
+    void onRenamed(Member member, String oldName) {
+        boolean indexed = member instanceof Method
+                ? this.methodIndex.rename((Method)member, oldName)
+                : this.fieldIndex.rename((Field)member, oldName);
+        if (indexed) {
+            this.invalidateLookups();
+        }
+    }
+
+    /**
+     * Update this class with the interfaces, methods and fields of a
+     * transformed class which was restored from the class cache rather than
+     * having its mixins applied in this session. Members which do not already
+     * exist are added as injected members.
+     * 
+     * @param classNode Transformed class, code is not required
+     */
+    void addMembersFrom(ClassNode classNode) {
+        for (String iface : classNode.interfaces) {
+            this.addInterface(iface);
+        }
+        for (MethodNode method : classNode.methods) {
+            if (this.findMethod(method.name, method.desc, ClassInfo.INCLUDE_ALL) == null) {
+                this.addMethod(method);
+            }
+        }
+        for (FieldNode field : classNode.fields) {
+            if (this.findField(field.name, field.desc, ClassInfo.INCLUDE_ALL) == null) {
+                this.addMember(new Field(field, true));
+                this.invalidateLookups();
+            }
+        }
+    }
+
+    /**
+     * Invalidate the failed hierarchy lookups of this class and of every class
+     * whose lookups visit it
+     */
+    private void invalidateLookups() {
+        this.generation.incrementAndGet();
+        for (ClassInfo dependent : this.dependents) {
+            dependent.generation.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Registers this class as a dependent of each class its hierarchy lookups
+     * can visit, so that changes to those classes invalidate our failed
+     * lookups. Any such change increments our generation, so the walk is only
+     * repeated after the hierarchy has changed.
+     * 
+     * @return generation of this class before registration
+     */
+    private int trackHierarchy() {
+        int generation = this.generation.get();
+        if (generation != this.trackedGeneration) {
+            this.addDependent(this, new HashSet<ClassInfo>());
+            this.trackedGeneration = generation;
+        }
+        return generation;
+    }
+    
+    /**
+     * Get the generation of this class, which changes whenever this class or
+     * any class in its hierarchy changes
+     */
+    int getGeneration() {
+        return this.trackHierarchy();
+    }
+    
+    private void addDependent(ClassInfo dependent, Set<ClassInfo> visited) {
+        if (!visited.add(this)) {
+            return;
+        }
+        
+        if (this != dependent) {
+            this.dependents.add(dependent);
+        }
+        
+        for (MixinInfo mixin : this.mixins) {
+            mixin.getClassInfo().dependents.add(dependent);
+        }
+        
+        ClassInfo superClassInfo = this.getSuperClass();
+        if (superClassInfo != null) {
+            for (ClassInfo superTarget : superClassInfo.getTargets()) {
+                superTarget.addDependent(dependent, visited);
+            }
+        }
+        
+        for (String implemented : this.interfaces) {
+            ClassInfo iface = ClassInfo.forName(implemented);
+            if (iface != null) {
+                iface.addDependent(dependent, visited);
+            }
         }
     }
 
@@ -652,6 +1116,8 @@ public class ClassInfo extends TreeInfo {
             throw new IllegalArgumentException("Cannot add target " + this.name + " for " + mixin.getClassName() + " because the target is a mixin");
         }
         this.mixins.add(mixin);
+        this.invalidateLookups();
+        ClassInfo.hierarchy.invalidate(this, mixin.getClassInfo());
     }
 
     /**
@@ -801,6 +1267,15 @@ public class ClassInfo extends TreeInfo {
         return Collections.<Method>unmodifiableSet(this.methods);
     }
 
+    /**
+     * Get class/interface fields
+     *
+     * @return read-only view of class fields
+     */
+    public Set<Field> getFields() {
+        return Collections.<Field>unmodifiableSet(this.fields);
+    }
+
     /**
      * If this is an interface, returns a set containing all methods in this
      * interface and all super interfaces. If this is a class, returns a set
@@ -941,6 +1416,10 @@ public class ClassInfo extends TreeInfo {
             return null;
         }
         
+        if (traversal == Traversal.NONE) {
+            return ClassInfo.hierarchy.findSuperClass(this, superClass);
+        }
+        
         return this.findSuperClass(superClass, traversal, new HashSet<String>());
     }
     
@@ -999,7 +1478,9 @@ public class ClassInfo extends TreeInfo {
         ClassInfo correspondingType = this.correspondingTypes.get(mixin);
         if (correspondingType == null) {
             correspondingType = this.findSuperTypeForMixin(mixin);
-            this.correspondingTypes.put(mixin, correspondingType);
+            if (correspondingType != null) {
+                this.correspondingTypes.put(mixin, correspondingType);
+            }
         }
         return correspondingType;
     }
@@ -1270,8 +1751,26 @@ public class ClassInfo extends TreeInfo {
      * @param type Type of member to search for (field or method)
      * @return the discovered member or null if the member could not be resolved
      */
-    @SuppressWarnings("unchecked")
     private <M extends Member> M findInHierarchy(String name, String desc, boolean includeThisClass, Traversal traversal, int flags, Type type) {
+        int generation = this.trackHierarchy();
+        LookupKey lookup = new LookupKey(name, desc, includeThisClass, traversal, flags, type);
+        Integer failedGeneration = this.failedLookups.getIfPresent(lookup);
+        if (failedGeneration != null && failedGeneration.intValue() == generation) {
+            return null;
+        }
+
+        M member = this.searchHierarchy(name, desc, includeThisClass, traversal, flags, type);
+        if (member == null) {
+            this.failedLookups.put(lookup, Integer.valueOf(generation));
+        }
+        return member;
+    }
+
+    /**
+     * Search for a member in the hierarchy, see {@link #findInHierarchy}
+     */
+    @SuppressWarnings("unchecked")
+    private <M extends Member> M searchHierarchy(String name, String desc, boolean includeThisClass, Traversal traversal, int flags, Type type) {
         if (includeThisClass) {
             M member = this.findMember(name, desc, flags, type);
             if (member != null) {
@@ -1432,15 +1931,8 @@ public class ClassInfo extends TreeInfo {
      */
     private <M extends Member> M findMember(String name, String desc, int flags, Type memberType) {
         @SuppressWarnings("unchecked")
-        Set<M> members = (Set<M>)(memberType == Type.METHOD ? this.methods : this.fields);
-
-        for (M member : members) {
-            if (member.equals(name, desc) && member.matchesFlags(flags)) {
-                return member;
-            }
-        }
-
-        return null;
+        MemberIndex<M> index = (MemberIndex<M>)(memberType == Type.METHOD ? this.methodIndex : this.fieldIndex);
+        return index.find(name, desc, flags);
     }
 
     /* (non-Javadoc)
@@ -1462,6 +1954,17 @@ public class ClassInfo extends TreeInfo {
         return this.name.hashCode();
     }
 
+    /**
+     * Get the common superclass of the supplied types, results are cached
+     * 
+     * @param type1 First type (binary name)
+     * @param type2 Second type (binary name)
+     * @return name of the common superclass
+     */
+    public static String getCommonSuperClass(String type1, String type2) {
+        return ClassInfo.hierarchy.getCommonSuperClass(type1, type2);
+    }
+
     /**
      * Return a ClassInfo for the supplied {@link ClassNode}. If a ClassInfo for
      * the class was already defined, then the original ClassInfo is returned
@@ -1472,10 +1975,9 @@ public class ClassInfo extends TreeInfo {
      * @return ClassInfo instance for the supplied classNode
      */
     static ClassInfo fromClassNode(ClassNode classNode) {
-        ClassInfo info = ClassInfo.cache.get(classNode.name);
+        ClassInfo info = ClassInfo.getCached(classNode.name);
         if (info == null) {
-            info = new ClassInfo(classNode);
-            ClassInfo.cache.put(classNode.name, info);
+            info = ClassInfo.register(classNode.name, new ClassInfo(classNode));
         }
 
         return info;
@@ -1492,22 +1994,49 @@ public class ClassInfo extends TreeInfo {
     public static ClassInfo forName(String className) {
         className = className.replace('.', '/');
 
-        ClassInfo info = ClassInfo.cache.get(className);
-        if (info == null) {
-            try {
-                ClassNode classNode = TreeInfo.getClassNode(className);
-                info = new ClassInfo(classNode);
-            } catch (Exception ex) {
-                ex.printStackTrace();
+        synchronized (ClassInfo.cache) {
+            if (ClassInfo.cache.containsKey(className)) {
+                return ClassInfo.cache.get(className);
             }
+        }
 
-            // Put null in the cache if load failed
-            ClassInfo.cache.put(className, info);
-            ClassInfo.logger.trace("Added class metadata for {} to metadata cache", className);
+        ClassInfo info = null;
+        try {
+            info = MetadataReader.read(TreeInfo.loadClassMetadata(className));
+        } catch (Exception ex) {
+            ex.printStackTrace();
         }
 
+        // Put null in the cache if load failed
+        info = ClassInfo.register(className, info);
+        ClassInfo.logger.trace("Added class metadata for {} to metadata cache", className);
         return info;
     }
+    
+    private static ClassInfo getCached(String className) {
+        synchronized (ClassInfo.cache) {
+            return ClassInfo.cache.get(className);
+        }
+    }
+    
+    /**
+     * Add the supplied class info to the cache unless another thread got there
+     * first, in which case the existing (valid) entry wins
+     * 
+     * @param className Binary class name
+     * @param info ClassInfo to add, can be null if the class failed to load
+     * @return the ClassInfo now in the cache for the specified class
+     */
+    private static ClassInfo register(String className, ClassInfo info) {
+        synchronized (ClassInfo.cache) {
+            ClassInfo existing = ClassInfo.cache.get(className);
+            if (existing != null) {
+                return existing;
+            }
+            ClassInfo.cache.put(className, info);
+            return info;
+        }
+    }
 
     /**
      * Return a ClassInfo for the specified class type, fetches the ClassInfo
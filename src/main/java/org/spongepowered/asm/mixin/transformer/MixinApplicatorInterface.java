@@ -58,7 +58,9 @@ public class MixinApplicatorInterface extends MixinApplicatorStandard {
         for (String interfaceName : mixin.getInterfaces()) {
             if (!this.targetClass.name.equals(interfaceName) && !this.targetClass.interfaces.contains(interfaceName)) {
                 this.targetClass.interfaces.add(interfaceName);
-                mixin.getTargetClassInfo().addInterface(interfaceName);
+                if (!this.context.isSpeculative()) {
+                    mixin.getTargetClassInfo().addInterface(interfaceName);
+                }
             }
         }
     }
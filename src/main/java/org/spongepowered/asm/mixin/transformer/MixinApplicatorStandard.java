@@ -276,7 +276,9 @@ public class MixinApplicatorStandard {
         for (String interfaceName : mixin.getInterfaces()) {
             if (!this.targetClass.interfaces.contains(interfaceName)) {
                 this.targetClass.interfaces.add(interfaceName);
-                mixin.getTargetClassInfo().addInterface(interfaceName);
+                if (!this.context.isSpeculative()) {
+                    mixin.getTargetClassInfo().addInterface(interfaceName);
+                }
             }
         }
     }
@@ -529,6 +531,7 @@ public class MixinApplicatorStandard {
         }
         
         target.name = proxyName;
+        this.context.addModifiedMethod(target);
     }
 
     /**
@@ -548,6 +551,7 @@ public class MixinApplicatorStandard {
             AbstractInsnNode returnNode = MixinApplicatorStandard.findInsn(target, Opcodes.RETURN);
             
             if (returnNode != null) {
+                this.context.addModifiedMethod(target);
                 Iterator<AbstractInsnNode> injectIter = method.instructions.iterator();
                 while (injectIter.hasNext()) {
                     AbstractInsnNode insn = injectIter.next();
@@ -588,6 +592,7 @@ public class MixinApplicatorStandard {
         // Patch the initialiser into the target class ctors
         for (MethodNode method : this.targetClass.methods) {
             if (Constants.CTOR.equals(method.name)) {
+                this.context.addModifiedMethod(method);
                 method.maxStack = Math.max(method.maxStack, ctor.maxStack);
                 this.injectInitialiser(mixin, method, initialiser);
             }
@@ -838,6 +843,7 @@ public class MixinApplicatorStandard {
      * @param to MethodNode to merge annotations to
      */
     protected final void mergeAnnotations(MethodNode from, MethodNode to) {
+        this.context.addModifiedMethod(to);
         to.visibleAnnotations = this.mergeAnnotations(from.visibleAnnotations, to.visibleAnnotations, from.name);
         to.invisibleAnnotations = this.mergeAnnotations(from.invisibleAnnotations, to.invisibleAnnotations, from.name);
     }
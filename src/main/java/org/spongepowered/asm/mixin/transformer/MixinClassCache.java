@@ -0,0 +1,596 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.spongepowered.asm.lib.ClassReader;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * <p>Persistent, content-addressed cache of class bytecode produced by mixin
+ * application. Entries are keyed by a hash of the incoming class bytes, the
+ * superclasses and interfaces of the class and their members, the bytecode of
+ * every mixin applied to the class (in application order), the refmap
+ * contents and obfuscation context of each mixin's config, and the state of
+ * the environment. When the same classes and mixins are encountered in a
+ * later session, the transformed bytecode is returned directly and no tree is
+ * built for the target at all.</p>
+ * 
+ * <p>Storage consists of an append-only pack file containing the class bytes
+ * and an append-only index of key, offset, length and checksum. The index is
+ * read in full when the cache is opened and the pack is memory-mapped, so a
+ * cache hit is a hash lookup followed by a copy out of the mapped region. The
+ * checksum of the bytes is verified before they are returned. Index entries
+ * which point past the end of the pack (for example following a crash during
+ * a write) are discarded. Once the pack reaches its size limit no more
+ * classes are added, and the cache is rebuilt when it is next opened.</p>
+ * 
+ * <p>The cache holds an exclusive lock on the index whilst it is open. If
+ * another process already holds the lock the cache is opened read-only: no
+ * classes are added, and the pack is read without being mapped, since the
+ * other process may truncate it.</p>
+ */
+final class MixinClassCache {
+    
+    /**
+     * Magic number written at the start of the index
+     */
+    private static final int MAGIC = 0x4D584343;
+    
+    /**
+     * Storage format version, change when the key or file layout changes
+     */
+    private static final int VERSION = 3;
+    
+    /**
+     * Size of the index header
+     */
+    private static final int HEADER_SIZE = 8;
+    
+    /**
+     * Size of the hash used for keys, in bytes
+     */
+    private static final int KEY_SIZE = 20;
+    
+    /**
+     * Size of each index entry: key, offset, length and checksum
+     */
+    private static final int ENTRY_SIZE = MixinClassCache.KEY_SIZE + 8 + 4 + 4;
+    
+    /**
+     * Default size limit for the pack
+     */
+    static final long MAX_PACK_SIZE = 256L * 1024L * 1024L;
+
+    /**
+     * Location of a class in the pack
+     */
+    static final class Entry {
+        
+        final long offset;
+        
+        final int length;
+        
+        final int checksum;
+        
+        Entry(long offset, int length, int checksum) {
+            this.offset = offset;
+            this.length = length;
+            this.checksum = checksum;
+        }
+        
+    }
+    
+    /**
+     * Hash of the hierarchy of a supertype, valid for as long as the
+     * generation of the supertype is unchanged
+     */
+    static final class HierarchyHash {
+        
+        final int generation;
+        
+        final HashCode hash;
+        
+        HierarchyHash(int generation, HashCode hash) {
+            this.generation = generation;
+            this.hash = hash;
+        }
+        
+    }
+    
+    private static final Logger logger = LogManager.getLogger("mixin");
+    
+    /**
+     * Index of entries in the pack
+     */
+    private final Map<HashCode, Entry> entries = new HashMap<HashCode, Entry>();
+    
+    /**
+     * Hierarchy hashes of the supertypes of cached classes, so that their
+     * hierarchies are only walked again after they change
+     */
+    private final Map<ClassInfo, HierarchyHash> hierarchyHashes = new ConcurrentHashMap<ClassInfo, HierarchyHash>();
+
+    /**
+     * Pack file, class bytes are appended here 
+     */
+    private final RandomAccessFile pack;
+    
+    /**
+     * Index file, entries are appended here
+     */
+    private final RandomAccessFile index;
+    
+    /**
+     * Size limit for the pack, classes which would take the pack past this
+     * size are not cached
+     */
+    private final long maxPackSize;
+    
+    /**
+     * Exclusive lock on the index, null if another process holds the lock
+     */
+    private final FileLock lock;
+    
+    /**
+     * Read-only mapping of the pack as it was when the cache was opened
+     */
+    private MappedByteBuffer mapped;
+    
+    /**
+     * Set once the pack reaches its size limit
+     */
+    private boolean full;
+    
+    /**
+     * Cache hits this session, for debug logging
+     */
+    private int hits;
+    
+    /**
+     * Cache misses this session, for debug logging
+     */
+    private int misses;
+
+    private MixinClassCache(File dir, long maxPackSize) throws IOException {
+        dir.mkdirs();
+        this.maxPackSize = maxPackSize;
+        this.pack = new RandomAccessFile(new File(dir, "classes.pack"), "rw");
+        try {
+            this.index = new RandomAccessFile(new File(dir, "classes.idx"), "rw");
+        } catch (IOException ex) {
+            this.pack.close();
+            throw ex;
+        }
+        this.lock = this.tryLock();
+    }
+    
+    private FileLock tryLock() throws IOException {
+        try {
+            return this.index.getChannel().tryLock();
+        } catch (OverlappingFileLockException ex) {
+            // Held by another cache in this VM
+            return null;
+        }
+    }
+    
+    /**
+     * Get whether the cache is read-only because another process holds the
+     * lock on it
+     */
+    boolean isReadOnly() {
+        return this.lock == null;
+    }
+    
+    /**
+     * Read the index and map the pack, rebuilding the cache if the index is
+     * invalid, empty or the pack has reached its size limit
+     * 
+     * @param dir Cache directory, for logging
+     */
+    private void load(File dir) throws IOException {
+        if (this.isReadOnly()) {
+            MixinClassCache.logger.info("Mixin class cache at {} is in use by another process and will be read-only", dir);
+            if (!this.readIndex()) {
+                this.entries.clear();
+            }
+            this.full = true;
+            return;
+        }
+        
+        if (this.pack.length() > this.maxPackSize) {
+            MixinClassCache.logger.info("Mixin class cache at {} is full and will be rebuilt", dir);
+            this.reset();
+        } else if (!this.readIndex()) {
+            MixinClassCache.logger.info("Mixin class cache at {} is missing or invalid and will be rebuilt", dir);
+            this.reset();
+        } else if (this.entries.isEmpty()) {
+            this.pack.setLength(0);
+        }
+        
+        long packSize = this.pack.length();
+        this.mapped = packSize > 0 ? this.pack.getChannel().map(MapMode.READ_ONLY, 0, packSize) : null;
+        this.pack.seek(packSize);
+        this.index.seek(this.index.length());
+        MixinClassCache.logger.debug("Opened mixin class cache at {} with {} entries", dir, this.entries.size());
+    }
+    
+    private void reset() throws IOException {
+        this.index.setLength(0);
+        this.index.writeInt(MixinClassCache.MAGIC);
+        this.index.writeInt(MixinClassCache.VERSION);
+        this.pack.setLength(0);
+        this.entries.clear();
+    }
+
+    /**
+     * Read the index file into memory
+     * 
+     * @return false if the index is absent or invalid
+     */
+    private boolean readIndex() throws IOException {
+        long indexSize = this.index.length();
+        if (indexSize < MixinClassCache.HEADER_SIZE) {
+            return false;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.allocate((int)indexSize);
+        this.index.getChannel().read(buffer, 0);
+        buffer.flip();
+        if (buffer.getInt() != MixinClassCache.MAGIC || buffer.getInt() != MixinClassCache.VERSION) {
+            return false;
+        }
+        
+        long packSize = this.pack.length();
+        long validSize = MixinClassCache.HEADER_SIZE;
+        byte[] key = new byte[MixinClassCache.KEY_SIZE];
+        while (buffer.remaining() >= MixinClassCache.ENTRY_SIZE) {
+            buffer.get(key);
+            long offset = buffer.getLong();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (offset < 0 || length < 0 || offset + length > packSize) {
+                break;
+            }
+            this.entries.put(HashCode.fromBytes(key.clone()), new Entry(offset, length, checksum));
+            validSize += MixinClassCache.ENTRY_SIZE;
+        }
+        
+        // Drop torn or dangling entries so that new entries are aligned
+        if (!this.isReadOnly()) {
+            this.index.setLength(validSize);
+        }
+        return true;
+    }
+    
+    /**
+     * Compute the cache key for the supplied target class and mixins
+     * 
+     * @param environment Current environment
+     * @param basicClass Incoming target class bytes
+     * @param mixins Mixins to be applied, in application order
+     * @return cache key
+     */
+    HashCode computeKey(MixinEnvironment environment, byte[] basicClass, SortedSet<MixinInfo> mixins) {
+        Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putInt(MixinClassCache.VERSION);
+        MixinClassCache.putString(hasher, environment.getVersion());
+        MixinClassCache.putString(hasher, environment.getPhase().toString());
+        MixinClassCache.putString(hasher, environment.getSide().name());
+        MixinClassCache.putString(hasher, MixinEnvironment.getCompatibilityLevel().name());
+        for (Option option : Option.values()) {
+            hasher.putBoolean(environment.getOption(option));
+        }
+        
+        hasher.putInt(basicClass.length).putBytes(basicClass);
+        this.putHierarchy(hasher, new ClassReader(basicClass));
+        
+        for (MixinInfo mixin : mixins) {
+            MixinConfig config = mixin.getParent();
+            MixinClassCache.putString(hasher, mixin.getClassName());
+            hasher.putInt(mixin.getPriority());
+            MixinClassCache.putString(hasher, config.getName());
+            MixinClassCache.putString(hasher, config.getRefMapperConfig());
+            MixinClassCache.putString(hasher, config.getReferenceMapper().getResourceDigest());
+            MixinClassCache.putString(hasher, config.getEnvironment().getRefmapObfuscationContext());
+            byte[] mixinBytes = mixin.getClassBytes();
+            hasher.putInt(mixinBytes.length).putBytes(mixinBytes);
+        }
+        
+        return hasher.hash();
+    }
+    
+    /**
+     * Add the superclasses and interfaces of a target class to the key. Mixin
+     * application resolves members through the hierarchy, so the name, access,
+     * supertypes and member signatures of every class in the hierarchy are
+     * included, see {@link #getHierarchyHash}.
+     * 
+     * @param hasher Key hasher
+     * @param classReader Reader for the target class
+     */
+    private void putHierarchy(Hasher hasher, ClassReader classReader) {
+        this.putSuperType(hasher, classReader.getSuperName());
+        String[] interfaces = classReader.getInterfaces();
+        hasher.putInt(interfaces.length);
+        for (String iface : interfaces) {
+            this.putSuperType(hasher, iface);
+        }
+    }
+    
+    private void putSuperType(Hasher hasher, String name) {
+        MixinClassCache.putString(hasher, name);
+        ClassInfo info = name != null ? ClassInfo.forName(name) : null;
+        if (info == null) {
+            hasher.putInt(-1);
+            return;
+        }
+        hasher.putBytes(this.getHierarchyHash(info).asBytes());
+    }
+    
+    /**
+     * Get the hash of the access, supertypes and member signatures of a class
+     * and of every class in its hierarchy. Members are sorted so that the hash
+     * is stable across sessions. The hash is memoised until the generation of
+     * the class changes, which happens when the class or any class in its
+     * hierarchy changes.
+     * 
+     * @param info Class to hash
+     * @return hierarchy hash
+     */
+    HashCode getHierarchyHash(ClassInfo info) {
+        int generation = info.getGeneration();
+        HierarchyHash cached = this.hierarchyHashes.get(info);
+        if (cached != null && cached.generation == generation) {
+            return cached.hash;
+        }
+        
+        Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putInt(info.getAccess());
+        if (!info.isInterface()) {
+            this.putSuperType(hasher, info.getSuperName());
+        }
+        Set<String> interfaces = new TreeSet<String>(info.getInterfaces());
+        hasher.putInt(interfaces.size());
+        for (String iface : interfaces) {
+            this.putSuperType(hasher, iface);
+        }
+        
+        Set<String> members = new TreeSet<String>();
+        for (ClassInfo.Method method : info.getMethods()) {
+            members.add(method.getName() + method.getDesc() + " " + method.getAccess());
+        }
+        for (ClassInfo.Field field : info.getFields()) {
+            members.add(field.getName() + ":" + field.getDesc() + " " + field.getAccess());
+        }
+        hasher.putInt(members.size());
+        for (String member : members) {
+            MixinClassCache.putString(hasher, member);
+        }
+        
+        HashCode hash = hasher.hash();
+        this.hierarchyHashes.put(info, new HierarchyHash(generation, hash));
+        return hash;
+    }
+    
+    private static void putString(Hasher hasher, String value) {
+        if (value == null) {
+            hasher.putInt(-1);
+            return;
+        }
+        hasher.putInt(value.length()).putString(value, Charsets.UTF_8);
+    }
+    
+    /**
+     * Get whether the supplied mixins can be served from the cache. Mixins
+     * from configs with a plugin are never cached because the plugin may
+     * alter the target in ways which are not captured by the key.
+     * 
+     * @param mixins Mixins to be applied
+     * @return true if the result of applying the mixins may be cached
+     */
+    boolean canCache(SortedSet<MixinInfo> mixins) {
+        for (MixinInfo mixin : mixins) {
+            if (mixin.getParent().getPlugin() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Retrieve cached class bytes
+     * 
+     * @param key Cache key
+     * @return cached bytes or null if the key is not in the cache
+     */
+    synchronized byte[] get(HashCode key) {
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            this.misses++;
+            return null;
+        }
+        
+        try {
+            byte[] bytes = new byte[entry.length];
+            boolean complete = true;
+            if (this.mapped != null && entry.offset + entry.length <= this.mapped.capacity()) {
+                ByteBuffer view = this.mapped.duplicate();
+                view.position((int)entry.offset);
+                view.get(bytes);
+            } else {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining() && this.pack.getChannel().read(buffer, entry.offset + buffer.position()) > 0) {
+                    // read until complete or the end of the pack
+                }
+                complete = !buffer.hasRemaining();
+            }
+            
+            if (!complete || MixinClassCache.checksum(bytes) != entry.checksum) {
+                MixinClassCache.logger.debug("Discarding corrupt mixin class cache entry {}", key);
+                this.entries.remove(key);
+                this.misses++;
+                return null;
+            }
+            
+            this.hits++;
+            return bytes;
+        } catch (IOException ex) {
+            MixinClassCache.logger.warn("Error reading mixin class cache: {}", ex.getMessage());
+            this.entries.remove(key);
+            this.misses++;
+            return null;
+        }
+    }
+    
+    /**
+     * Append class bytes to the cache
+     * 
+     * @param key Cache key
+     * @param bytes Transformed class bytes
+     */
+    synchronized void put(HashCode key, byte[] bytes) {
+        if (this.full || this.entries.containsKey(key)) {
+            return;
+        }
+        
+        try {
+            long offset = this.pack.length();
+            if (offset + bytes.length > this.maxPackSize) {
+                // Drop the index so that the pack is discarded and rebuilt next time the cache is opened
+                MixinClassCache.logger.info("Mixin class cache is full, no more classes will be cached this session");
+                this.index.setLength(MixinClassCache.HEADER_SIZE);
+                this.full = true;
+                return;
+            }
+            int checksum = MixinClassCache.checksum(bytes);
+            this.pack.seek(offset);
+            this.pack.write(bytes);
+            this.index.write(key.asBytes());
+            this.index.writeLong(offset);
+            this.index.writeInt(bytes.length);
+            this.index.writeInt(checksum);
+            this.entries.put(key, new Entry(offset, bytes.length, checksum));
+        } catch (IOException ex) {
+            MixinClassCache.logger.warn("Error writing mixin class cache: {}", ex.getMessage());
+        }
+    }
+    
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int)crc.getValue();
+    }
+    
+    /**
+     * Get the number of cache hits this session
+     */
+    synchronized int getHits() {
+        return this.hits;
+    }
+    
+    /**
+     * Get the number of cache misses this session
+     */
+    synchronized int getMisses() {
+        return this.misses;
+    }
+    
+    /**
+     * Close the cache files
+     */
+    synchronized void close() {
+        this.mapped = null;
+        this.entries.clear();
+        this.full = true;
+        try {
+            if (this.lock != null && this.lock.isValid()) {
+                this.lock.release();
+            }
+            this.pack.close();
+            this.index.close();
+        } catch (IOException ex) {
+            // ignore
+        }
+    }
+    
+    /**
+     * Open the class cache in the specified directory
+     * 
+     * @param dir Cache directory
+     * @return the cache or null if the cache could not be opened
+     */
+    static MixinClassCache open(File dir) {
+        return MixinClassCache.open(dir, MixinClassCache.MAX_PACK_SIZE);
+    }
+    
+    /**
+     * Open the class cache in the specified directory. Any failure to open or
+     * map the cache files disables the cache rather than failing.
+     * 
+     * @param dir Cache directory
+     * @param maxPackSize Size limit for the pack
+     * @return the cache or null if the cache could not be opened
+     */
+    static MixinClassCache open(File dir, long maxPackSize) {
+        MixinClassCache cache = null;
+        try {
+            cache = new MixinClassCache(dir, maxPackSize);
+            cache.load(dir);
+            return cache;
+        } catch (Exception ex) {
+            MixinClassCache.logger.warn("Mixin class cache could not be opened, classes will not be cached. {}: {}",
+                    ex.getClass().getSimpleName(), ex.getMessage());
+            if (cache != null) {
+                cache.close();
+            }
+        }
+        return null;
+    }
+    
+}
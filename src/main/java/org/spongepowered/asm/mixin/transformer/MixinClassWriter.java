@@ -33,8 +33,6 @@ import org.spongepowered.asm.lib.ClassWriter;
  */
 public class MixinClassWriter extends ClassWriter {
 
-    private static final String JAVA_LANG_OBJECT = "java/lang/Object";
-
     public MixinClassWriter(int flags) {
         super(flags);
     }
@@ -49,28 +47,7 @@ public class MixinClassWriter extends ClassWriter {
      */
     @Override
     protected String getCommonSuperClass(final String type1, final String type2) {
-        ClassInfo c = ClassInfo.forName(type1);
-        ClassInfo d = ClassInfo.forName(type2);
-        
-        if (c.hasSuperClass(d)) {
-            return type2;
-        }
-        if (d.hasSuperClass(c)) {
-            return type1;
-        }
-        if (c.isInterface() || d.isInterface()) {
-            return MixinClassWriter.JAVA_LANG_OBJECT;
-        }
-        
-        do {
-            c = c.getSuperClass();
-            if (c == null) {
-                return MixinClassWriter.JAVA_LANG_OBJECT;
-            }
-            
-        } while (!d.hasSuperClass(c));
-        
-        return c.getName();
+        return ClassInfo.getCommonSuperClass(type1, type2);
     }
 
 }
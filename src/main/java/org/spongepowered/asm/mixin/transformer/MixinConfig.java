@@ -28,12 +28,11 @@ import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -86,7 +85,7 @@ class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
     /**
      * Global list of mixin classes, so we can skip any duplicates
      */
-    private static final Set<String> globalMixinList = new HashSet<String>();
+    private static final Set<String> globalMixinList = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     
     /**
      * Log even more things
@@ -96,12 +95,12 @@ class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
     /**
      * Map of mixin target classes to mixin infos
      */
-    private final transient Map<String, List<MixinInfo>> mixinMapping = new HashMap<String, List<MixinInfo>>();
+    private final transient ConcurrentMap<String, List<MixinInfo>> mixinMapping = new ConcurrentHashMap<String, List<MixinInfo>>();
     
     /**
      * Targets for this configuration which haven't been mixed yet 
      */
-    private final transient Set<String> unhandledTargets = new HashSet<String>();
+    private final transient Set<String> unhandledTargets = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     
     /**
      * All mixins loaded by this config 
@@ -111,7 +110,7 @@ class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
     /**
      * Synthetic inner classes for mixins in this set
      */
-    private final transient Set<String> syntheticInnerClasses = new HashSet<String>();
+    private final transient Set<String> syntheticInnerClasses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     
     /**
      * Marshal 
@@ -391,20 +390,20 @@ class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
      * either the <em>hasMixinsFor()</em> or <em>getMixinsFor()</em> methods.
      * </p>
      */
-    void prepare(IHotSwap hotSwapper) {
+    void prepare(IHotSwap hotSwapper, MixinPrefetcher prefetcher) {
         if (this.prepared) {
             return;
         }
         this.prepared = true;
         
-        this.prepareMixins(this.mixinClasses, false, hotSwapper);
+        this.prepareMixins(this.mixinClasses, false, hotSwapper, prefetcher);
         
         switch (this.env.getSide()) {
             case CLIENT:
-                this.prepareMixins(this.mixinClassesClient, false, hotSwapper);
+                this.prepareMixins(this.mixinClassesClient, false, hotSwapper, prefetcher);
                 break;
             case SERVER:
-                this.prepareMixins(this.mixinClassesServer, false, hotSwapper);
+                this.prepareMixins(this.mixinClassesServer, false, hotSwapper, prefetcher);
                 break;
             case UNKNOWN:
                 //$FALL-THROUGH$
@@ -414,10 +413,50 @@ class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         }
     }
     
+    /**
+     * Get the fully-qualified names of declared mixins which {@link #prepare}
+     * will initialise for the current side, used to prefetch mixin bytecode.
+     * Mixins supplied by the config plugin are not included.
+     * 
+     * @return mixin class names
+     */
+    List<String> getPendingMixinClasses() {
+        List<String> mixinClasses = new ArrayList<String>();
+        if (this.prepared) {
+            return mixinClasses;
+        }
+        
+        this.addPendingMixinClasses(mixinClasses, this.mixinClasses);
+        switch (this.env.getSide()) {
+            case CLIENT:
+                this.addPendingMixinClasses(mixinClasses, this.mixinClassesClient);
+                break;
+            case SERVER:
+                this.addPendingMixinClasses(mixinClasses, this.mixinClassesServer);
+                break;
+            default:
+                break;
+        }
+        return mixinClasses;
+    }
+
+    private void addPendingMixinClasses(List<String> pending, List<String> mixinClasses) {
+        if (mixinClasses == null) {
+            return;
+        }
+        
+        for (String mixinClass : mixinClasses) {
+            String fqMixinClass = this.mixinPackage + mixinClass;
+            if (mixinClass != null && !MixinConfig.globalMixinList.contains(fqMixinClass)) {
+                pending.add(fqMixinClass);
+            }
+        }
+    }
+    
     void postInitialise(IHotSwap hotSwapper) {
         if (this.plugin != null) {
             List<String> pluginMixins = this.plugin.getMixins();
-            this.prepareMixins(pluginMixins, true, hotSwapper);
+            this.prepareMixins(pluginMixins, true, hotSwapper, null);
         }
         
         for (Iterator<MixinInfo> iter = this.mixins.iterator(); iter.hasNext();) {
@@ -449,7 +488,7 @@ class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         }
     }
 
-    private void prepareMixins(List<String> mixinClasses, boolean suppressPlugin, IHotSwap hotSwapper) {
+    private void prepareMixins(List<String> mixinClasses, boolean suppressPlugin, IHotSwap hotSwapper, MixinPrefetcher prefetcher) {
         if (mixinClasses == null) {
             return;
         }
@@ -464,7 +503,8 @@ class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
             MixinInfo mixin = null;
             
             try {
-                mixin = new MixinInfo(this, mixinClass, true, this.plugin, suppressPlugin);
+                byte[] mixinBytes = prefetcher != null ? prefetcher.getClassBytes(fqMixinClass) : null;
+                mixin = new MixinInfo(this, mixinClass, true, this.plugin, suppressPlugin, mixinBytes);
                 if (mixin.getTargetClasses().size() > 0) {
                     MixinConfig.globalMixinList.add(fqMixinClass);
                     for (String targetClass : mixin.getTargetClasses()) {
@@ -612,6 +652,13 @@ class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         return this.setSourceFile;
     }
     
+    /**
+     * Get the name of the refmap resource used by this config
+     */
+    String getRefMapperConfig() {
+        return this.refMapperConfig;
+    }
+    
     /**
      * Get the reference remapper for injectors
      */
@@ -707,8 +754,11 @@ class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
     private List<MixinInfo> mixinsFor(String targetClass) {
         List<MixinInfo> mixins = this.mixinMapping.get(targetClass);
         if (mixins == null) {
-            mixins = new ArrayList<MixinInfo>();
-            this.mixinMapping.put(targetClass, mixins);
+            List<MixinInfo> newMixins = new ArrayList<MixinInfo>();
+            mixins = this.mixinMapping.putIfAbsent(targetClass, newMixins);
+            if (mixins == null) {
+                mixins = newMixins;
+            }
         }
         return mixins;
     }
@@ -730,6 +780,20 @@ class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         }
         return Collections.<String>emptyList();
     }
+
+    /**
+     * Reverts a mixin to the bytecode it had before it was last reloaded
+     *
+     * @param mixinClass Name of the mixin class
+     */
+    public void revertMixin(String mixinClass) {
+        for (MixinInfo mixin : this.mixins) {
+            if (mixin.getClassName().equals(mixinClass)) {
+                mixin.revertReload();
+                return;
+            }
+        }
+    }
     
     @Override
     public String toString() {
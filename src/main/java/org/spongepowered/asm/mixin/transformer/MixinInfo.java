@@ -32,6 +32,8 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -53,6 +55,7 @@ import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.extensibility.IMixinConfig;
 import org.spongepowered.asm.mixin.extensibility.IMixinConfigPlugin;
 import org.spongepowered.asm.mixin.extensibility.IMixinInfo;
+import org.spongepowered.asm.mixin.transformer.TargetClassContext.Speculation;
 import org.spongepowered.asm.mixin.transformer.throwables.InvalidMixinException;
 import org.spongepowered.asm.mixin.transformer.throwables.MixinReloadException;
 import org.spongepowered.asm.util.ASMHelper;
@@ -131,6 +134,12 @@ class MixinInfo extends TreeInfo implements Comparable<MixinInfo>, IMixinInfo {
          */
         protected ClassNode classNode;
 
+        /**
+         * Mixin tree with expanded frames which has had the first
+         * preprocessor pass applied, each target context receives a copy
+         */
+        private ClassNode preparedClassNode;
+
         State(byte[] mixinBytes) {
             this(mixinBytes, null);
         }
@@ -182,6 +191,26 @@ class MixinInfo extends TreeInfo implements Comparable<MixinInfo>, IMixinInfo {
             return classNode;
         }
 
+        /**
+         * Gets a copy of the prepared mixin tree, the tree is parsed and
+         * prepared on first use and is subsequently copied without reparsing
+         * the mixin bytecode
+         * 
+         * @param type Mixin type, supplies the preprocessor
+         * @return Prepared tree for a single target context
+         */
+        synchronized ClassNode createPreparedClassNode(SubType type) {
+            if (this.preparedClassNode == null) {
+                ClassNode classNode = this.createClassNode(ClassReader.EXPAND_FRAMES);
+                type.createPreProcessor(classNode).prepare();
+                this.preparedClassNode = classNode;
+            }
+            
+            MixinClassNode classNode = new MixinClassNode(MixinInfo.this);
+            this.preparedClassNode.accept(classNode);
+            return classNode;
+        }
+
         /**
          * Performs pre-flight checks on the mixin
          * 
@@ -313,11 +342,24 @@ class MixinInfo extends TreeInfo implements Comparable<MixinInfo>, IMixinInfo {
          * The previous validation state to compare the changes to
          */
         private final State previous;
+        
+        /**
+         * Differences between the previous and reloaded bytecode
+         */
+        private MixinReloadDiff diff;
 
         Reloaded(State previous, byte[] mixinBytes) {
             super(mixinBytes, previous.getClassInfo());
             this.previous = previous;
         }
+        
+        MixinReloadDiff getDiff() {
+            return this.diff;
+        }
+        
+        State getPrevious() {
+            return this.previous;
+        }
 
         /**
          * Validates that the changes are allowed to be made, these restrictions
@@ -342,6 +384,11 @@ class MixinInfo extends TreeInfo implements Comparable<MixinInfo>, IMixinInfo {
             if (priority != MixinInfo.this.getPriority()) {
                 throw new MixinReloadException(MixinInfo.this, "Cannot change mixin priority");
             }
+            
+            // Only standard mixins can have their targets patched
+            if (type instanceof SubType.Standard) {
+                this.diff = new MixinReloadDiff(this.previous.createClassNode(0), this.classNode);
+            }
         }
     }
     
@@ -527,6 +574,13 @@ class MixinInfo extends TreeInfo implements Comparable<MixinInfo>, IMixinInfo {
      * Intrinsic order (for sorting mixins with identical priority)
      */
     private final transient int order = MixinInfo.mixinOrder++;
+    
+    /**
+     * Held whilst the mixin is applied to a target. Members of the mixin are
+     * renamed in the shared {@link ClassInfo} when it is attached to each
+     * target, so a mixin may only be applied to one target at a time.
+     */
+    private final transient Lock applicationLock = new ReentrantLock();
 
     /**
      * Configuration plugin
@@ -566,9 +620,11 @@ class MixinInfo extends TreeInfo implements Comparable<MixinInfo>, IMixinInfo {
      * @param runTransformers
      * @param plugin 
      * @param suppressPlugin 
-     * @throws ClassNotFoundException 
+     * @param mixinBytes Prefetched mixin bytecode which has already been
+     *      passed through the transformer chain, or null to load the mixin
      */
-    MixinInfo(MixinConfig parent, String mixinName, boolean runTransformers, IMixinConfigPlugin plugin, boolean suppressPlugin) {
+    MixinInfo(MixinConfig parent, String mixinName, boolean runTransformers, IMixinConfigPlugin plugin, boolean suppressPlugin,
+            byte[] mixinBytes) {
         this.parent = parent;
         this.name = mixinName;
         this.className = parent.getMixinPackage() + mixinName;
@@ -577,7 +633,7 @@ class MixinInfo extends TreeInfo implements Comparable<MixinInfo>, IMixinInfo {
         
         // Read the class bytes and transform
         try {
-            this.pendingState = new State(this.loadMixinClass(this.className, runTransformers));
+            this.pendingState = new State(this.loadMixinClass(this.className, runTransformers, mixinBytes));
             this.info = this.pendingState.getClassInfo();
             this.type = this.initType();
         } catch (Exception ex) {
@@ -721,6 +777,13 @@ class MixinInfo extends TreeInfo implements Comparable<MixinInfo>, IMixinInfo {
         return this.state != null ? this.state : this.pendingState;
     }
 
+    /**
+     * Get the lock which must be held whilst the mixin is applied to a target
+     */
+    Lock getApplicationLock() {
+        return this.applicationLock;
+    }
+
     /**
      * Get the ClassInfo for the mixin class
      */
@@ -860,21 +923,28 @@ class MixinInfo extends TreeInfo implements Comparable<MixinInfo>, IMixinInfo {
      * @return new context
      */
     MixinTargetContext createContextFor(TargetClassContext target) {
-        ClassNode classNode = this.getClassNode(ClassReader.EXPAND_FRAMES);
-        return this.type.createPreProcessor(classNode).prepare().createContextFor(target);
+        State state = this.getState();
+        if (target.getSpeculation() == Speculation.PREVIOUS && state instanceof Reloaded) {
+            state = ((Reloaded)state).getPrevious();
+        }
+        ClassNode classNode = state.createPreparedClassNode(this.type);
+        return this.type.createPreProcessor(classNode).setPrepared().createContextFor(target);
     }
 
     /**
      * @param mixinClassName
      * @param runTransformers
+     * @param prefetchedBytes Bytecode loaded by the prefetcher, if available
      * @return
      * @throws ClassNotFoundException 
      */
-    private byte[] loadMixinClass(String mixinClassName, boolean runTransformers) throws ClassNotFoundException {
-        byte[] mixinBytes = null;
+    private byte[] loadMixinClass(String mixinClassName, boolean runTransformers, byte[] prefetchedBytes) throws ClassNotFoundException {
+        byte[] mixinBytes = prefetchedBytes;
 
         try {
-            mixinBytes = TreeInfo.loadClass(mixinClassName, runTransformers);
+            if (mixinBytes == null) {
+                mixinBytes = TreeInfo.loadClass(mixinClassName, runTransformers);
+            }
         } catch (ClassNotFoundException ex) {
             throw new ClassNotFoundException(String.format("The specified mixin '%s' was not found", mixinClassName));
         } catch (IOException ex) {
@@ -904,6 +974,38 @@ class MixinInfo extends TreeInfo implements Comparable<MixinInfo>, IMixinInfo {
         this.pendingState = new Reloaded(this.state, mixinBytes);
         this.validate();
     }
+    
+    /**
+     * Restores the state which was replaced by the last reload of this mixin,
+     * used when the reloaded mixin could not be applied to its targets
+     */
+    void revertReload() {
+        if (this.state instanceof Reloaded) {
+            this.state = ((Reloaded)this.state).getPrevious();
+        }
+    }
+    
+    /**
+     * Get the methods whose bodies were changed by the last reload of this
+     * mixin, if the reload changed nothing but the bodies of methods which can
+     * be patched into targets directly
+     * 
+     * @return names of the changed methods, or null if the mixin was not
+     *      reloaded or if its targets must be fully re-transformed
+     */
+    Set<String> getReloadedMethods() {
+        if (!(this.state instanceof Reloaded)) {
+            return null;
+        }
+        MixinReloadDiff diff = ((Reloaded)this.state).getDiff();
+        if (diff == null) {
+            return null;
+        }
+        if (!diff.isBodyOnly()) {
+            this.logger.debug("Mixin {} requires targets to be re-transformed: {}", this, diff.getReason());
+        }
+        return diff.getChangedMethods();
+    }
 
     /* (non-Javadoc)
      * @see java.lang.Comparable#compareTo(java.lang.Object)
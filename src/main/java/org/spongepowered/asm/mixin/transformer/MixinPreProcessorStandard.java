@@ -94,12 +94,19 @@ class MixinPreProcessorStandard {
     
     private final boolean verboseLogging;
     
+    /**
+     * True if the hot-swap agent is enabled, which needs renamed methods to
+     * be traceable back to the mixin
+     */
+    private final boolean hotSwap;
+    
     private boolean prepared, attached;
 
     MixinPreProcessorStandard(MixinInfo mixin, ClassNode classNode) {
         this.mixin = mixin;
         this.classNode = classNode;
         this.verboseLogging = mixin.getParent().getEnvironment().getOption(Option.DEBUG_VERBOSE);
+        this.hotSwap = mixin.getParent().getEnvironment().getOption(Option.HOT_SWAP);
     }
 
     /**
@@ -124,6 +131,17 @@ class MixinPreProcessorStandard {
         return this;
     }
 
+    /**
+     * Skip the first pass, used when the class node is a copy of a tree which
+     * was already prepared
+     * 
+     * @return Prepared classnode
+     */
+    MixinPreProcessorStandard setPrepared() {
+        this.prepared = true;
+        return this;
+    }
+
     protected void prepareMethod(MethodNode mixinMethod, Method method) {
         this.prepareShadow(mixinMethod, method);
         this.prepareSoftImplements(mixinMethod, method);
@@ -222,6 +240,7 @@ class MixinPreProcessorStandard {
         
         String handlerName = context.getHandlerName(annotation, mixinMethod, surrogate);
         Method method = this.mixin.getClassInfo().findMethod(mixinMethod, ClassInfo.INCLUDE_ALL);
+        this.markRenamed(mixinMethod, handlerName);
         method.renameTo(handlerName);
         mixinMethod.name = handlerName;
         return true;
@@ -274,6 +293,7 @@ class MixinPreProcessorStandard {
         
         Method parentMethod = this.mixin.getClassInfo().findMethodInHierarchy(mixinMethod, false);
         if (parentMethod != null && parentMethod.isRenamed()) {
+            this.markRenamed(mixinMethod, parentMethod.getName());
             mixinMethod.name = parentMethod.getName();
             method.renameTo(parentMethod.getName());
         }
@@ -400,6 +420,18 @@ class MixinPreProcessorStandard {
         }
     }
 
+    /**
+     * Records the name of a mixin method in its {@link MixinRenamed}
+     * annotation before it is renamed, unless it was already renamed during
+     * preparation, so that the hot-swap agent can trace the merged method back
+     * to the mixin method it came from. Only done when hot-swap is enabled.
+     */
+    private void markRenamed(MethodNode mixinMethod, String newName) {
+        if (this.hotSwap && !newName.equals(mixinMethod.name) && ASMHelper.getVisibleAnnotation(mixinMethod, MixinRenamed.class) == null) {
+            ASMHelper.setVisibleAnnotation(mixinMethod, MixinRenamed.class, "originalName", mixinMethod.name);
+        }
+    }
+
     protected static MethodNode findMethod(ClassNode classNode, MethodNode method, AnnotationNode annotation) {
         Deque<String> aliases = new LinkedList<String>();
         aliases.add(method.name);
@@ -0,0 +1,181 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.spongepowered.asm.lib.ClassReader;
+import org.spongepowered.asm.lib.Type;
+import org.spongepowered.asm.lib.tree.AnnotationNode;
+import org.spongepowered.asm.lib.tree.ClassNode;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.util.ASMHelper;
+
+/**
+ * Loads mixin bytecode and target class metadata for pending configs on a pool
+ * of worker threads ahead of {@link MixinConfig#prepare}. Mixin classes are
+ * first loaded through the transformer chain and their declared targets read,
+ * the metadata for all of the targets is then loaded into the ClassInfo cache.
+ * 
+ * <p>The prefetcher only does work which is later repeated (cheaply) by the
+ * serial preparation pass, which remains responsible for creating MixinInfos,
+ * consulting config plugins and registering mixins in declaration order. Any
+ * failure here is therefore ignored and reported by the serial pass in the
+ * usual way.</p>
+ */
+class MixinPrefetcher {
+    
+    private final Logger logger = LogManager.getLogger("mixin");
+    
+    /**
+     * Number of worker threads to use 
+     */
+    private final int threads;
+
+    /**
+     * Transformed mixin bytecode, keyed by fully-qualified class name
+     */
+    private final Map<String, byte[]> classBytes = new ConcurrentHashMap<String, byte[]>();
+    
+    MixinPrefetcher(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+    
+    /**
+     * Prefetch the declared mixins of the specified configs and the metadata
+     * of their targets, blocks until all work is complete
+     * 
+     * @param configs configs to prefetch
+     */
+    void prefetch(List<MixinConfig> configs) {
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        try {
+            List<Future<List<String>>> mixins = new ArrayList<Future<List<String>>>();
+            for (final MixinConfig config : configs) {
+                for (final String mixinClass : config.getPendingMixinClasses()) {
+                    mixins.add(executor.submit(new Callable<List<String>>() {
+                        @Override
+                        public List<String> call() throws Exception {
+                            return MixinPrefetcher.this.loadMixin(config, mixinClass);
+                        }
+                    }));
+                }
+            }
+            
+            Set<String> targets = new LinkedHashSet<String>();
+            for (Future<List<String>> mixin : mixins) {
+                List<String> mixinTargets = this.get(mixin);
+                if (mixinTargets != null) {
+                    targets.addAll(mixinTargets);
+                }
+            }
+            
+            List<Future<ClassInfo>> targetInfos = new ArrayList<Future<ClassInfo>>();
+            for (final String target : targets) {
+                targetInfos.add(executor.submit(new Callable<ClassInfo>() {
+                    @Override
+                    public ClassInfo call() throws Exception {
+                        return ClassInfo.forName(target);
+                    }
+                }));
+            }
+            for (Future<ClassInfo> targetInfo : targetInfos) {
+                this.get(targetInfo);
+            }
+            
+            this.logger.debug("Prefetched {} mixins and {} targets on {} threads", this.classBytes.size(), targets.size(), this.threads);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Get and discard the prefetched bytecode for the specified mixin
+     * 
+     * @param mixinClass Fully-qualified mixin class name
+     * @return transformed bytecode, or null if the mixin was not prefetched
+     */
+    byte[] getClassBytes(String mixinClass) {
+        return this.classBytes.remove(mixinClass);
+    }
+
+    /**
+     * Load the mixin bytes and read the declared target class names
+     */
+    List<String> loadMixin(MixinConfig config, String mixinClass) throws Exception {
+        byte[] mixinBytes = TreeInfo.loadClass(mixinClass, true);
+        this.classBytes.put(mixinClass, mixinBytes);
+
+        ClassNode classNode = new ClassNode();
+        new ClassReader(mixinBytes).accept(classNode, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        
+        List<String> targets = new ArrayList<String>();
+        AnnotationNode mixin = ASMHelper.getInvisibleAnnotation(classNode, Mixin.class);
+        if (mixin == null) {
+            return targets;
+        }
+        
+        List<Type> publicTargets = ASMHelper.getAnnotationValue(mixin, "value");
+        if (publicTargets != null) {
+            for (Type publicTarget : publicTargets) {
+                targets.add(publicTarget.getClassName());
+            }
+        }
+        
+        List<String> privateTargets = ASMHelper.getAnnotationValue(mixin, "targets");
+        if (privateTargets != null) {
+            for (String privateTarget : privateTargets) {
+                targets.add(config.remapClassName(classNode.name, privateTarget));
+            }
+        }
+        
+        return targets;
+    }
+
+    private <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            // Failures are reported when the mixin is prepared
+            this.logger.debug("Error prefetching mixin data: {}", ex.getCause().toString());
+        }
+        return null;
+    }
+    
+}
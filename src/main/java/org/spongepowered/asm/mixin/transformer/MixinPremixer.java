@@ -0,0 +1,504 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.spongepowered.asm.launch.Blackboard;
+import org.spongepowered.asm.launch.MixinBootstrap;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
+import org.spongepowered.asm.mixin.MixinEnvironment.Phase;
+import org.spongepowered.asm.mixin.MixinEnvironment.Side;
+import org.spongepowered.asm.mixin.Mixins;
+import org.spongepowered.asm.mixin.throwables.MixinException;
+import org.spongepowered.asm.util.Constants;
+
+import com.google.common.base.Joiner;
+
+import net.minecraft.launchwrapper.Launch;
+import net.minecraft.launchwrapper.LaunchClassLoader;
+
+/**
+ * <p>Applies mixins ahead of time. Every class in a set of input jars which is
+ * targetted by the supplied mixin configs has its mixins applied, and the
+ * results are written to new jars in the output directory. Input jars are
+ * processed in parallel.</p>
+ * 
+ * <p>Since the mixin subsystem expects to run inside launchwrapper, the
+ * premixer creates a headless launch context whose class loader sources are
+ * the input jars and the supplied classpath. Class bytecode, mixin configs and
+ * refmaps are thus resolved from these rather than from a game class loader.
+ * Configs for all phases are selected in a single pass, but only classes
+ * whose mixins all come from configs for the default phase are premixed. The
+ * mixins applied at runtime to a class targetted by an earlier phase depend on
+ * when the class is loaded, so those classes are left to be mixed at
+ * runtime.</p>
+ * 
+ * <p>Each rewritten class is marked in the manifest of the output jar with the
+ * {@link Constants#PREMIXED_ATTRIBUTE} attribute, whose value is a fingerprint
+ * of the mixins which were applied, and the {@link
+ * Constants#PREMIXED_MIXINS_ATTRIBUTE} attribute listing them. The main
+ * attributes list the configs which were applied. The original bytecode of
+ * each rewritten class is kept under {@link
+ * Constants#PREMIXED_ORIGINALS_PATH}. At runtime the premixed class is used
+ * as-is only if the mixins selected for it have the same fingerprint,
+ * otherwise mixins are applied to the original class as normal.</p>
+ */
+public final class MixinPremixer {
+    
+    private static final Logger logger = LogManager.getLogger("mixin");
+    
+    /**
+     * Phases to select, in order 
+     */
+    private static final Phase[] PHASES = { Phase.PREINIT, Phase.INIT, Phase.DEFAULT };
+    
+    private static final String CLASS_SUFFIX = ".class";
+    
+    /**
+     * Directory to write premixed jars to
+     */
+    private final File outputDir;
+    
+    /**
+     * Jars to premix
+     */
+    private final List<File> jars = new ArrayList<File>();
+    
+    /**
+     * Additional class loader sources which are read but not rewritten, eg.
+     * libraries and the jars containing the mixins themselves
+     */
+    private final List<File> classPath = new ArrayList<File>();
+    
+    /**
+     * Mixin config resources to apply
+     */
+    private final List<String> configs = new ArrayList<String>();
+    
+    /**
+     * Side to premix for 
+     */
+    private Side side = Side.UNKNOWN;
+    
+    /**
+     * Maximum number of jars to process at once
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+    
+    /**
+     * @param outputDir Directory to write premixed jars to
+     */
+    public MixinPremixer(File outputDir) {
+        this.outputDir = outputDir;
+    }
+    
+    /**
+     * Add a jar to be premixed
+     * 
+     * @param jar Jar file
+     * @return fluent interface
+     */
+    public MixinPremixer addJar(File jar) {
+        this.jars.add(jar);
+        return this;
+    }
+    
+    /**
+     * Add a jar or directory to the classpath used when premixing
+     * 
+     * @param file Jar file or directory
+     * @return fluent interface
+     */
+    public MixinPremixer addClassPath(File file) {
+        this.classPath.add(file);
+        return this;
+    }
+    
+    /**
+     * Add a mixin config to apply
+     * 
+     * @param config Config resource name
+     * @return fluent interface
+     */
+    public MixinPremixer addConfig(String config) {
+        this.configs.add(config);
+        return this;
+    }
+    
+    /**
+     * Set the side to premix for, required if configs declare side-specific
+     * mixins
+     * 
+     * @param side Side to premix for
+     * @return fluent interface
+     */
+    public MixinPremixer setSide(Side side) {
+        this.side = side;
+        return this;
+    }
+    
+    /**
+     * Set the maximum number of jars to process at once
+     * 
+     * @param threads Number of threads
+     * @return fluent interface
+     */
+    public MixinPremixer setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+    
+    /**
+     * Premix all input jars. This can only be done once per VM since it takes
+     * over the launch context.
+     * 
+     * @return number of classes which were premixed
+     * @throws IOException if an input jar cannot be read or an output jar
+     *      cannot be written
+     */
+    public int run() throws IOException {
+        if (this.jars.isEmpty()) {
+            throw new IllegalStateException("No input jars were specified");
+        }
+        
+        final MixinTransformer transformer = this.init();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.threads, this.jars.size()));
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (final File jar : this.jars) {
+            final File outputJar = new File(this.outputDir, jar.getName());
+            if (outputJar.getCanonicalFile().equals(jar.getCanonicalFile())) {
+                executor.shutdown();
+                throw new IllegalArgumentException("Cannot premix " + jar + " in place");
+            }
+            
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return Integer.valueOf(MixinPremixer.this.premix(transformer, jar, outputJar));
+                }
+            }));
+        }
+        executor.shutdown();
+        
+        int total = 0;
+        try {
+            for (Future<Integer> result : results) {
+                total += result.get().intValue();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted whilst premixing", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException)ex.getCause();
+            }
+            throw new MixinException("Error premixing jars", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        MixinPremixer.logger.info("Premixed {} classes from {} jars into {}", total, this.jars.size(), this.outputDir);
+        return total;
+    }
+    
+    /**
+     * Set up the headless launch context and environment, then create the
+     * transformer and select configs for all phases
+     */
+    private MixinTransformer init() throws IOException {
+        if (Launch.classLoader != null) {
+            throw new IllegalStateException("Cannot premix inside an existing launch context");
+        }
+        
+        List<URL> sources = new ArrayList<URL>();
+        for (File jar : this.jars) {
+            sources.add(jar.toURI().toURL());
+        }
+        for (File file : this.classPath) {
+            sources.add(file.toURI().toURL());
+        }
+        
+        Launch.blackboard = new HashMap<String, Object>();
+        Launch.classLoader = new LaunchClassLoader(sources.toArray(new URL[sources.size()]));
+        Blackboard.put(Blackboard.Keys.INIT, MixinBootstrap.VERSION);
+        Blackboard.put(Blackboard.Keys.TWEAKS, new ArrayList<Object>());
+        Blackboard.put(Blackboard.Keys.TWEAKCLASSES, new ArrayList<String>());
+        
+        MixinEnvironment.init(Phase.DEFAULT);
+        for (Phase phase : MixinPremixer.PHASES) {
+            MixinEnvironment environment = MixinEnvironment.getEnvironment(phase);
+            environment.setSide(this.side);
+            environment.setOption(Option.CONCURRENT_TRANSFORM, true);
+        }
+        
+        for (String config : this.configs) {
+            Mixins.addConfiguration(config);
+        }
+        
+        MixinTransformer transformer = new MixinTransformer();
+        for (Phase phase : MixinPremixer.PHASES) {
+            transformer.checkSelect(MixinEnvironment.getEnvironment(phase));
+        }
+        return transformer;
+    }
+    
+    /**
+     * Premix a single jar. Targetted classes are transformed up front so that
+     * the manifest, which must be the first entry, can list them.
+     * 
+     * @param transformer Transformer to apply mixins with
+     * @param jar Input jar
+     * @param outputJar Output jar
+     * @return number of classes which were premixed
+     */
+    int premix(MixinTransformer transformer, File jar, File outputJar) throws IOException {
+        JarFile jarFile = new JarFile(jar);
+        try {
+            Map<String, byte[]> premixed = new HashMap<String, byte[]>();
+            Map<String, byte[]> originals = new HashMap<String, byte[]>();
+            Map<String, SortedSet<MixinInfo>> mixins = new HashMap<String, SortedSet<MixinInfo>>();
+            for (Enumeration<JarEntry> iter = jarFile.entries(); iter.hasMoreElements();) {
+                JarEntry entry = iter.nextElement();
+                String className = MixinPremixer.getClassName(entry);
+                if (className != null && transformer.hasMixinsFor(className)) {
+                    if (!MixinPremixer.isDefaultPhase(transformer.getMixinsFor(className))) {
+                        MixinPremixer.logger.debug("Not premixing {}, it is targetted by mixins from configs for an earlier phase", className);
+                        continue;
+                    }
+                    byte[] basicClass = MixinPremixer.read(jarFile, entry);
+                    byte[] transformedClass = transformer.transform(className, className, basicClass);
+                    if (transformedClass != basicClass) {
+                        premixed.put(entry.getName(), transformedClass);
+                        originals.put(Constants.PREMIXED_ORIGINALS_PATH + entry.getName(), basicClass);
+                        mixins.put(entry.getName(), transformer.getMixinsFor(className));
+                    }
+                }
+            }
+            
+            MixinPremixer.write(jarFile, outputJar, this.createManifest(jarFile, mixins), premixed, originals);
+            MixinPremixer.logger.info("Premixed {} classes from {}", premixed.size(), jar);
+            return premixed.size();
+        } finally {
+            jarFile.close();
+        }
+    }
+
+    /**
+     * Get whether all of the mixins come from configs for the default phase.
+     * Classes targetted from earlier phases are usually loaded before the
+     * default phase is selected, and so get fewer mixins at runtime.
+     */
+    private static boolean isDefaultPhase(SortedSet<MixinInfo> mixins) {
+        for (MixinInfo mixin : mixins) {
+            if (mixin.getParent().getEnvironment().getPhase() != Phase.DEFAULT) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Manifest createManifest(JarFile jarFile, Map<String, SortedSet<MixinInfo>> premixed) throws IOException {
+        Manifest source = jarFile.getManifest();
+        Manifest manifest = source != null ? new Manifest(source) : new Manifest();
+        Attributes mainAttributes = manifest.getMainAttributes();
+        if (mainAttributes.getValue(Attributes.Name.MANIFEST_VERSION) == null) {
+            mainAttributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        }
+        mainAttributes.putValue(Constants.PREMIXED_ATTRIBUTE, Joiner.on(',').join(this.configs));
+        
+        for (Entry<String, SortedSet<MixinInfo>> entry : premixed.entrySet()) {
+            Attributes attributes = manifest.getAttributes(entry.getKey());
+            if (attributes == null) {
+                attributes = new Attributes();
+                manifest.getEntries().put(entry.getKey(), attributes);
+            }
+            List<String> mixins = new ArrayList<String>();
+            for (MixinInfo mixin : entry.getValue()) {
+                mixins.add(mixin.getParent().getName() + ":" + mixin.getClassName());
+            }
+            attributes.putValue(Constants.PREMIXED_ATTRIBUTE, MixinTransformer.getPremixFingerprint(entry.getValue()));
+            attributes.putValue(Constants.PREMIXED_MIXINS_ATTRIBUTE, Joiner.on(',').join(mixins));
+        }
+        
+        return manifest;
+    }
+    
+    private static void write(JarFile jarFile, File outputJar, Manifest manifest, Map<String, byte[]> premixed, Map<String, byte[]> originals)
+            throws IOException {
+        outputJar.getParentFile().mkdirs();
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(outputJar), manifest);
+        try {
+            for (Enumeration<JarEntry> iter = jarFile.entries(); iter.hasMoreElements();) {
+                JarEntry entry = iter.nextElement();
+                String name = entry.getName();
+                if (JarFile.MANIFEST_NAME.equalsIgnoreCase(name) || (!premixed.isEmpty() && MixinPremixer.isSignature(name))) {
+                    continue;
+                }
+                
+                JarEntry outputEntry = new JarEntry(name);
+                outputEntry.setTime(entry.getTime());
+                out.putNextEntry(outputEntry);
+                byte[] bytes = premixed.get(name);
+                if (bytes != null) {
+                    out.write(bytes);
+                } else if (!entry.isDirectory()) {
+                    MixinPremixer.copy(jarFile, entry, out);
+                }
+                out.closeEntry();
+            }
+            
+            for (Entry<String, byte[]> original : originals.entrySet()) {
+                out.putNextEntry(new JarEntry(original.getKey()));
+                out.write(original.getValue());
+                out.closeEntry();
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+    
+    private static String getClassName(JarEntry entry) {
+        String name = entry.getName();
+        if (entry.isDirectory() || !name.endsWith(MixinPremixer.CLASS_SUFFIX) || name.startsWith("META-INF/")) {
+            return null;
+        }
+        return name.substring(0, name.length() - MixinPremixer.CLASS_SUFFIX.length()).replace('/', '.');
+    }
+    
+    /**
+     * Signatures are invalidated by premixing so are not copied to the output
+     */
+    private static boolean isSignature(String name) {
+        String upperName = name.toUpperCase();
+        return upperName.startsWith("META-INF/") && (upperName.endsWith(".SF") || upperName.endsWith(".RSA") || upperName.endsWith(".DSA")
+                || upperName.endsWith(".EC"));
+    }
+
+    private static byte[] read(JarFile jarFile, JarEntry entry) throws IOException {
+        InputStream in = jarFile.getInputStream(entry);
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+    
+    private static void copy(JarFile jarFile, JarEntry entry, OutputStream out) throws IOException {
+        InputStream in = jarFile.getInputStream(entry);
+        try {
+            IOUtils.copy(in, out);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Command-line entry point. Usage: <tt>--out &lt;dir&gt; --config
+     * &lt;config&gt; [--config ...] [--cp &lt;file&gt; ...] [--side
+     * CLIENT|SERVER] [--threads &lt;n&gt;] &lt;jar&gt; [&lt;jar&gt; ...]</tt>
+     * 
+     * @param args command-line arguments
+     * @throws IOException if premixing fails
+     */
+    public static void main(String[] args) throws IOException {
+        File outputDir = null;
+        List<File> jars = new ArrayList<File>();
+        List<File> classPath = new ArrayList<File>();
+        List<String> configs = new ArrayList<String>();
+        Side side = Side.UNKNOWN;
+        int threads = 0;
+        
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                jars.add(new File(arg));
+            } else if (i + 1 < args.length) {
+                String value = args[++i];
+                if ("--out".equals(arg)) {
+                    outputDir = new File(value);
+                } else if ("--config".equals(arg)) {
+                    configs.add(value);
+                } else if ("--cp".equals(arg)) {
+                    classPath.add(new File(value));
+                } else if ("--side".equals(arg)) {
+                    side = Side.valueOf(value.toUpperCase());
+                } else if ("--threads".equals(arg)) {
+                    threads = Integer.parseInt(value);
+                } else {
+                    MixinPremixer.logger.warn("Ignoring unrecognised option {}", arg);
+                }
+            }
+        }
+        
+        if (outputDir == null || jars.isEmpty() || configs.isEmpty()) {
+            MixinPremixer.logger.error("Usage: MixinPremixer --out <dir> --config <config> [--config ...] [--cp <file> ...] "
+                    + "[--side CLIENT|SERVER] [--threads <n>] <jar> [<jar> ...]");
+            return;
+        }
+        
+        MixinPremixer premixer = new MixinPremixer(outputDir).setSide(side);
+        if (threads > 0) {
+            premixer.setThreads(threads);
+        }
+        for (File jar : jars) {
+            premixer.addJar(jar);
+        }
+        for (File file : classPath) {
+            premixer.addClassPath(file);
+        }
+        for (String config : configs) {
+            premixer.addConfig(config);
+        }
+        premixer.run();
+    }
+}
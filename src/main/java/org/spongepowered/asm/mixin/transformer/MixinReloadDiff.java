@@ -0,0 +1,230 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.spongepowered.asm.lib.AnnotationVisitor;
+import org.spongepowered.asm.lib.ClassVisitor;
+import org.spongepowered.asm.lib.MethodVisitor;
+import org.spongepowered.asm.lib.Opcodes;
+import org.spongepowered.asm.lib.tree.ClassNode;
+import org.spongepowered.asm.lib.tree.MethodNode;
+import org.spongepowered.asm.lib.util.Printer;
+import org.spongepowered.asm.lib.util.Textifier;
+import org.spongepowered.asm.lib.util.TraceClassVisitor;
+import org.spongepowered.asm.lib.util.TraceMethodVisitor;
+import org.spongepowered.asm.mixin.Overwrite;
+import org.spongepowered.asm.util.ASMHelper;
+
+/**
+ * Compares the previous and reloaded bytecode of a mixin to determine whether
+ * the changes are confined to the bodies of methods which are merged into
+ * targets as-is, in which case targets can be patched rather than having all
+ * of their mixins re-applied.
+ */
+final class MixinReloadDiff {
+    
+    /**
+     * Names of methods whose bodies changed, null if the reload changed
+     * anything else
+     */
+    private final Set<String> changedMethods;
+    
+    /**
+     * Reason that the changes are not confined to method bodies
+     */
+    private String reason;
+    
+    MixinReloadDiff(ClassNode previous, ClassNode current) {
+        this.changedMethods = this.compare(previous, current);
+    }
+    
+    /**
+     * Get whether only the bodies of mergeable methods changed
+     */
+    boolean isBodyOnly() {
+        return this.changedMethods != null;
+    }
+    
+    /**
+     * Get the (mixin) names of the methods whose bodies changed, null if the
+     * changes are not confined to method bodies
+     */
+    Set<String> getChangedMethods() {
+        return this.changedMethods;
+    }
+    
+    /**
+     * Get the reason that targets need to be fully re-transformed, null if the
+     * changes are confined to method bodies
+     */
+    String getReason() {
+        return this.reason;
+    }
+    
+    private Set<String> compare(ClassNode previous, ClassNode current) {
+        if (!MixinReloadDiff.describeClass(previous).equals(MixinReloadDiff.describeClass(current))) {
+            return this.structural("class header, annotations or fields changed");
+        }
+        
+        if (previous.methods.size() != current.methods.size()) {
+            return this.structural("methods were added or removed");
+        }
+        
+        Map<String, MethodNode> previousMethods = new HashMap<String, MethodNode>();
+        for (MethodNode method : previous.methods) {
+            previousMethods.put(method.name + method.desc, method);
+        }
+        
+        Set<String> changedMethods = new HashSet<String>();
+        for (MethodNode method : current.methods) {
+            MethodNode previousMethod = previousMethods.get(method.name + method.desc);
+            if (previousMethod == null) {
+                return this.structural("method " + method.name + method.desc + " was added");
+            }
+            
+            if (!MixinReloadDiff.describeMethod(previousMethod, false).equals(MixinReloadDiff.describeMethod(method, false))) {
+                return this.structural("signature or annotations of " + method.name + method.desc + " changed");
+            }
+            
+            if (MixinReloadDiff.describeMethod(previousMethod, true).equals(MixinReloadDiff.describeMethod(method, true))) {
+                continue;
+            }
+            
+            if (method.name.startsWith("<")) {
+                return this.structural("initialiser " + method.name + method.desc + " changed");
+            }
+            
+            if (ASMHelper.getVisibleAnnotation(method, Overwrite.class) != null) {
+                return this.structural("overwrite " + method.name + method.desc + " changed");
+            }
+            
+            changedMethods.add(method.name);
+        }
+        
+        return changedMethods;
+    }
+    
+    private Set<String> structural(String reason) {
+        this.reason = reason;
+        return null;
+    }
+    
+    /**
+     * Describe everything in the class except methods
+     */
+    private static String describeClass(ClassNode classNode) {
+        Textifier textifier = new Textifier();
+        classNode.accept(new ClassVisitor(Opcodes.ASM5, new TraceClassVisitor(null, textifier, null)) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                return null;
+            }
+        });
+        return MixinReloadDiff.print(textifier);
+    }
+    
+    /**
+     * Describe a method, either just its signature and annotations or the
+     * whole method including the code
+     */
+    private static String describeMethod(MethodNode method, boolean includeCode) {
+        MethodNode subject = method;
+        if (!includeCode) {
+            String[] exceptions = method.exceptions.toArray(new String[method.exceptions.size()]);
+            subject = new MethodNode(Opcodes.ASM5, method.access, method.name, method.desc, method.signature, exceptions);
+            subject.visibleAnnotations = method.visibleAnnotations;
+            subject.invisibleAnnotations = method.invisibleAnnotations;
+            subject.visibleParameterAnnotations = method.visibleParameterAnnotations;
+            subject.invisibleParameterAnnotations = method.invisibleParameterAnnotations;
+            subject.annotationDefault = method.annotationDefault;
+        }
+        
+        Textifier textifier = new Textifier();
+        Printer printer = textifier.visitMethod(method.access, method.name, method.desc, method.signature,
+                method.exceptions.toArray(new String[method.exceptions.size()]));
+        subject.accept(new TraceMethodVisitor(printer));
+        return MixinReloadDiff.print(textifier);
+    }
+    
+    /**
+     * Compare the code of two methods, ignoring their names and annotations,
+     * and the frames and maxs which depend on how the class was written
+     */
+    static boolean isSameCode(MethodNode method1, MethodNode method2) {
+        return MixinReloadDiff.describeCode(method1).equals(MixinReloadDiff.describeCode(method2));
+    }
+    
+    private static String describeCode(MethodNode method) {
+        Textifier textifier = new Textifier();
+        method.accept(new MethodVisitor(Opcodes.ASM5, new TraceMethodVisitor(textifier)) {
+            @Override
+            public void visitParameter(String name, int access) {
+                // ignored
+            }
+            
+            @Override
+            public AnnotationVisitor visitAnnotationDefault() {
+                return null;
+            }
+            
+            @Override
+            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                return null;
+            }
+            
+            @Override
+            public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+                return null;
+            }
+            
+            @Override
+            public void visitFrame(int type, int nLocal, Object[] local, int nStack, Object[] stack) {
+                // ignored
+            }
+            
+            @Override
+            public void visitMaxs(int maxStack, int maxLocals) {
+                // ignored
+            }
+        });
+        return MixinReloadDiff.print(textifier);
+    }
+    
+    private static String print(Textifier textifier) {
+        StringWriter text = new StringWriter();
+        PrintWriter writer = new PrintWriter(text);
+        textifier.print(writer);
+        writer.flush();
+        return text.toString();
+    }
+    
+}
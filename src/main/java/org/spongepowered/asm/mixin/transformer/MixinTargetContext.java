@@ -182,7 +182,9 @@ public class MixinTargetContext implements IReferenceMapperContext {
      */
     void addMergedMethod(MethodNode method) {
         this.mergedMethods.add(method);
-        this.targetClassInfo.addMethod(method);
+        if (!this.targetClass.isSpeculative()) {
+            this.targetClassInfo.addMethod(method);
+        }
         
         ASMHelper.setVisibleAnnotation(method, MixinMerged.class,
                 "mixin", this.getClassName(),
@@ -886,7 +888,9 @@ public class MixinTargetContext implements IReferenceMapperContext {
      * @param targetClass Target class
      */
     public void preApply(String transformedName, ClassNode targetClass) {
-        this.mixin.preApply(transformedName, targetClass);
+        if (!this.targetClass.isSpeculative()) {
+            this.mixin.preApply(transformedName, targetClass);
+        }
     }
 
     /**
@@ -905,7 +909,9 @@ public class MixinTargetContext implements IReferenceMapperContext {
                 group, this.mixin, ex.getMessage()));
         }
         
-        this.mixin.postApply(transformedName, targetClass);
+        if (!this.targetClass.isSpeculative()) {
+            this.mixin.postApply(transformedName, targetClass);
+        }
     }
 
     public String getHandlerName(AnnotationNode annotation, MethodNode method, boolean surrogate) {
@@ -26,24 +26,34 @@ package org.spongepowered.asm.mixin.transformer;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.spongepowered.asm.launch.MixinBootstrap;
+import org.spongepowered.asm.lib.ClassReader;
 import org.spongepowered.asm.lib.Opcodes;
+import org.spongepowered.asm.lib.tree.AnnotationNode;
 import org.spongepowered.asm.lib.tree.ClassNode;
 import org.spongepowered.asm.lib.tree.FieldNode;
 import org.spongepowered.asm.lib.tree.MethodNode;
@@ -61,15 +71,25 @@ import org.spongepowered.asm.mixin.throwables.MixinException;
 import org.spongepowered.asm.mixin.throwables.MixinPrepareError;
 import org.spongepowered.asm.mixin.extensibility.IMixinInfo;
 import org.spongepowered.asm.mixin.transformer.MixinTransformerModuleCheckClass.ValidationFailedException;
+import org.spongepowered.asm.mixin.transformer.TargetClassContext.Speculation;
 import org.spongepowered.asm.mixin.transformer.debug.IDecompiler;
 import org.spongepowered.asm.mixin.transformer.debug.IHotSwap;
 import org.spongepowered.asm.mixin.transformer.meta.MixinMerged;
+import org.spongepowered.asm.mixin.transformer.meta.MixinRenamed;
 import org.spongepowered.asm.mixin.transformer.throwables.InvalidMixinException;
 import org.spongepowered.asm.mixin.transformer.throwables.MixinTransformerError;
 import org.spongepowered.asm.transformers.TreeTransformer;
+import org.spongepowered.asm.util.ASMHelper;
 import org.spongepowered.asm.util.Constants;
+import org.spongepowered.asm.util.Locals;
 import org.spongepowered.asm.util.PrettyPrinter;
 
+import com.google.common.base.Charsets;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
 import net.minecraft.launchwrapper.IClassTransformer;
 import net.minecraft.launchwrapper.Launch;
 
@@ -190,7 +210,8 @@ public class MixinTransformer extends TreeTransformer {
     }
 
     /**
-     * Re-entrance semaphore used to share re-entrance data with the TreeInfo
+     * Re-entrance semaphore used to share re-entrance data with the TreeInfo,
+     * each transforming thread has its own state
      */
     class ReEntranceState {
         
@@ -209,6 +230,12 @@ public class MixinTransformer extends TreeTransformer {
          */
         private boolean semaphore = false;
         
+        /**
+         * Set whilst this thread is handling a mixin error, no further mixins
+         * are processed by the thread until handling completes
+         */
+        private boolean errorState = false;
+        
         public ReEntranceState(int maxDepth) {
             this.maxDepth = maxDepth;
         }
@@ -297,10 +324,31 @@ public class MixinTransformer extends TreeTransformer {
             this.semaphore = false;
             return this;
         }
+        
+        /**
+         * Get whether this thread is currently handling a mixin error
+         */
+        boolean isErrorState() {
+            return this.errorState;
+        }
+        
+        /**
+         * Set whether this thread is currently handling a mixin error
+         * 
+         * @param errorState new error state
+         */
+        void setErrorState(boolean errorState) {
+            this.errorState = errorState;
+        }
     }
     
     static final File DEBUG_OUTPUT = new File(Constants.DEBUG_OUTPUT_PATH);
     
+    /**
+     * Constant pool tag for UTF8 entries 
+     */
+    private static final int CONSTANT_UTF8 = 1;
+    
     /**
      * Log all the things
      */
@@ -317,19 +365,46 @@ public class MixinTransformer extends TreeTransformer {
     private final List<MixinConfig> pendingConfigs = new ArrayList<MixinConfig>();
     
     /**
-     * Transformer modules
+     * Transformer modules, replaced (never modified) when modules are selected
      */
-    private final List<IMixinTransformerModule> modules = new ArrayList<IMixinTransformerModule>();
+    private volatile List<IMixinTransformerModule> modules = Collections.<IMixinTransformerModule>emptyList();
 
     /**
      * Current environment 
      */
-    private MixinEnvironment currentEnvironment;
+    private volatile MixinEnvironment currentEnvironment;
     
     /**
-     * Re-entrance detector
+     * Routing index for incoming classes, rebuilt whenever configs are prepared
      */
-    private final ReEntranceState lock = new ReEntranceState(1);
+    private volatile RoutingIndex index = RoutingIndex.EMPTY;
+    
+    /**
+     * Re-entrance detector, one state per transforming thread
+     */
+    private final ThreadLocal<ReEntranceState> lock = new ThreadLocal<ReEntranceState>() {
+        @Override
+        protected ReEntranceState initialValue() {
+            return new ReEntranceState(1);
+        }
+    };
+    
+    /**
+     * True if mixins may be applied to different targets concurrently, when
+     * false all mixin application is serialised on the transformer
+     */
+    private final boolean concurrent;
+    
+    /**
+     * Per-target application locks, only used in concurrent mode
+     */
+    private final ConcurrentMap<String, Object> targetLocks = new ConcurrentHashMap<String, Object>();
+    
+    /**
+     * Classes which had their mixins applied ahead of time by the premixer,
+     * mapped to the fingerprint of the mixins which were applied
+     */
+    private final Map<String, String> premixedClasses = Mixins.getPremixedClasses();
     
     /**
      * Session ID, used as a check when parsing {@link MixinMerged} annotations
@@ -343,11 +418,6 @@ public class MixinTransformer extends TreeTransformer {
      */
     private Level verboseLoggingLevel = Level.DEBUG;
 
-    /**
-     * Handling an error state, do not process further mixins
-     */
-    private boolean errorState = false; 
-    
     /**
      * Directory to export classes to when debug.export is enabled
      */
@@ -362,6 +432,11 @@ public class MixinTransformer extends TreeTransformer {
      * Hot-Swap agent
      */
     private final IHotSwap hotSwapper;
+    
+    /**
+     * Persistent cache of transformed classes, null if disabled
+     */
+    private final MixinClassCache classCache;
 
     /**
      * ctor 
@@ -381,6 +456,8 @@ public class MixinTransformer extends TreeTransformer {
         
         this.decompiler = this.initDecompiler(new File(MixinTransformer.DEBUG_OUTPUT, "java"));
         this.hotSwapper = this.initHotSwapper();
+        this.concurrent = this.initConcurrent(environment);
+        this.classCache = this.initClassCache(environment);
 
         try {
             FileUtils.deleteDirectory(this.classExportDir);
@@ -430,10 +507,42 @@ public class MixinTransformer extends TreeTransformer {
         return null;
     }
 
+    /**
+     * Concurrent application is not available with hot-swap since mixins are
+     * reloaded and targets patched whilst holding the transformer monitor,
+     * which would not exclude application holding only a per-target lock
+     */
+    private boolean initConcurrent(MixinEnvironment environment) {
+        if (!environment.getOption(Option.CONCURRENT_TRANSFORM)) {
+            return false;
+        }
+        
+        if (this.hotSwapper != null) {
+            this.logger.info("Concurrent mixin application is not available when hot-swap is enabled");
+            return false;
+        }
+        
+        return true;
+    }
+    
+    private MixinClassCache initClassCache(MixinEnvironment environment) {
+        if (!environment.getOption(Option.CLASS_CACHE)) {
+            return null;
+        }
+        
+        if (this.hotSwapper != null) {
+            this.logger.info("Mixin class cache is not available when hot-swap is enabled");
+            return null;
+        }
+        
+        String cacheDir = environment.getOptionValue(Option.CLASS_CACHE_DIR);
+        return MixinClassCache.open(new File(cacheDir != null ? cacheDir : Constants.CACHE_PATH));
+    }
+
     /**
      * Force-load all classes targetted by mixins but not yet applied
      */
-    public void audit() {
+    public synchronized void audit() {
         Set<String> unhandled = new HashSet<String>();
         
         for (MixinConfig config : this.configs) {
@@ -464,49 +573,52 @@ public class MixinTransformer extends TreeTransformer {
      *      #transform(java.lang.String, java.lang.String, byte[])
      */
     @Override
-    public synchronized byte[] transform(String name, String transformedName, byte[] basicClass) {
-        if (basicClass == null || transformedName == null || this.errorState) {
+    public byte[] transform(String name, String transformedName, byte[] basicClass) {
+        if (basicClass == null || transformedName == null) {
             return basicClass;
         }
         
-        boolean locked = this.lock.push().isSet();
+        ReEntranceState lock = this.lock.get();
+        if (lock.isErrorState()) {
+            return basicClass;
+        }
+        
+        boolean locked = lock.push().isSet();
         
         MixinEnvironment environment = MixinEnvironment.getCurrentEnvironment();
         
         if (this.currentEnvironment != environment && !locked) {
             try {
-                this.select(environment);
+                this.checkSelect(environment);
             } catch (Exception ex) {
-                this.lock.pop();
+                lock.pop();
                 throw new MixinException(ex);
             }
         }
         
         try {
-            SortedSet<MixinInfo> mixins = null;
-            boolean invalidRef = false;
-            
-            for (MixinConfig config : this.configs) {
-                if (config.packageMatch(transformedName)) {
+            List<MixinConfig> packageConfigs = this.index.getPackageConfigs(transformedName);
+            if (packageConfigs != null) {
+                for (MixinConfig config : packageConfigs) {
                     if (config.canPassThrough(transformedName)) {
                         return this.passThrough(name, transformedName, basicClass);
                     }
-                    invalidRef = true;
-                    continue;
-                }
-                
-                if (config.hasMixinsFor(transformedName)) {
-                    if (mixins == null) {
-                        mixins = new TreeSet<MixinInfo>();
-                    }
-                    
-                    // Get and sort mixins for the class
-                    mixins.addAll(config.getMixinsFor(transformedName));
                 }
+                throw new NoClassDefFoundError(String.format("%s is a mixin class and cannot be referenced directly", transformedName));
             }
             
-            if (invalidRef) {
-                throw new NoClassDefFoundError(String.format("%s is a mixin class and cannot be referenced directly", transformedName));
+            // Pre-sorted mixins for the class, if any
+            SortedSet<MixinInfo> mixins = this.index.getMixinsFor(transformedName);
+            
+            // Premixed classes are only used as-is if their mixins are exactly those selected now, which is also checked for classes which
+            // have no mixins selected at all, otherwise the original class is restored first
+            boolean premixed = false;
+            String premixFingerprint = this.premixedClasses.get(transformedName);
+            if (premixFingerprint != null) {
+                premixed = mixins != null && premixFingerprint.equals(MixinTransformer.getPremixFingerprint(mixins));
+                if (!premixed) {
+                    basicClass = this.restorePremixOriginal(transformedName, mixins);
+                }
             }
             
             if (mixins != null) {
@@ -516,18 +628,22 @@ public class MixinTransformer extends TreeTransformer {
                     throw new MixinApplyError("Re-entrance error.");
                 }
 
-                if (this.hotSwapper != null) {
-                    this.hotSwapper.registerTargetClass(transformedName, basicClass);
-                }
-
-                try {
-                    // Tree for target class
-                    ClassNode targetClassNode = this.readClass(basicClass, true);
-                    TargetClassContext context = new TargetClassContext(this.sessionId, transformedName, targetClassNode, mixins);
-                    basicClass = this.applyMixins(context);
-                } catch (InvalidMixinException th) {
-                    this.dumpClassOnFailure(transformedName, basicClass, environment);
-                    this.handleMixinApplyError(transformedName, th, environment);
+                synchronized (this.getApplicationLock(transformedName)) {
+                    if (this.hotSwapper != null) {
+                        byte[] originalClass = premixed ? this.getPremixOriginal(transformedName) : basicClass;
+                        if (originalClass != null) {
+                            this.hotSwapper.registerTargetClass(transformedName, originalClass);
+                        }
+                    }
+    
+                    try {
+                        basicClass = premixed
+                                ? this.applyCached(transformedName, basicClass, mixins, "premixed")
+                                : this.applyMixins(environment, transformedName, basicClass, mixins);
+                    } catch (InvalidMixinException th) {
+                        this.dumpClassOnFailure(transformedName, basicClass, environment);
+                        this.handleMixinApplyError(transformedName, th, environment);
+                    }
                 }
             }
 
@@ -537,9 +653,81 @@ public class MixinTransformer extends TreeTransformer {
             this.dumpClassOnFailure(transformedName, basicClass, environment);
             throw new MixinTransformerError("An unexpected critical error was encountered", th);
         } finally {
-            this.lock.pop();
+            lock.pop();
         }
     }
+    
+    /**
+     * Get whether any mixins target the specified class. Classes in mixin
+     * packages are never targets.
+     * 
+     * @param transformedName Class name
+     * @return true if mixins would be applied to the class
+     */
+    boolean hasMixinsFor(String transformedName) {
+        return this.index.getPackageConfigs(transformedName) == null && this.index.getMixinsFor(transformedName) != null;
+    }
+    
+    /**
+     * Get the mixins which would be applied to the specified class
+     * 
+     * @param transformedName Class name
+     * @return mixins in application order, or null if no mixins target the
+     *      class
+     */
+    SortedSet<MixinInfo> getMixinsFor(String transformedName) {
+        return this.index.getMixinsFor(transformedName);
+    }
+    
+    /**
+     * Compute the fingerprint of a set of mixins, which the premixer records
+     * for each class it premixes. A premixed class is only used at runtime if
+     * the mixins selected for it have the same fingerprint, which covers the
+     * mixin version and the config, class name, priority, bytecode and refmap
+     * of each mixin.
+     * 
+     * @param mixins Mixins in application order
+     * @return fingerprint
+     */
+    static String getPremixFingerprint(SortedSet<MixinInfo> mixins) {
+        Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putString(MixinBootstrap.VERSION, Charsets.UTF_8).putInt(mixins.size());
+        for (MixinInfo mixin : mixins) {
+            MixinConfig config = mixin.getParent();
+            hasher.putString(config.getName(), Charsets.UTF_8).putByte((byte)0);
+            hasher.putString(mixin.getClassName(), Charsets.UTF_8).putByte((byte)0);
+            hasher.putInt(mixin.getPriority());
+            hasher.putString(String.valueOf(config.getReferenceMapper().getResourceDigest()), Charsets.UTF_8).putByte((byte)0);
+            hasher.putString(String.valueOf(config.getEnvironment().getRefmapObfuscationContext()), Charsets.UTF_8).putByte((byte)0);
+            byte[] mixinBytes = mixin.getClassBytes();
+            hasher.putInt(mixinBytes.length).putBytes(mixinBytes);
+        }
+        return hasher.hash().toString();
+    }
+    
+    /**
+     * Get the monitor which guards mixin application to the specified target.
+     * Outside of concurrent mode all application is serialised on the
+     * transformer itself.
+     * 
+     * @param transformedName Target class name
+     * @return lock object for the target
+     */
+    private Object getApplicationLock(String transformedName) {
+        if (!this.concurrent) {
+            return this;
+        }
+        
+        Object targetLock = this.targetLocks.get(transformedName);
+        if (targetLock == null) {
+            Object newLock = new Object();
+            targetLock = this.targetLocks.putIfAbsent(transformedName, newLock);
+            if (targetLock == null) {
+                targetLock = newLock;
+            }
+        }
+        return targetLock;
+    }
 
     /**
      * Update a mixin class with new bytecode.
@@ -548,8 +736,8 @@ public class MixinTransformer extends TreeTransformer {
      * @param bytes New bytecode
      * @return List of classes that need to be updated
      */
-    public List<String> reload(String mixinClass, byte[] bytes) {
-        if (this.lock.getDepth() > 0) {
+    public synchronized List<String> reload(String mixinClass, byte[] bytes) {
+        if (this.lock.get().getDepth() > 0) {
             throw new MixinApplyError("Cannot reload mixin if re-entrant lock entered");
         }
         List<String> targets = new ArrayList<String>();
@@ -559,6 +747,184 @@ public class MixinTransformer extends TreeTransformer {
         return targets;
     }
 
+    /**
+     * Revert a mixin class to the bytecode it had before it was last reloaded.
+     * Called if the reloaded mixin could not be applied to all of its targets
+     * so that the mixin metadata continues to match the loaded classes.
+     *
+     * @param mixinClass Name of the mixin
+     */
+    public synchronized void revertReload(String mixinClass) {
+        for (MixinConfig config : this.configs) {
+            config.revertMixin(mixinClass);
+        }
+    }
+
+    /**
+     * Patch the current bytecode of a target class after a mixin was reloaded
+     * with changes confined to the bodies of its methods, without re-applying
+     * the other mixins which target the class.
+     * 
+     * <p>The mixin is applied on its own to copies of the original target
+     * class, once as it was before the reload and once as reloaded. These
+     * speculative applications do not update shared metadata. The target is
+     * only patched if every method the mixin merged into the current bytecode
+     * is identical to the method it merges before the reload, which is not
+     * the case if other mixins injected into or overwrote those methods. The
+     * changed methods are then replaced with their reloaded versions.</p>
+     *
+     * @param mixinClass Name of the reloaded mixin
+     * @param transformedName Target class name
+     * @param originalClass Bytecode of the target before mixins were applied
+     * @param currentClass Current bytecode of the target, as last redefined
+     * @return patched bytecode, or null if the target cannot be patched and
+     *      must be re-transformed
+     */
+    public synchronized byte[] patch(String mixinClass, String transformedName, byte[] originalClass, byte[] currentClass) {
+        ReEntranceState lock = this.lock.get();
+        if (lock.getDepth() > 0) {
+            throw new MixinApplyError("Cannot patch target class if re-entrant lock entered");
+        }
+        
+        MixinInfo mixin = this.findMixin(mixinClass, transformedName);
+        Set<String> changedMethods = mixin != null ? mixin.getReloadedMethods() : null;
+        if (changedMethods == null) {
+            return null;
+        }
+        
+        lock.push();
+        try {
+            synchronized (this.getApplicationLock(transformedName)) {
+                ClassNode previousClass = this.applySpeculatively(mixin, transformedName, originalClass, Speculation.PREVIOUS);
+                ClassNode reloadedClass = this.applySpeculatively(mixin, transformedName, originalClass, Speculation.RELOADED);
+                
+                ClassReader currentReader = new ClassReader(currentClass);
+                ClassNode targetClass = this.readClass(currentReader);
+                Set<MethodNode> patchedMethods = MixinTransformer.patchMethods(mixin, changedMethods, previousClass, reloadedClass, targetClass);
+                if (patchedMethods == null) {
+                    this.logger.debug("Methods merged by {} in {} were modified after merging, the class will be re-transformed",
+                            mixin, transformedName);
+                    return null;
+                }
+                
+                this.logger.log(this.verboseLoggingLevel, "Patched {} method(s) from {} into {}", patchedMethods.size(), mixin, transformedName);
+                if (targetClass.version >= Opcodes.V1_6) {
+                    return this.writeClass(currentReader, targetClass, patchedMethods);
+                }
+                return this.writeClass(targetClass);
+            }
+        } catch (Exception ex) {
+            this.logger.warn("Unable to patch {} from {}, the class will be re-transformed: {}", transformedName, mixin, ex.getMessage());
+            return null;
+        } finally {
+            lock.pop();
+        }
+    }
+    
+    private MixinInfo findMixin(String mixinClass, String transformedName) {
+        SortedSet<MixinInfo> mixins = this.index.getMixinsFor(transformedName);
+        if (mixins != null) {
+            for (MixinInfo mixin : mixins) {
+                if (mixin.getClassName().equals(mixinClass)) {
+                    return mixin;
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Apply a single mixin to a copy of the original target class without
+     * updating shared metadata
+     */
+    private ClassNode applySpeculatively(MixinInfo mixin, String transformedName, byte[] originalClass, Speculation speculation) {
+        ClassReader classReader = new ClassReader(originalClass);
+        ClassNode classNode = this.readClass(classReader);
+        SortedSet<MixinInfo> mixins = new TreeSet<MixinInfo>();
+        mixins.add(mixin);
+        new TargetClassContext(this.sessionId, transformedName, classReader, classNode, mixins, speculation).applyMixins();
+        return classNode;
+    }
+    
+    /**
+     * Replace the changed methods merged into the target class by the mixin
+     * with their reloaded versions. Methods are matched by the name they have
+     * in the mixin, since merged methods (injector handlers in particular) may
+     * be named differently when the mixin is applied on its own.
+     * 
+     * @return methods which were replaced, or null if the methods merged by
+     *      the mixin in the target class differ from those it merged before
+     *      the reload
+     */
+    private static Set<MethodNode> patchMethods(MixinInfo mixin, Set<String> changedMethods, ClassNode previousClass, ClassNode reloadedClass,
+            ClassNode targetClass) {
+        Map<String, MethodNode> previousMethods = MixinTransformer.getMergedMethods(mixin, previousClass);
+        Map<String, MethodNode> targetMethods = MixinTransformer.getMergedMethods(mixin, targetClass);
+        if (!previousMethods.keySet().equals(targetMethods.keySet())) {
+            return null;
+        }
+        
+        for (Map.Entry<String, MethodNode> previousMethod : previousMethods.entrySet()) {
+            if (!MixinReloadDiff.isSameCode(previousMethod.getValue(), targetMethods.get(previousMethod.getKey()))) {
+                return null;
+            }
+        }
+        
+        Set<MethodNode> patchedMethods = Collections.newSetFromMap(new IdentityHashMap<MethodNode, Boolean>());
+        for (Map.Entry<String, MethodNode> reloadedMethod : MixinTransformer.getMergedMethods(mixin, reloadedClass).entrySet()) {
+            MethodNode method = reloadedMethod.getValue();
+            if (!changedMethods.contains(MixinTransformer.getMixinMethodName(method))) {
+                continue;
+            }
+            
+            MethodNode target = targetMethods.get(reloadedMethod.getKey());
+            if (target == null || target.access != method.access) {
+                return null;
+            }
+            
+            method.name = target.name;
+            targetClass.methods.set(targetClass.methods.indexOf(target), method);
+            patchedMethods.add(method);
+        }
+        return patchedMethods;
+    }
+    
+    /**
+     * Get the methods in the specified class which were merged by the mixin,
+     * keyed by their name in the mixin and their descriptor
+     */
+    private static Map<String, MethodNode> getMergedMethods(MixinInfo mixin, ClassNode classNode) {
+        Map<String, MethodNode> methods = new HashMap<String, MethodNode>();
+        for (MethodNode method : classNode.methods) {
+            AnnotationNode merged = ASMHelper.getVisibleAnnotation(method, MixinMerged.class);
+            if (merged != null && mixin.getClassName().equals(ASMHelper.<String>getAnnotationValue(merged, "mixin"))) {
+                methods.put(MixinTransformer.getMixinMethodName(method) + method.desc, method);
+            }
+        }
+        return methods;
+    }
+    
+    /**
+     * Get the name a merged method had in the mixin, recorded by the
+     * preprocessor if it renamed the method
+     */
+    private static String getMixinMethodName(MethodNode method) {
+        AnnotationNode renamed = ASMHelper.getVisibleAnnotation(method, MixinRenamed.class);
+        return renamed != null ? ASMHelper.<String>getAnnotationValue(renamed, "originalName") : method.name;
+    }
+
+    /**
+     * Select the specified environment if it was not already selected by
+     * another thread whilst we were waiting for the transformer monitor
+     * 
+     * @param environment Environment to select
+     */
+    synchronized void checkSelect(MixinEnvironment environment) {
+        if (this.currentEnvironment != environment) {
+            this.select(environment);
+        }
+    }
+
     private void select(MixinEnvironment environment) {
         this.verboseLoggingLevel = (environment.getOption(Option.DEBUG_VERBOSE)) ? Level.INFO : Level.DEBUG;
         this.logger.log(this.verboseLoggingLevel, "Preparing mixins for {}", environment);
@@ -569,6 +935,17 @@ public class MixinTransformer extends TreeTransformer {
         int totalMixins = this.prepareConfigs(environment);
         this.currentEnvironment = environment;
         
+        if (this.classCache != null) {
+            this.logger.log(this.verboseLoggingLevel, "Mixin class cache: {} hits, {} misses", this.classCache.getHits(),
+                    this.classCache.getMisses());
+        }
+        
+        CacheStats lvtStats = Locals.getGeneratedLocalVariableTableStats();
+        if (lvtStats.requestCount() > 0) {
+            this.logger.log(this.verboseLoggingLevel, "Generated LVT cache: {} hits, {} misses, {} msec analysing", lvtStats.hitCount(),
+                    lvtStats.missCount(), lvtStats.totalLoadTime() / 1000000L);
+        }
+        
         double elapsedTime = (System.currentTimeMillis() - startTime) * 0.001D;
         if (elapsedTime > 0.25D) {
             String elapsed = new DecimalFormat("###0.000").format(elapsedTime);
@@ -607,17 +984,19 @@ public class MixinTransformer extends TreeTransformer {
      * @param environment Environment to query
      */
     private void selectModules(MixinEnvironment environment) {
-        this.modules.clear();
+        List<IMixinTransformerModule> modules = new ArrayList<IMixinTransformerModule>();
         
         // Run CheckClassAdapter on the mixin bytecode if debug option is enabled 
         if (environment.getOption(Option.DEBUG_VERIFY)) {
-            this.modules.add(new MixinTransformerModuleCheckClass());
+            modules.add(new MixinTransformerModuleCheckClass());
         }
         
         // Run implementation checker if option is enabled
         if (environment.getOption(Option.CHECK_IMPLEMENTS)) {
-            this.modules.add(new MixinTransformerModuleInterfaceChecker());
+            modules.add(new MixinTransformerModuleInterfaceChecker());
         }
+        
+        this.modules = modules;
     }
 
     /**
@@ -629,10 +1008,16 @@ public class MixinTransformer extends TreeTransformer {
     private int prepareConfigs(MixinEnvironment environment) {
         int totalMixins = 0;
         
+        MixinPrefetcher prefetcher = null;
+        if (environment.getOption(Option.PARALLEL_PREPARE)) {
+            prefetcher = new MixinPrefetcher(Runtime.getRuntime().availableProcessors());
+            prefetcher.prefetch(this.pendingConfigs);
+        }
+        
         for (MixinConfig config : this.pendingConfigs) {
             try {
                 this.logger.log(this.verboseLoggingLevel, "Preparing {} ({})", config, config.getDeclaredMixinCount());
-                config.prepare(this.hotSwapper);
+                config.prepare(this.hotSwapper, prefetcher);
                 totalMixins += config.getMixinCount();
             } catch (InvalidMixinException ex) {
                 this.handleMixinPrepareError(config, ex, environment);
@@ -670,6 +1055,7 @@ public class MixinTransformer extends TreeTransformer {
         this.configs.addAll(this.pendingConfigs);
         Collections.sort(this.configs);
         this.pendingConfigs.clear();
+        this.index = RoutingIndex.build(this.configs);
         
         return totalMixins;
     }
@@ -707,6 +1093,182 @@ public class MixinTransformer extends TreeTransformer {
         return this.writeClass(transformedName, passThroughClass, false);
     }
 
+    /**
+     * Apply mixins to the supplied target class bytecode, returning the result
+     * from the class cache instead if this exact combination of class and
+     * mixins was already transformed in a previous session
+     * 
+     * @param environment Current environment
+     * @param transformedName Target class name
+     * @param basicClass Target class bytecode
+     * @param mixins Mixins to apply
+     * @return class bytecode after application of mixins
+     */
+    private byte[] applyMixins(MixinEnvironment environment, String transformedName, byte[] basicClass, SortedSet<MixinInfo> mixins) {
+        HashCode key = null;
+        if (this.canUseClassCache(environment, mixins)) {
+            key = this.classCache.computeKey(environment, basicClass, mixins);
+            byte[] cachedClass = this.classCache.get(key);
+            if (cachedClass != null) {
+                return this.applyCached(transformedName, cachedClass, mixins, "cached");
+            }
+        }
+        
+        // Tree for target class
+        ClassReader classReader = new ClassReader(basicClass);
+        ClassNode targetClassNode = this.readClass(classReader);
+        TargetClassContext context = new TargetClassContext(this.sessionId, transformedName, classReader, targetClassNode, mixins);
+        byte[] bytes = this.applyMixins(context);
+        
+        if (key != null) {
+            this.classCache.put(key, bytes);
+        }
+        
+        return bytes;
+    }
+    
+    /**
+     * Restore the original bytecode of a premixed class whose premixed mixins
+     * do not match the mixins selected for it, for example because a config
+     * was removed or not yet selected
+     * 
+     * @param transformedName Class name
+     * @param mixins Mixins selected for the class, or null if there are none
+     * @return original class bytes
+     */
+    private byte[] restorePremixOriginal(String transformedName, SortedSet<MixinInfo> mixins) {
+        byte[] originalClass = this.getPremixOriginal(transformedName);
+        if (originalClass == null) {
+            throw new MixinApplyError(String.format("Premixed class %s does not match the selected mixins %s and the original class is not "
+                    + "available. The jar containing the class must be premixed again", transformedName, mixins));
+        }
+        if (mixins != null) {
+            this.logger.warn("Premixed class {} does not match the selected mixins {}, mixins will be applied at runtime", transformedName, mixins);
+        } else {
+            this.logger.warn("Premixed class {} has no mixins selected, the original class will be loaded", transformedName);
+        }
+        return originalClass;
+    }
+    
+    /**
+     * Read the original bytecode of a premixed class, which the premixer
+     * stores under {@link Constants#PREMIXED_ORIGINALS_PATH}
+     * 
+     * @param transformedName Class name
+     * @return original class bytes or null if not available
+     */
+    private byte[] getPremixOriginal(String transformedName) {
+        String resource = Constants.PREMIXED_ORIGINALS_PATH + transformedName.replace('.', '/') + ".class";
+        InputStream in = Launch.classLoader != null ? Launch.classLoader.getResourceAsStream(resource) : null;
+        if (in == null) {
+            return null;
+        }
+        try {
+            return IOUtils.toByteArray(in);
+        } catch (IOException ex) {
+            this.logger.warn("Error reading original class for premixed class {}: {}", transformedName, ex.getMessage());
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+    
+    /**
+     * Cached results are not used when transformer modules or debug options
+     * which act on the class during application are active
+     */
+    private boolean canUseClassCache(MixinEnvironment environment, SortedSet<MixinInfo> mixins) {
+        return this.classCache != null
+                && this.modules.isEmpty()
+                && !environment.getOption(Option.DEBUG_EXPORT)
+                && !environment.getOption(Option.DEBUG_VERBOSE)
+                && this.classCache.canCache(mixins);
+    }
+    
+    /**
+     * Bring the metadata for a target class restored from the class cache or
+     * premixed ahead of time up to date, as if its mixins had been applied in
+     * this session
+     * 
+     * @param transformedName Target class name
+     * @param cachedClass Transformed bytecode
+     * @param mixins Mixins which were applied to the class
+     * @param source Where the transformed bytecode came from, for logging
+     * @return transformed bytecode, updated for this session
+     */
+    private byte[] applyCached(String transformedName, byte[] cachedClass, SortedSet<MixinInfo> mixins, String source) {
+        ClassNode classNode = new ClassNode();
+        new ClassReader(cachedClass).accept(classNode, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+        ClassInfo.fromClassNode(classNode).addMembersFrom(classNode);
+        
+        for (MixinInfo mixin : mixins) {
+            this.logger.log(mixin.getLoggingLevel(), "Mixing {} from {} into {} ({})", mixin.getName(), mixin.getParent(), transformedName, source);
+            mixin.postApply(transformedName, classNode);
+        }
+        
+        return this.updateSessionId(cachedClass, classNode);
+    }
+    
+    /**
+     * Replace the session ID in the {@link MixinMerged} annotations of a class
+     * transformed in another session with the ID of this session. Session IDs
+     * are UUIDs and so always have the same length, which allows the constant
+     * pool entry to be overwritten in place without rewriting the class.
+     * 
+     * @param bytes Transformed bytecode
+     * @param classNode Tree of the transformed class, code is not required
+     * @return bytecode with the session ID replaced
+     */
+    private byte[] updateSessionId(byte[] bytes, ClassNode classNode) {
+        String oldSessionId = null;
+        for (MethodNode method : classNode.methods) {
+            AnnotationNode merged = ASMHelper.getVisibleAnnotation(method, MixinMerged.class);
+            if (merged != null) {
+                oldSessionId = ASMHelper.<String>getAnnotationValue(merged, "sessionId");
+                break;
+            }
+        }
+        
+        if (oldSessionId == null || oldSessionId.equals(this.sessionId)) {
+            return bytes;
+        }
+        
+        if (oldSessionId.length() != this.sessionId.length()) {
+            ClassNode updatedClass = this.readClass(bytes, true);
+            for (MethodNode method : updatedClass.methods) {
+                AnnotationNode merged = ASMHelper.getVisibleAnnotation(method, MixinMerged.class);
+                for (int pos = 0; merged != null && pos < merged.values.size() - 1; pos += 2) {
+                    if ("sessionId".equals(merged.values.get(pos))) {
+                        merged.values.set(pos + 1, this.sessionId);
+                    }
+                }
+            }
+            return this.writeClass(updatedClass);
+        }
+        
+        ClassReader classReader = new ClassReader(bytes);
+        byte[] updated = bytes.clone();
+        byte[] oldId = oldSessionId.getBytes(Charsets.UTF_8);
+        byte[] newId = this.sessionId.getBytes(Charsets.UTF_8);
+        for (int item = 1; item < classReader.getItemCount(); item++) {
+            int offset = classReader.getItem(item);
+            if (offset > 0 && bytes[offset - 1] == MixinTransformer.CONSTANT_UTF8 && classReader.readUnsignedShort(offset) == oldId.length
+                    && MixinTransformer.regionMatches(bytes, offset + 2, oldId)) {
+                System.arraycopy(newId, 0, updated, offset + 2, newId.length);
+            }
+        }
+        return updated;
+    }
+    
+    private static boolean regionMatches(byte[] bytes, int offset, byte[] region) {
+        for (int i = 0; i < region.length; i++) {
+            if (bytes[offset + i] != region[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Apply mixins for specified target class to the class described by the
      * supplied byte array.
@@ -769,7 +1331,8 @@ public class MixinTransformer extends TreeTransformer {
     }
 
     private void handleMixinError(String context, InvalidMixinException ex, MixinEnvironment environment, ErrorPhase errorPhase) throws Error {
-        this.errorState = true;
+        ReEntranceState lock = this.lock.get();
+        lock.setErrorState(true);
         
         IMixinInfo mixin = ex.getMixin();
         
@@ -809,7 +1372,7 @@ public class MixinTransformer extends TreeTransformer {
         
         this.logger.log(action.logLevel, errorPhase.getLogMessage(context, ex, mixin), ex);
         
-        this.errorState = false;
+        lock.setErrorState(false);
 
         if (action == ErrorAction.ERROR) {
             throw new MixinApplyError(errorPhase.getErrorMessage(mixin, config, phase), ex);
@@ -845,13 +1408,21 @@ public class MixinTransformer extends TreeTransformer {
     }
 
     private byte[] writeClass(TargetClassContext context) {
+        MixinEnvironment environment = MixinEnvironment.getCurrentEnvironment();
+        if (environment.getOption(Option.INCREMENTAL_FRAMES) && !context.isVersionChanged()
+                && context.getClassNode().version >= Opcodes.V1_6) {
+            byte[] bytes = this.writeClass(context.getClassReader(), context.getClassNode(), context.getModifiedMethods());
+            return this.exportClass(context.getClassName(), bytes, context.isExportForced());
+        }
         return this.writeClass(context.getClassName(), context.getClassNode(), context.isExportForced());
     }
     
     private byte[] writeClass(String transformedName, ClassNode targetClass, boolean forceExport) {
         // Collapse tree to bytes
-        byte[] bytes = this.writeClass(targetClass);
-        
+        return this.exportClass(transformedName, this.writeClass(targetClass), forceExport);
+    }
+    
+    private byte[] exportClass(String transformedName, byte[] bytes, boolean forceExport) {
         // Export transformed class for debugging purposes
         MixinEnvironment environment = MixinEnvironment.getCurrentEnvironment();
         if (forceExport || environment.getOption(Option.DEBUG_EXPORT)) {
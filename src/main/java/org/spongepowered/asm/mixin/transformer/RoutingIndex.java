@@ -0,0 +1,197 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Routing index for the mixin transformer. Built once all pending configs have
+ * been prepared, the index allows the transformer to decide what to do with an
+ * incoming class without consulting every config in turn. Classes which are
+ * neither mixins nor mixin targets are rejected by a short walk of the package
+ * trie followed by a single hash lookup.
+ */
+final class RoutingIndex {
+    
+    /**
+     * Node in the mixin package trie, keyed by character
+     */
+    static final class PackageNode {
+        
+        /**
+         * Keys for child nodes, parallel to {@link #children}
+         */
+        private char[] keys = new char[0];
+        
+        /**
+         * Child nodes
+         */
+        private PackageNode[] children = new PackageNode[0];
+        
+        /**
+         * Configs whose mixin package terminates at this node, null if none
+         */
+        private List<MixinConfig> configs;
+        
+        PackageNode get(char key) {
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.keys[i] == key) {
+                    return this.children[i];
+                }
+            }
+            return null;
+        }
+        
+        PackageNode getOrCreate(char key) {
+            PackageNode child = this.get(key);
+            if (child == null) {
+                int size = this.keys.length;
+                char[] keys = new char[size + 1];
+                PackageNode[] children = new PackageNode[size + 1];
+                System.arraycopy(this.keys, 0, keys, 0, size);
+                System.arraycopy(this.children, 0, children, 0, size);
+                keys[size] = key;
+                children[size] = child = new PackageNode();
+                this.keys = keys;
+                this.children = children;
+            }
+            return child;
+        }
+        
+        void addConfig(MixinConfig config) {
+            if (this.configs == null) {
+                this.configs = new ArrayList<MixinConfig>();
+            }
+            this.configs.add(config);
+        }
+        
+    }
+    
+    /**
+     * Empty index, used before any configs have been prepared
+     */
+    static final RoutingIndex EMPTY = new RoutingIndex();
+    
+    /**
+     * Root of the mixin package trie
+     */
+    private final PackageNode packages = new PackageNode();
+    
+    /**
+     * Target class name to sorted mixin set. The sets are shared between all
+     * transformations of the same class and are therefore immutable.
+     */
+    private final Map<String, SortedSet<MixinInfo>> targets = new HashMap<String, SortedSet<MixinInfo>>();
+    
+    private RoutingIndex() {
+    }
+    
+    /**
+     * Get the configs (if any) whose mixin package contains the specified
+     * class
+     * 
+     * @param className Class name to check
+     * @return list of configs owning the package, or null if the class is not
+     *      in a mixin package
+     */
+    List<MixinConfig> getPackageConfigs(String className) {
+        List<MixinConfig> configs = null;
+        PackageNode node = this.packages;
+        for (int pos = 0; pos < className.length(); pos++) {
+            node = node.get(className.charAt(pos));
+            if (node == null) {
+                break;
+            }
+            if (node.configs != null) {
+                if (configs == null) {
+                    configs = new ArrayList<MixinConfig>();
+                }
+                configs.addAll(node.configs);
+            }
+        }
+        return configs;
+    }
+    
+    /**
+     * Get the sorted set of mixins to apply to the specified class
+     * 
+     * @param className Target class name
+     * @return immutable set of mixins, or null if the class is not a target
+     */
+    SortedSet<MixinInfo> getMixinsFor(String className) {
+        return this.targets.get(className);
+    }
+    
+    private void addPackage(MixinConfig config) {
+        String mixinPackage = config.getMixinPackage();
+        PackageNode node = this.packages;
+        for (int pos = 0; pos < mixinPackage.length(); pos++) {
+            node = node.getOrCreate(mixinPackage.charAt(pos));
+        }
+        node.addConfig(config);
+    }
+    
+    /**
+     * Build a new routing index from the supplied configs
+     * 
+     * @param configs Prepared mixin configs
+     * @return new index
+     */
+    static RoutingIndex build(List<MixinConfig> configs) {
+        RoutingIndex index = new RoutingIndex();
+        Map<String, TreeSet<MixinInfo>> targets = new HashMap<String, TreeSet<MixinInfo>>();
+        
+        for (MixinConfig config : configs) {
+            index.addPackage(config);
+            
+            for (String targetClass : config.getTargets()) {
+                List<MixinInfo> mixinsFor = config.getMixinsFor(targetClass);
+                if (mixinsFor.isEmpty()) {
+                    continue;
+                }
+                
+                TreeSet<MixinInfo> mixins = targets.get(targetClass);
+                if (mixins == null) {
+                    mixins = new TreeSet<MixinInfo>();
+                    targets.put(targetClass, mixins);
+                }
+                mixins.addAll(mixinsFor);
+            }
+        }
+        
+        for (Map.Entry<String, TreeSet<MixinInfo>> target : targets.entrySet()) {
+            index.targets.put(target.getKey(), Collections.unmodifiableSortedSet(target.getValue()));
+        }
+        
+        return index;
+    }
+    
+}
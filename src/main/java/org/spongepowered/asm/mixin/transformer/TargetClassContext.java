@@ -24,11 +24,17 @@
  */
 package org.spongepowered.asm.mixin.transformer;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.locks.Lock;
 
+import org.spongepowered.asm.lib.ClassReader;
 import org.spongepowered.asm.lib.tree.AnnotationNode;
 import org.spongepowered.asm.lib.tree.ClassNode;
 import org.spongepowered.asm.lib.tree.MethodNode;
@@ -50,6 +56,26 @@ class TargetClassContext {
     static class Counter {
         public int value;
     }
+    
+    /**
+     * Mixin state to apply when a single reloaded mixin is applied to a copy
+     * of the target class in order to patch the target, see
+     * {@link MixinTransformer#patch}. Speculative applications do not update
+     * shared class metadata and do not notify mixin config plugins.
+     */
+    static enum Speculation {
+        
+        /**
+         * Apply the mixin as it was before it was last reloaded
+         */
+        PREVIOUS,
+        
+        /**
+         * Apply the reloaded mixin
+         */
+        RELOADED
+        
+    }
 
     /**
      * Transformer session ID
@@ -61,11 +87,31 @@ class TargetClassContext {
      */
     private final String className;
     
+    /**
+     * Reader for the original target class bytecode
+     */
+    private final ClassReader classReader;
+    
     /**
      * Target class as tree 
      */
     private final ClassNode classNode;
     
+    /**
+     * Class version of the original target class
+     */
+    private final int originalVersion;
+    
+    /**
+     * Methods which were present in the original target class
+     */
+    private final Set<MethodNode> originalMethods = Collections.newSetFromMap(new IdentityHashMap<MethodNode, Boolean>());
+    
+    /**
+     * Original methods which have been modified during mixin application
+     */
+    private final Set<MethodNode> modifiedMethods = Collections.newSetFromMap(new IdentityHashMap<MethodNode, Boolean>());
+    
     /**
      * Target class metadata 
      */
@@ -87,6 +133,12 @@ class TargetClassContext {
      */
     private final Map<String, Target> targetMethods = new HashMap<String, Target>();
 
+    /**
+     * Mixin state to apply if this is a speculative application, null for a
+     * normal application
+     */
+    private final Speculation speculation;
+
     /**
      * Do not remap injector handler methods (debug option)
      */
@@ -103,15 +155,40 @@ class TargetClassContext {
      */
     private boolean forceExport;
 
-    TargetClassContext(String sessionId, String name, ClassNode classNode, SortedSet<MixinInfo> mixins) {
+    TargetClassContext(String sessionId, String name, ClassReader classReader, ClassNode classNode, SortedSet<MixinInfo> mixins) {
+        this(sessionId, name, classReader, classNode, mixins, null);
+    }
+    
+    TargetClassContext(String sessionId, String name, ClassReader classReader, ClassNode classNode, SortedSet<MixinInfo> mixins,
+            Speculation speculation) {
         this.sessionId = sessionId;
         this.className = name;
+        this.classReader = classReader;
         this.classNode = classNode;
+        this.originalVersion = classNode.version;
+        this.originalMethods.addAll(classNode.methods);
         this.classInfo = ClassInfo.fromClassNode(classNode);
         this.mixins = mixins;
+        this.speculation = speculation;
         this.disableHandlerRemap = MixinEnvironment.getCurrentEnvironment().getOption(Option.DEBUG_DISABLE_HANDLER_REMAP);
     }
     
+    /**
+     * Get the mixin state applied by a speculative application, or null if
+     * this is a normal application
+     */
+    Speculation getSpeculation() {
+        return this.speculation;
+    }
+    
+    /**
+     * Get whether this is a speculative application, which must not update
+     * shared metadata or notify plugins
+     */
+    boolean isSpeculative() {
+        return this.speculation != null;
+    }
+    
     public boolean isApplied() {
         return this.applied;
     }
@@ -148,6 +225,20 @@ class TargetClassContext {
         return this.classNode;
     }
 
+    /**
+     * Get the reader for the original class bytecode
+     */
+    public ClassReader getClassReader() {
+        return this.classReader;
+    }
+    
+    /**
+     * Get whether the class version was raised during mixin application
+     */
+    public boolean isVersionChanged() {
+        return this.classNode.version != this.originalVersion;
+    }
+
     /**
      * Get the class methods (from the tree)
      */
@@ -180,6 +271,7 @@ class TargetClassContext {
             throw new IllegalArgumentException("Invalid target method supplied to getTargetMethod()");
         }
         
+        this.addModifiedMethod(method);
         String targetName = method.name + method.desc;
         Target target = this.targetMethods.get(targetName);
         if (target == null) {
@@ -189,6 +281,29 @@ class TargetClassContext {
         return target;
     }
 
+    /**
+     * Record that a method in the target class was modified in place
+     * 
+     * @param method modified method
+     */
+    public void addModifiedMethod(MethodNode method) {
+        this.modifiedMethods.add(method);
+    }
+    
+    /**
+     * Get the methods in the target class which were added or modified since
+     * the class was read, all other methods are unchanged
+     */
+    public Set<MethodNode> getModifiedMethods() {
+        Set<MethodNode> modifiedMethods = Collections.newSetFromMap(new IdentityHashMap<MethodNode, Boolean>());
+        for (MethodNode method : this.classNode.methods) {
+            if (!this.originalMethods.contains(method) || this.modifiedMethods.contains(method)) {
+                modifiedMethods.add(method);
+            }
+        }
+        return modifiedMethods;
+    }
+
     public String getHandlerName(AnnotationNode annotation, MethodNode method, boolean surrogate) {
         if (this.disableHandlerRemap) {
             return method.name;
@@ -213,8 +328,51 @@ class TargetClassContext {
             throw new IllegalStateException("Mixins already applied to target class " + this.className);
         }
         this.applied = true;
-        MixinApplicatorStandard applicator = this.createApplicator();
-        applicator.apply(this.mixins);
+        
+        // Mixins are locked in application order, which is the same for every
+        // target, so that concurrent targets sharing mixins cannot deadlock
+        List<Lock> locks = new ArrayList<Lock>(this.mixins.size());
+        try {
+            for (MixinInfo mixin : this.mixins) {
+                Lock lock = mixin.getApplicationLock();
+                lock.lock();
+                locks.add(lock);
+            }
+            
+            MixinApplicatorStandard applicator = this.createApplicator();
+            if (this.isSpeculative()) {
+                this.applySpeculatively(applicator);
+            } else {
+                applicator.apply(this.mixins);
+            }
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+    }
+
+    private void applySpeculatively(MixinApplicatorStandard applicator) {
+        // Members of the mixins are renamed as they are attached, restore the
+        // names set by the last normal application afterwards
+        Map<ClassInfo.Member, String> names = new IdentityHashMap<ClassInfo.Member, String>();
+        for (MixinInfo mixin : this.mixins) {
+            for (ClassInfo.Member method : mixin.getClassInfo().getMethods()) {
+                names.put(method, method.getName());
+            }
+            for (ClassInfo.Member field : mixin.getClassInfo().getFields()) {
+                names.put(field, field.getName());
+            }
+        }
+        try {
+            applicator.apply(this.mixins);
+        } finally {
+            for (Map.Entry<ClassInfo.Member, String> name : names.entrySet()) {
+                if (!name.getKey().getName().equals(name.getValue())) {
+                    name.getKey().renameTo(name.getValue());
+                }
+            }
+        }
     }
 
     private MixinApplicatorStandard createApplicator() {
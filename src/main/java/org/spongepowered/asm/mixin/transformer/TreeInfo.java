@@ -26,7 +26,7 @@ package org.spongepowered.asm.mixin.transformer;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URLClassLoader;
+import java.util.List;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
@@ -47,11 +47,11 @@ abstract class TreeInfo {
     private static final Logger logger = LogManager.getLogger("mixin");
     
     /**
-     * Re-entrance lock
+     * Re-entrance lock, one state per transforming thread
      */
-    private static ReEntranceState lock;
+    private static ThreadLocal<ReEntranceState> lock;
 
-    static void setLock(ReEntranceState lock) {
+    static void setLock(ThreadLocal<ReEntranceState> lock) {
         TreeInfo.lock = lock;
     }
 
@@ -84,12 +84,31 @@ abstract class TreeInfo {
      * @throws IOException if an error occurs whilst reading the specified class
      */
     protected static byte[] loadClass(String className, boolean runTransformers) throws ClassNotFoundException, IOException {
+        MixinEnvironment environment = MixinEnvironment.getCurrentEnvironment();
+        return TreeInfo.loadClass(className, runTransformers ? environment.getTransformers() : null);
+    }
+    
+    /**
+     * Loads class bytecode from the classpath for the purpose of reading class
+     * metadata. The delegate transformers returned by
+     * {@link MixinEnvironment#getHierarchyTransformers} are run.
+     * 
+     * @param className Name of the class to load
+     * @return Class bytecode for the specified class
+     * @throws ClassNotFoundException if the specified class could not be loaded
+     * @throws IOException if an error occurs whilst reading the specified class
+     */
+    protected static byte[] loadClassMetadata(String className) throws ClassNotFoundException, IOException {
+        return TreeInfo.loadClass(className, MixinEnvironment.getCurrentEnvironment().getHierarchyTransformers());
+    }
+
+    private static byte[] loadClass(String className, List<IClassTransformer> transformers) throws ClassNotFoundException, IOException {
         String transformedName = className.replace('/', '.');
         String name = MixinEnvironment.getCurrentEnvironment().unmap(transformedName);
         byte[] classBytes = TreeInfo.getClassBytes(name, transformedName);
 
-        if (runTransformers) {
-            classBytes = TreeInfo.applyTransformers(name, transformedName, classBytes);
+        if (transformers != null && !transformers.isEmpty()) {
+            classBytes = TreeInfo.applyTransformers(name, transformedName, classBytes, transformers);
         }
 
         if (classBytes == null) {
@@ -111,7 +130,7 @@ abstract class TreeInfo {
             return classBytes;
         }
         
-        URLClassLoader appClassLoader = (URLClassLoader)Launch.class.getClassLoader();
+        ClassLoader appClassLoader = Launch.class.getClassLoader();
         
         InputStream classStream = null;
         try {
@@ -132,25 +151,26 @@ abstract class TreeInfo {
      * @param name
      * @param transformedName
      * @param basicClass
-     * @return class bytecode after processing by all registered transformers
-     *      except the excluded transformers
+     * @param transformers Transformers to apply
+     * @return class bytecode after processing by the supplied transformers
      */
-    private static byte[] applyTransformers(String name, String transformedName, byte[] basicClass) {
+    private static byte[] applyTransformers(String name, String transformedName, byte[] basicClass, List<IClassTransformer> transformers) {
         MixinEnvironment environment = MixinEnvironment.getCurrentEnvironment();
+        ReEntranceState lock = TreeInfo.lock != null ? TreeInfo.lock.get() : null;
         
-        for (IClassTransformer transformer : environment.getTransformers()) {
-            if (TreeInfo.lock != null) {
+        for (IClassTransformer transformer : transformers) {
+            if (lock != null) {
                 // Clear the re-entrance semaphore
-                TreeInfo.lock.clear();
+                lock.clear();
             }
             
             basicClass = transformer.transform(name, transformedName, basicClass);
 
-            if (TreeInfo.lock != null && TreeInfo.lock.isSet()) {
+            if (lock != null && lock.isSet()) {
                 // Also add it to the exclusion list so we can exclude it if the environment triggers a rebuild
                 environment.addTransformerExclusion(transformer.getClass().getName());
                 
-                TreeInfo.lock.clear();
+                lock.clear();
                 TreeInfo.logger.info("A re-entrant transformer '{}' was detected and will no longer process meta class data",
                         transformer.getClass().getName());
             }
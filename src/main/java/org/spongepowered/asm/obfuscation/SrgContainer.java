@@ -24,67 +24,438 @@
  */
 package org.spongepowered.asm.obfuscation;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 import org.spongepowered.asm.mixin.throwables.MixinException;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
-import com.google.common.io.Files;
-
-import joptsimple.internal.Strings;
-
 /**
  * Ported from <strong>Srg2Source</strong> (
  * <a href=\"https://github.com/MinecraftForge/Srg2Source\">
  * github.com/MinecraftForge/Srg2Source</a>).
+ * 
+ * <p>Mappings are stored compactly: every distinct string is held once in a
+ * string table and mappings are stored as arrays of string indices with an
+ * open-addressed hash index, rather than as maps of mapping objects. The
+ * container can be written to a binary index with {@link #writeIndex} which
+ * {@link #readSrg} will load (memory-mapped) without parsing the text.</p>
  */
 public class SrgContainer {
+    
+    /**
+     * Table of distinct strings, strings are referenced by their index 
+     */
+    static final class StringTable {
+        
+        private String[] strings = new String[1024];
+        
+        private int[] hashes = new int[1024];
+        
+        private int size;
+        
+        private int[] slots = new int[2048];
+        
+        int size() {
+            return this.size;
+        }
+        
+        String get(int index) {
+            return this.strings[index];
+        }
+        
+        int hash(int index) {
+            return this.hashes[index];
+        }
+        
+        int intern(String string) {
+            return this.intern(string, 0, string.length());
+        }
+        
+        /**
+         * Get the index of the specified range of characters in the string,
+         * adding a new string to the table only if no matching string exists
+         */
+        int intern(String source, int start, int end) {
+            int length = end - start;
+            int hash = 0;
+            for (int pos = start; pos < end; pos++) {
+                hash = 31 * hash + source.charAt(pos);
+            }
+            
+            int mask = this.slots.length - 1;
+            for (int slot = SrgContainer.mix(hash) & mask; this.slots[slot] != 0; slot = (slot + 1) & mask) {
+                int index = this.slots[slot] - 1;
+                String candidate = this.strings[index];
+                if (this.hashes[index] == hash && candidate.length() == length && source.regionMatches(start, candidate, 0, length)) {
+                    return index;
+                }
+            }
+            
+            if (this.size == this.strings.length) {
+                this.strings = Arrays.copyOf(this.strings, this.size * 2);
+                this.hashes = Arrays.copyOf(this.hashes, this.size * 2);
+            }
+            int index = this.size++;
+            this.strings[index] = start == 0 && end == source.length() ? source : source.substring(start, end);
+            this.hashes[index] = hash;
+            
+            if (this.size * 2 > this.slots.length) {
+                this.slots = SrgContainer.rehash(this.hashes, this.size, this.slots.length * 2);
+            } else {
+                this.insert(index, hash);
+            }
+            return index;
+        }
+        
+        private void insert(int index, int hash) {
+            int mask = this.slots.length - 1;
+            int slot = SrgContainer.mix(hash) & mask;
+            while (this.slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.slots[slot] = index + 1;
+        }
+        
+    }
+    
+    /**
+     * Mapping table, each entry maps a key of one or two strings to a value
+     * of the same width
+     */
+    static final class MappingTable {
+        
+        private final StringTable strings;
+        
+        /**
+         * Number of strings in each key and value 
+         */
+        private final int width;
+        
+        /**
+         * String indices for each entry, key followed by value
+         */
+        private int[] entries;
+        
+        private int[] hashes = new int[256];
+        
+        private int size;
+        
+        private int[] slots = new int[512];
+        
+        MappingTable(StringTable strings, int width) {
+            this.strings = strings;
+            this.width = width;
+            this.entries = new int[256 * width * 2];
+        }
+        
+        int size() {
+            return this.size;
+        }
+        
+        int width() {
+            return this.width;
+        }
+        
+        int getEntryData(int index) {
+            return this.entries[index];
+        }
+        
+        /**
+         * Find the entry for the specified key
+         * 
+         * @param key0 First key string
+         * @param key1 Second key string, ignored for single width tables
+         * @return entry index or -1 if not found
+         */
+        int find(String key0, String key1) {
+            if (key0 == null || (this.width > 1 && key1 == null)) {
+                return -1;
+            }
+            int hash = this.width > 1 ? key0.hashCode() * 31 + key1.hashCode() : key0.hashCode();
+            return this.find(hash, key0, key1);
+        }
+        
+        private int find(int hash, String key0, String key1) {
+            int mask = this.slots.length - 1;
+            for (int slot = SrgContainer.mix(hash) & mask; this.slots[slot] != 0; slot = (slot + 1) & mask) {
+                int entry = this.slots[slot] - 1;
+                int base = entry * this.width * 2;
+                if (this.hashes[entry] == hash && this.strings.get(this.entries[base]).equals(key0)
+                        && (this.width == 1 || this.strings.get(this.entries[base + 1]).equals(key1))) {
+                    return entry;
+                }
+            }
+            return -1;
+        }
+        
+        /**
+         * Get a string from the value of the specified entry
+         */
+        String getValue(int entry, int part) {
+            return this.strings.get(this.entries[entry * this.width * 2 + this.width + part]);
+        }
+        
+        /**
+         * Add or replace a mapping, arguments are string indices and the
+         * second key and value are ignored for single width tables
+         */
+        void put(int key0, int key1, int value0, int value1) {
+            int hash = this.width > 1 ? this.strings.hash(key0) * 31 + this.strings.hash(key1) : this.strings.hash(key0);
+            int entry = this.find(hash, this.strings.get(key0), this.width > 1 ? this.strings.get(key1) : null);
+            if (entry < 0) {
+                if (this.size == this.hashes.length) {
+                    this.hashes = Arrays.copyOf(this.hashes, this.size * 2);
+                    this.entries = Arrays.copyOf(this.entries, this.entries.length * 2);
+                }
+                entry = this.size++;
+                this.hashes[entry] = hash;
+                if (this.size * 2 > this.slots.length) {
+                    this.slots = SrgContainer.rehash(this.hashes, this.size, this.slots.length * 2);
+                } else {
+                    int mask = this.slots.length - 1;
+                    int slot = SrgContainer.mix(hash) & mask;
+                    while (this.slots[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    this.slots[slot] = entry + 1;
+                }
+            }
+            
+            int base = entry * this.width * 2;
+            this.entries[base] = key0;
+            this.entries[base + this.width] = value0;
+            if (this.width > 1) {
+                this.entries[base + 1] = key1;
+                this.entries[base + this.width + 1] = value1;
+            }
+        }
+        
+    }
+    
+    private static final int INDEX_MAGIC = 0x53524758; // SRGX
+    
+    private static final int INDEX_VERSION = 1;
+    
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    private final StringTable strings = new StringTable();
+    
+    private final MappingTable packageMap = new MappingTable(this.strings, 1);
+    private final MappingTable classMap = new MappingTable(this.strings, 1);
+    private final MappingTable fieldMap = new MappingTable(this.strings, 1);
+    private final MappingTable methodMap = new MappingTable(this.strings, 2);
 
-    private final BiMap<String, String> packageMap = HashBiMap.create();
-    private final BiMap<String, String> classMap = HashBiMap.create();
-    private final BiMap<SrgField, SrgField> fieldMap = HashBiMap.create();
-    private final BiMap<SrgMethod, SrgMethod> methodMap = HashBiMap.create();
-
+    /**
+     * Read mappings from the specified file, which can either be a text SRG
+     * file or an index written by {@link #writeIndex}
+     * 
+     * @param srg File to read
+     * @throws IOException if the file cannot be read
+     */
     public void readSrg(File srg) throws IOException {
-        for (String line : Files.readLines(srg, Charset.defaultCharset())) {
-            if (Strings.isNullOrEmpty(line) || line.startsWith("#")) {
-                continue;
+        if (SrgContainer.isIndex(srg)) {
+            FileInputStream in = new FileInputStream(srg);
+            try {
+                FileChannel channel = in.getChannel();
+                this.readIndex(srg, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } finally {
+                in.close();
             }
+            return;
+        }
+        
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(srg), Charset.defaultCharset()));
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                this.readLine(srg, line);
+            }
+        } finally {
+            reader.close();
+        }
+    }
 
-            String type = line.substring(0, 2);
-            String[] args = line.substring(4).split(" ");
+    /**
+     * Check the magic at the start of the file to see whether it is an index
+     */
+    private static boolean isIndex(File srg) throws IOException {
+        if (srg.length() < 8) {
+            return false;
+        }
+        
+        byte[] magic = new byte[4];
+        DataInputStream in = new DataInputStream(new FileInputStream(srg));
+        try {
+            in.readFully(magic);
+        } finally {
+            in.close();
+        }
+        return ByteBuffer.wrap(magic).getInt() == SrgContainer.INDEX_MAGIC;
+    }
 
-            if (type.equals("PK")) {
-                this.packageMap.forcePut(args[0], args[1]);
-            } else if (type.equals("CL")) {
-                this.classMap.forcePut(args[0], args[1]);
-            } else if (type.equals("FD")) {
-                this.fieldMap.forcePut(new SrgField(args[0]), new SrgField(args[1]));
-            } else if (type.equals("MD")) {
-                this.methodMap.forcePut(new SrgMethod(args[0], args[1]), new SrgMethod(args[2], args[3]));
-            } else {
+    private void readLine(File srg, String line) {
+        if (line.length() == 0 || line.charAt(0) == '#') {
+            return;
+        }
+        
+        if (line.length() < 4) {
+            throw new MixinException("Invalid SRG file: " + srg);
+        }
+        
+        char type0 = line.charAt(0), type1 = line.charAt(1);
+        if (type0 == 'P' && type1 == 'K') {
+            this.readMapping(srg, line, this.packageMap, 2);
+        } else if (type0 == 'C' && type1 == 'L') {
+            this.readMapping(srg, line, this.classMap, 2);
+        } else if (type0 == 'F' && type1 == 'D') {
+            this.readMapping(srg, line, this.fieldMap, 2);
+        } else if (type0 == 'M' && type1 == 'D') {
+            this.readMapping(srg, line, this.methodMap, 4);
+        } else {
+            throw new MixinException("Invalid SRG file: " + srg);
+        }
+    }
+    
+    /**
+     * Read space-separated arguments from the line (after the 4 character
+     * prefix) directly into the string table, and store the mapping
+     */
+    private void readMapping(File srg, String line, MappingTable table, int count) {
+        int[] args = new int[4];
+        int pos = 4, length = line.length();
+        for (int arg = 0; arg < count; arg++) {
+            int end = line.indexOf(' ', pos);
+            if (end < 0) {
+                end = length;
+            }
+            if (pos >= length) {
                 throw new MixinException("Invalid SRG file: " + srg);
             }
+            args[arg] = this.strings.intern(line, pos, end);
+            pos = end + 1;
+        }
+        
+        if (count == 2) {
+            table.put(args[0], -1, args[1], -1);
+        } else {
+            table.put(args[0], args[1], args[2], args[3]);
+        }
+    }
+    
+    private void readIndex(File srg, ByteBuffer buffer) {
+        buffer.position(4);
+        if (buffer.getInt() != SrgContainer.INDEX_VERSION) {
+            throw new MixinException("Unsupported SRG index version in " + srg);
+        }
+        
+        int stringCount = buffer.getInt();
+        int[] indices = new int[stringCount];
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < stringCount; i++) {
+            int length = buffer.getInt();
+            if (length > bytes.length) {
+                bytes = new byte[length * 2];
+            }
+            buffer.get(bytes, 0, length);
+            indices[i] = this.strings.intern(new String(bytes, 0, length, SrgContainer.UTF8));
+        }
+        
+        for (MappingTable table : this.getTables()) {
+            int size = buffer.getInt();
+            for (int i = 0; i < size; i++) {
+                if (table.width() > 1) {
+                    int key0 = indices[buffer.getInt()], key1 = indices[buffer.getInt()];
+                    int value0 = indices[buffer.getInt()], value1 = indices[buffer.getInt()];
+                    table.put(key0, key1, value0, value1);
+                } else {
+                    int key = indices[buffer.getInt()];
+                    table.put(key, -1, indices[buffer.getInt()], -1);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Write the mappings in this container to a binary index which can be
+     * loaded quickly by {@link #readSrg}
+     * 
+     * @param index File to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeIndex(File index) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(index)));
+        try {
+            out.writeInt(SrgContainer.INDEX_MAGIC);
+            out.writeInt(SrgContainer.INDEX_VERSION);
+            out.writeInt(this.strings.size());
+            for (int i = 0; i < this.strings.size(); i++) {
+                byte[] bytes = this.strings.get(i).getBytes(SrgContainer.UTF8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            
+            for (MappingTable table : this.getTables()) {
+                out.writeInt(table.size());
+                int data = table.size() * table.width() * 2;
+                for (int i = 0; i < data; i++) {
+                    out.writeInt(table.getEntryData(i));
+                }
+            }
+        } finally {
+            out.close();
         }
     }
 
+    private MappingTable[] getTables() {
+        return new MappingTable[] { this.packageMap, this.classMap, this.fieldMap, this.methodMap };
+    }
+
     public SrgMethod getMethodMapping(SrgMethod methodName) {
-        return this.methodMap.get(methodName);
+        int entry = this.methodMap.find(methodName.getName(), methodName.getDesc());
+        return entry < 0 ? null : new SrgMethod(this.methodMap.getValue(entry, 0), this.methodMap.getValue(entry, 1));
     }
 
     public SrgField getFieldMapping(SrgField fieldName) {
-        return this.fieldMap.get(fieldName);
+        int entry = this.fieldMap.find(fieldName.getMapping(), null);
+        return entry < 0 ? null : new SrgField(this.fieldMap.getValue(entry, 0));
     }
 
     public String getClassMapping(String className) {
-        return this.classMap.get(className);
+        int entry = this.classMap.find(className, null);
+        return entry < 0 ? null : this.classMap.getValue(entry, 0);
     }
     
     public String getPackageMapping(String packageName) {
-        return this.packageMap.get(packageName);
+        int entry = this.packageMap.find(packageName, null);
+        return entry < 0 ? null : this.packageMap.getValue(entry, 0);
+    }
+    
+    static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    static int[] rehash(int[] hashes, int size, int capacity) {
+        int[] slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = SrgContainer.mix(hashes[index]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = index + 1;
+        }
+        return slots;
     }
     
 }
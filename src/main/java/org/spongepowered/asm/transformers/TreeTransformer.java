@@ -24,9 +24,21 @@
  */
 package org.spongepowered.asm.transformers;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.spongepowered.asm.lib.ClassReader;
+import org.spongepowered.asm.lib.ClassVisitor;
 import org.spongepowered.asm.lib.ClassWriter;
+import org.spongepowered.asm.lib.MethodVisitor;
+import org.spongepowered.asm.lib.Opcodes;
 import org.spongepowered.asm.lib.tree.ClassNode;
+import org.spongepowered.asm.lib.tree.MethodNode;
 import org.spongepowered.asm.mixin.transformer.MixinClassWriter;
 
 import net.minecraft.launchwrapper.IClassTransformer;
@@ -59,6 +71,15 @@ public abstract class TreeTransformer implements IClassTransformer {
             this.classReader = classReader;
         }
 
+        return this.readClass(classReader);
+    }
+    
+    /**
+     * @param classReader Reader for the original bytecode, the caller is
+     *      responsible for retaining the reader if it is needed later
+     * @return tree
+     */
+    protected final ClassNode readClass(ClassReader classReader) {
         ClassNode classNode = new ClassNode();
         classReader.accept(classNode, ClassReader.EXPAND_FRAMES);
         return classNode;
@@ -84,4 +105,97 @@ public abstract class TreeTransformer implements IClassTransformer {
         classNode.accept(writer);
         return writer.toByteArray();
     }
+
+    /**
+     * Write out a class which was read from the supplied reader, only
+     * computing frames for the specified methods. Other methods are copied
+     * verbatim from the original class where their signature is unchanged,
+     * and otherwise written using the frames which were read with them. The
+     * class version must not have changed since the class was read.
+     * 
+     * @param classReader Reader which produced the tree
+     * @param classNode ClassNode to write out
+     * @param modifiedMethods Methods which were added or changed since the
+     *      class was read
+     * @return generated bytecode
+     */
+    protected final byte[] writeClass(final ClassReader classReader, final ClassNode classNode, final Set<MethodNode> modifiedMethods) {
+        final Map<String, MethodNode> framedMethods = TreeTransformer.computeFrames(classNode, modifiedMethods);
+        final Map<String, MethodNode> unmodifiedMethods = new HashMap<String, MethodNode>();
+        for (MethodNode method : classNode.methods) {
+            if (!modifiedMethods.contains(method)) {
+                unmodifiedMethods.put(method.name + method.desc, method);
+            }
+        }
+        
+        final ClassWriter writer = new MixinClassWriter(classReader, 0);
+        final Set<String> copiedMethods = new HashSet<String>();
+        
+        // Copy unmodified methods from the original class, returning the
+        // writer's own MethodWriter lets ClassReader copy the method as-is
+        classReader.accept(new ClassVisitor(Opcodes.ASM5) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                MethodNode method = unmodifiedMethods.get(name + desc);
+                if (method == null || !TreeTransformer.hasSignature(method, access, signature, exceptions)) {
+                    return null;
+                }
+                copiedMethods.add(name + desc);
+                return writer.visitMethod(access, name, desc, signature, exceptions);
+            }
+        }, 0);
+        
+        classNode.accept(new ClassVisitor(Opcodes.ASM5, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                String key = name + desc;
+                if (copiedMethods.contains(key)) {
+                    return null;
+                }
+                MethodNode framedMethod = framedMethods.get(key);
+                if (framedMethod != null) {
+                    framedMethod.accept(writer);
+                    return null;
+                }
+                return super.visitMethod(access, name, desc, signature, exceptions);
+            }
+        });
+        
+        return writer.toByteArray();
+    }
+    
+    /**
+     * Compute frames and maxs for the specified methods by writing them into
+     * a class on their own and reading them back
+     */
+    private static Map<String, MethodNode> computeFrames(ClassNode classNode, Set<MethodNode> methods) {
+        Map<String, MethodNode> framedMethods = new HashMap<String, MethodNode>();
+        if (methods.isEmpty()) {
+            return framedMethods;
+        }
+        
+        ClassWriter writer = new MixinClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        writer.visit(classNode.version, classNode.access, classNode.name, classNode.signature, classNode.superName,
+                classNode.interfaces.toArray(new String[classNode.interfaces.size()]));
+        for (MethodNode method : classNode.methods) {
+            if (methods.contains(method)) {
+                method.accept(writer);
+            }
+        }
+        writer.visitEnd();
+        
+        ClassNode framedClass = new ClassNode();
+        new ClassReader(writer.toByteArray()).accept(framedClass, ClassReader.EXPAND_FRAMES);
+        for (MethodNode method : framedClass.methods) {
+            framedMethods.put(method.name + method.desc, method);
+        }
+        return framedMethods;
+    }
+    
+    private static boolean hasSignature(MethodNode method, int access, String signature, String[] exceptions) {
+        List<String> exceptionList = exceptions != null ? Arrays.asList(exceptions) : Collections.<String>emptyList();
+        return method.access == access
+                && (method.signature == null ? signature == null : method.signature.equals(signature))
+                && method.exceptions.equals(exceptionList);
+    }
 }
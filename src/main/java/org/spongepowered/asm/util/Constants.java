@@ -35,6 +35,10 @@ public abstract class Constants {
     public static final String CLINIT = "<clinit>";
     public static final String IMAGINARY_SUPER = "super$";
     public static final String DEBUG_OUTPUT_PATH = ".mixin.out";
+    public static final String CACHE_PATH = ".mixin.cache";
+    public static final String PREMIXED_ATTRIBUTE = "MixinPremixed";
+    public static final String PREMIXED_MIXINS_ATTRIBUTE = "MixinPremixed-Mixins";
+    public static final String PREMIXED_ORIGINALS_PATH = "META-INF/premixed/";
     public static final String MIXIN_PACKAGE = Mixin.class.getPackage().getName();
     public static final String MIXIN_PACKAGE_REF = Constants.MIXIN_PACKAGE.replace('.', '/');
 
@@ -0,0 +1,603 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.spongepowered.asm.lib.Handle;
+import org.spongepowered.asm.lib.Opcodes;
+import org.spongepowered.asm.lib.Type;
+import org.spongepowered.asm.lib.tree.AbstractInsnNode;
+import org.spongepowered.asm.lib.tree.ClassNode;
+import org.spongepowered.asm.lib.tree.FieldInsnNode;
+import org.spongepowered.asm.lib.tree.IincInsnNode;
+import org.spongepowered.asm.lib.tree.IntInsnNode;
+import org.spongepowered.asm.lib.tree.InvokeDynamicInsnNode;
+import org.spongepowered.asm.lib.tree.JumpInsnNode;
+import org.spongepowered.asm.lib.tree.LabelNode;
+import org.spongepowered.asm.lib.tree.LdcInsnNode;
+import org.spongepowered.asm.lib.tree.LocalVariableNode;
+import org.spongepowered.asm.lib.tree.LookupSwitchInsnNode;
+import org.spongepowered.asm.lib.tree.MethodInsnNode;
+import org.spongepowered.asm.lib.tree.MethodNode;
+import org.spongepowered.asm.lib.tree.MultiANewArrayInsnNode;
+import org.spongepowered.asm.lib.tree.TableSwitchInsnNode;
+import org.spongepowered.asm.lib.tree.TryCatchBlockNode;
+import org.spongepowered.asm.lib.tree.TypeInsnNode;
+import org.spongepowered.asm.lib.tree.VarInsnNode;
+import org.spongepowered.asm.mixin.transformer.ClassInfo;
+
+/**
+ * Infers the types of local variables in a method without debug information.
+ * Unlike the ASM {@link org.spongepowered.asm.lib.tree.analysis.Analyzer}
+ * this only simulates the locals array: the type stored by an ASTORE is taken
+ * from the instruction which produced the value, and reference types are only
+ * merged (which may require class metadata) when two different types meet at
+ * a branch target. Methods using constructs which cannot be resolved this way
+ * (subroutines, values produced by stack manipulation, or objects constructed
+ * without the usual NEW and DUP) are rejected so that the caller can fall back
+ * to the Analyzer.
+ */
+final class LocalTypeInference {
+    
+    /**
+     * Thrown internally when the method cannot be analysed
+     */
+    static final class UnsupportedInsnException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+        
+    }
+    
+    /**
+     * Type of the null reference, matches the type used by the verifier 
+     */
+    private static final Type NULL_TYPE = Type.getObjectType("null");
+    
+    private static final Type OBJECT_TYPE = Type.getType(Constants.OBJECT);
+    
+    private static final Type THROWABLE_TYPE = Type.getObjectType("java/lang/Throwable");
+    
+    private final ClassNode classNode;
+    
+    private final MethodNode method;
+    
+    private final AbstractInsnNode[] insns;
+    
+    /**
+     * Locals on entry to each insn, null for unreachable insns
+     */
+    private final Type[][] frames;
+    
+    /**
+     * Exception handlers covering each insn
+     */
+    private final List<List<TryCatchBlockNode>> handlers = new ArrayList<List<TryCatchBlockNode>>();
+    
+    /**
+     * Labels which are branched to, values on the stack at these labels may
+     * have been produced by more than one insn
+     */
+    private final Set<LabelNode> branchTargets = new HashSet<LabelNode>();
+    
+    private final boolean[] queued;
+    
+    private final int[] queue;
+    
+    private int queueSize;
+
+    private LocalTypeInference(ClassNode classNode, MethodNode method) {
+        this.classNode = classNode;
+        this.method = method;
+        this.insns = method.instructions.toArray();
+        this.frames = new Type[this.insns.length][];
+        this.queued = new boolean[this.insns.length];
+        this.queue = new int[this.insns.length];
+    }
+    
+    /**
+     * Generate the local variable table for the specified method
+     * 
+     * @param classNode Containing class
+     * @param method Method
+     * @return generated local variable table, or null if the method could not
+     *      be analysed and the Analyzer should be used instead
+     */
+    static List<LocalVariableNode> generateLocalVariableTable(ClassNode classNode, MethodNode method) {
+        LocalTypeInference inference = new LocalTypeInference(classNode, method);
+        try {
+            inference.analyse();
+        } catch (UnsupportedInsnException ex) {
+            return null;
+        }
+        return inference.createLocalVariableTable();
+    }
+    
+    private void analyse() throws UnsupportedInsnException {
+        if (this.insns.length == 0) {
+            return;
+        }
+        
+        for (int i = 0; i < this.insns.length; i++) {
+            this.handlers.add(null);
+        }
+        for (TryCatchBlockNode tryCatch : this.method.tryCatchBlocks) {
+            this.branchTargets.add(tryCatch.handler);
+            int end = this.indexOf(tryCatch.end);
+            for (int i = this.indexOf(tryCatch.start); i < end; i++) {
+                List<TryCatchBlockNode> insnHandlers = this.handlers.get(i);
+                if (insnHandlers == null) {
+                    insnHandlers = new ArrayList<TryCatchBlockNode>();
+                    this.handlers.set(i, insnHandlers);
+                }
+                insnHandlers.add(tryCatch);
+            }
+        }
+        for (AbstractInsnNode insn : this.insns) {
+            if (insn instanceof JumpInsnNode) {
+                this.branchTargets.add(((JumpInsnNode)insn).label);
+            } else if (insn instanceof TableSwitchInsnNode) {
+                this.branchTargets.add(((TableSwitchInsnNode)insn).dflt);
+                this.branchTargets.addAll(((TableSwitchInsnNode)insn).labels);
+            } else if (insn instanceof LookupSwitchInsnNode) {
+                this.branchTargets.add(((LookupSwitchInsnNode)insn).dflt);
+                this.branchTargets.addAll(((LookupSwitchInsnNode)insn).labels);
+            }
+        }
+        
+        this.merge(0, this.getInitialLocals());
+        
+        while (this.queueSize > 0) {
+            int index = this.queue[--this.queueSize];
+            this.queued[index] = false;
+            
+            AbstractInsnNode insn = this.insns[index];
+            Type[] locals = this.frames[index];
+            
+            List<TryCatchBlockNode> insnHandlers = this.handlers.get(index);
+            if (insnHandlers != null) {
+                for (TryCatchBlockNode tryCatch : insnHandlers) {
+                    this.merge(this.indexOf(tryCatch.handler), locals);
+                }
+            }
+            
+            locals = this.execute(index, insn, locals);
+            
+            int opcode = insn.getOpcode();
+            if (insn instanceof JumpInsnNode) {
+                if (opcode == Opcodes.JSR) {
+                    throw new UnsupportedInsnException();
+                }
+                this.merge(this.indexOf(((JumpInsnNode)insn).label), locals);
+                if (opcode != Opcodes.GOTO) {
+                    this.merge(index + 1, locals);
+                }
+            } else if (insn instanceof TableSwitchInsnNode) {
+                TableSwitchInsnNode switchNode = (TableSwitchInsnNode)insn;
+                this.merge(this.indexOf(switchNode.dflt), locals);
+                for (LabelNode label : switchNode.labels) {
+                    this.merge(this.indexOf(label), locals);
+                }
+            } else if (insn instanceof LookupSwitchInsnNode) {
+                LookupSwitchInsnNode switchNode = (LookupSwitchInsnNode)insn;
+                this.merge(this.indexOf(switchNode.dflt), locals);
+                for (LabelNode label : switchNode.labels) {
+                    this.merge(this.indexOf(label), locals);
+                }
+            } else if (opcode == Opcodes.RET) {
+                throw new UnsupportedInsnException();
+            } else if ((opcode < Opcodes.IRETURN || opcode > Opcodes.RETURN) && opcode != Opcodes.ATHROW) {
+                this.merge(index + 1, locals);
+            }
+        }
+    }
+
+    private Type[] getInitialLocals() {
+        Type[] locals = new Type[this.method.maxLocals];
+        int local = 0;
+        if ((this.method.access & Opcodes.ACC_STATIC) == 0) {
+            locals[local++] = Type.getObjectType(this.classNode.name);
+        }
+        for (Type argType : Type.getArgumentTypes(this.method.desc)) {
+            locals[local] = LocalTypeInference.getLocalType(argType);
+            local += argType.getSize();
+        }
+        return locals;
+    }
+
+    /**
+     * Sub-int arguments are held in int locals, as they are by the verifier,
+     * so that they merge with the INT stored by ISTORE and IINC
+     */
+    private static Type getLocalType(Type argType) {
+        switch (argType.getSort()) {
+            case Type.BOOLEAN:
+            case Type.BYTE:
+            case Type.CHAR:
+            case Type.SHORT:
+                return Type.INT_TYPE;
+            default:
+                return argType;
+        }
+    }
+
+    private Type[] execute(int index, AbstractInsnNode insn, Type[] locals) throws UnsupportedInsnException {
+        int opcode = insn.getOpcode();
+        if (insn instanceof VarInsnNode && opcode >= Opcodes.ISTORE && opcode <= Opcodes.ASTORE) {
+            Type type = opcode == Opcodes.ASTORE ? this.getStoredReference(insn, locals) : LocalTypeInference.getStoredPrimitive(opcode);
+            return LocalTypeInference.setLocal(locals, ((VarInsnNode)insn).var, type);
+        } else if (insn instanceof IincInsnNode) {
+            return LocalTypeInference.setLocal(locals, ((IincInsnNode)insn).var, Type.INT_TYPE);
+        }
+        return locals;
+    }
+    
+    private static Type getStoredPrimitive(int opcode) {
+        switch (opcode) {
+            case Opcodes.ISTORE:
+                return Type.INT_TYPE;
+            case Opcodes.LSTORE:
+                return Type.LONG_TYPE;
+            case Opcodes.FSTORE:
+                return Type.FLOAT_TYPE;
+            default:
+                return Type.DOUBLE_TYPE;
+        }
+    }
+
+    private static Type[] setLocal(Type[] locals, int var, Type type) {
+        Type[] newLocals = locals.clone();
+        newLocals[var] = type;
+        if (type.getSize() == 2) {
+            newLocals[var + 1] = null;
+        }
+        if (var > 0 && newLocals[var - 1] != null && newLocals[var - 1].getSize() == 2) {
+            newLocals[var - 1] = null;
+        }
+        return newLocals;
+    }
+    
+    /**
+     * Determine the type of the reference being stored by an ASTORE from the
+     * insn which pushed it
+     */
+    private Type getStoredReference(AbstractInsnNode store, Type[] locals) throws UnsupportedInsnException {
+        Type caught = this.getCaughtException(store);
+        if (caught != null) {
+            return caught;
+        }
+        
+        AbstractInsnNode insn = this.getProducer(store);
+        switch (insn.getOpcode()) {
+            case Opcodes.ACONST_NULL:
+                return LocalTypeInference.NULL_TYPE;
+            case Opcodes.ALOAD:
+                return LocalTypeInference.checkReference(locals[((VarInsnNode)insn).var]);
+            case Opcodes.INVOKEVIRTUAL:
+            case Opcodes.INVOKESTATIC:
+            case Opcodes.INVOKEINTERFACE:
+                return LocalTypeInference.checkReference(Type.getReturnType(((MethodInsnNode)insn).desc));
+            case Opcodes.INVOKESPECIAL:
+                MethodInsnNode methodNode = (MethodInsnNode)insn;
+                if (Constants.CTOR.equals(methodNode.name)) {
+                    return this.getConstructedType(methodNode);
+                }
+                return LocalTypeInference.checkReference(Type.getReturnType(methodNode.desc));
+            case Opcodes.INVOKEDYNAMIC:
+                return LocalTypeInference.checkReference(Type.getReturnType(((InvokeDynamicInsnNode)insn).desc));
+            case Opcodes.GETFIELD:
+            case Opcodes.GETSTATIC:
+                return LocalTypeInference.checkReference(Type.getType(((FieldInsnNode)insn).desc));
+            case Opcodes.NEW:
+            case Opcodes.CHECKCAST:
+                return Type.getObjectType(((TypeInsnNode)insn).desc);
+            case Opcodes.ANEWARRAY:
+                return Type.getType("[" + Type.getObjectType(((TypeInsnNode)insn).desc).getDescriptor());
+            case Opcodes.NEWARRAY:
+                return LocalTypeInference.getPrimitiveArrayType(((IntInsnNode)insn).operand);
+            case Opcodes.MULTIANEWARRAY:
+                return Type.getType(((MultiANewArrayInsnNode)insn).desc);
+            case Opcodes.LDC:
+                return LocalTypeInference.getConstantType(((LdcInsnNode)insn).cst);
+            case Opcodes.AALOAD:
+                return this.getArrayElementType(insn, locals);
+            default:
+                throw new UnsupportedInsnException();
+        }
+    }
+
+    /**
+     * Get the type of the reference left on the stack by a constructor call.
+     * The NEW which created the receiver is found by matching nested NEW and
+     * constructor calls, and the reference left behind is only the new object
+     * if the NEW was immediately duplicated, which is how javac creates
+     * objects. Other sequences, such as a NEW without a DUP or a super() call,
+     * are left to the Analyzer.
+     */
+    private Type getConstructedType(MethodInsnNode ctor) throws UnsupportedInsnException {
+        int depth = 0;
+        for (AbstractInsnNode insn = ctor.getPrevious(); insn != null; insn = insn.getPrevious()) {
+            int opcode = insn.getOpcode();
+            if (opcode == Opcodes.INVOKESPECIAL && Constants.CTOR.equals(((MethodInsnNode)insn).name)) {
+                depth++;
+            } else if (opcode == Opcodes.NEW && depth-- == 0) {
+                String type = ((TypeInsnNode)insn).desc;
+                AbstractInsnNode next = insn.getNext();
+                while (next != null && next.getOpcode() < 0) {
+                    next = next.getNext();
+                }
+                if (!type.equals(ctor.owner) || next == null || next.getOpcode() != Opcodes.DUP) {
+                    break;
+                }
+                return Type.getObjectType(type);
+            }
+        }
+        throw new UnsupportedInsnException();
+    }
+
+    /**
+     * If the insn is the first insn in an exception handler, get the type of
+     * the exception being caught
+     */
+    private Type getCaughtException(AbstractInsnNode store) {
+        Type caught = null;
+        for (AbstractInsnNode insn = store.getPrevious(); insn != null && insn.getOpcode() < 0; insn = insn.getPrevious()) {
+            for (TryCatchBlockNode tryCatch : this.method.tryCatchBlocks) {
+                if (tryCatch.handler == insn) {
+                    Type type = tryCatch.type != null ? Type.getObjectType(tryCatch.type) : LocalTypeInference.THROWABLE_TYPE;
+                    caught = caught != null ? this.mergeReferences(caught, type) : type;
+                }
+            }
+        }
+        return caught;
+    }
+
+    /**
+     * Get the real insn preceding the specified insn, provided that no branch
+     * lands between them
+     */
+    private AbstractInsnNode getProducer(AbstractInsnNode insn) throws UnsupportedInsnException {
+        for (AbstractInsnNode node = insn.getPrevious(); node != null; node = node.getPrevious()) {
+            if (node.getOpcode() >= 0) {
+                return node;
+            }
+            if (this.branchTargets.contains(node)) {
+                break;
+            }
+        }
+        throw new UnsupportedInsnException();
+    }
+
+    /**
+     * Resolve the type loaded by <tt>aload array; iload index; aaload</tt>
+     */
+    private Type getArrayElementType(AbstractInsnNode aaload, Type[] locals) throws UnsupportedInsnException {
+        AbstractInsnNode index = this.getProducer(aaload);
+        int indexOpcode = index.getOpcode();
+        boolean isIntPush = indexOpcode == Opcodes.ILOAD || indexOpcode == Opcodes.BIPUSH || indexOpcode == Opcodes.SIPUSH
+                || (indexOpcode >= Opcodes.ICONST_M1 && indexOpcode <= Opcodes.ICONST_5);
+        if (!isIntPush) {
+            throw new UnsupportedInsnException();
+        }
+        AbstractInsnNode array = this.getProducer(index);
+        if (array.getOpcode() != Opcodes.ALOAD) {
+            throw new UnsupportedInsnException();
+        }
+        Type arrayType = locals[((VarInsnNode)array).var];
+        if (arrayType == null || arrayType.getSort() != Type.ARRAY) {
+            throw new UnsupportedInsnException();
+        }
+        return LocalTypeInference.checkReference(Type.getType(arrayType.getDescriptor().substring(1)));
+    }
+
+    private static Type checkReference(Type type) throws UnsupportedInsnException {
+        if (type == null || (type.getSort() != Type.OBJECT && type.getSort() != Type.ARRAY)) {
+            throw new UnsupportedInsnException();
+        }
+        return type;
+    }
+
+    private static Type getConstantType(Object cst) throws UnsupportedInsnException {
+        if (cst instanceof String) {
+            return Type.getType(Constants.STRING);
+        } else if (cst instanceof Type) {
+            return ((Type)cst).getSort() == Type.METHOD ? Type.getObjectType("java/lang/invoke/MethodType") : Type.getType(Constants.CLASS);
+        } else if (cst instanceof Handle) {
+            return Type.getObjectType("java/lang/invoke/MethodHandle");
+        }
+        throw new UnsupportedInsnException();
+    }
+
+    private static Type getPrimitiveArrayType(int operand) throws UnsupportedInsnException {
+        switch (operand) {
+            case Opcodes.T_BOOLEAN:
+                return Type.getType("[Z");
+            case Opcodes.T_CHAR:
+                return Type.getType("[C");
+            case Opcodes.T_BYTE:
+                return Type.getType("[B");
+            case Opcodes.T_SHORT:
+                return Type.getType("[S");
+            case Opcodes.T_INT:
+                return Type.getType("[I");
+            case Opcodes.T_FLOAT:
+                return Type.getType("[F");
+            case Opcodes.T_DOUBLE:
+                return Type.getType("[D");
+            case Opcodes.T_LONG:
+                return Type.getType("[J");
+            default:
+                throw new UnsupportedInsnException();
+        }
+    }
+
+    /**
+     * Merge the supplied locals into the frame at the specified index, and
+     * queue the insn for analysis if the frame changed
+     */
+    private void merge(int index, Type[] locals) {
+        if (index >= this.insns.length) {
+            return;
+        }
+        
+        Type[] frame = this.frames[index];
+        boolean changed = false;
+        if (frame == null) {
+            this.frames[index] = locals;
+            changed = true;
+        } else {
+            Type[] merged = null;
+            for (int var = 0; var < frame.length; var++) {
+                Type type = this.mergeTypes(frame[var], locals[var]);
+                if (type == null ? frame[var] != null : !type.equals(frame[var])) {
+                    if (merged == null) {
+                        merged = frame.clone();
+                    }
+                    merged[var] = type;
+                }
+            }
+            if (merged != null) {
+                this.frames[index] = merged;
+                changed = true;
+            }
+        }
+        
+        if (changed && !this.queued[index]) {
+            this.queued[index] = true;
+            this.queue[this.queueSize++] = index;
+        }
+    }
+
+    private Type mergeTypes(Type current, Type incoming) {
+        if (current == null || current.equals(incoming)) {
+            return current;
+        }
+        if (incoming == null) {
+            return null;
+        }
+        boolean isReference = current.getSort() == Type.OBJECT || current.getSort() == Type.ARRAY;
+        boolean isIncomingReference = incoming.getSort() == Type.OBJECT || incoming.getSort() == Type.ARRAY;
+        if (!isReference || !isIncomingReference) {
+            return null;
+        }
+        return this.mergeReferences(current, incoming);
+    }
+
+    private Type mergeReferences(Type type1, Type type2) {
+        if (type1.equals(type2) || type2.equals(LocalTypeInference.NULL_TYPE)) {
+            return type1;
+        }
+        if (type1.equals(LocalTypeInference.NULL_TYPE)) {
+            return type2;
+        }
+        if (type1.getSort() != Type.OBJECT || type2.getSort() != Type.OBJECT) {
+            return LocalTypeInference.OBJECT_TYPE;
+        }
+        String name1 = type1.getInternalName(), name2 = type2.getInternalName();
+        if (ClassInfo.forName(name1) == null || ClassInfo.forName(name2) == null) {
+            return LocalTypeInference.OBJECT_TYPE;
+        }
+        return Type.getObjectType(ClassInfo.getCommonSuperClass(name1, name2));
+    }
+
+    private int indexOf(AbstractInsnNode insn) {
+        return this.method.instructions.indexOf(insn);
+    }
+
+    /**
+     * Convert the inferred frames to a local variable table, adding labels to
+     * the method to mark the ranges
+     */
+    private List<LocalVariableNode> createLocalVariableTable() {
+        int methodSize = this.insns.length;
+        int maxLocals = this.method.maxLocals;
+        
+        List<LocalVariableNode> localVariables = new ArrayList<LocalVariableNode>();
+        LocalVariableNode[] localNodes = new LocalVariableNode[maxLocals];
+        Type[] locals = new Type[maxLocals];
+        LabelNode[] labels = new LabelNode[methodSize];
+        
+        for (int i = 0; i < methodSize; i++) {
+            Type[] frame = this.frames[i];
+            if (frame == null) {
+                continue;
+            }
+            LabelNode label = null;
+            
+            for (int j = 0; j < maxLocals; j++) {
+                Type local = frame[j];
+                if (local == null ? locals[j] == null : local.equals(locals[j])) {
+                    continue;
+                }
+                
+                if (label == null) {
+                    if (this.insns[i] instanceof LabelNode) {
+                        label = (LabelNode)this.insns[i];
+                    } else {
+                        labels[i] = label = new LabelNode();
+                    }
+                }
+                
+                if (locals[j] != null) {
+                    localNodes[j].end = label;
+                    localVariables.add(localNodes[j]);
+                    localNodes[j] = null;
+                }
+                if (local != null) {
+                    localNodes[j] = new LocalVariableNode("var" + j, local.getDescriptor(), null, label, null, j);
+                }
+                
+                locals[j] = local;
+            }
+        }
+        
+        // Reached the end of the method so flush all current locals and mark the end
+        LabelNode label = null;
+        for (int k = 0; k < localNodes.length; k++) {
+            if (localNodes[k] != null) {
+                if (label == null) {
+                    label = new LabelNode();
+                    this.method.instructions.add(label);
+                }
+                
+                localNodes[k].end = label;
+                localVariables.add(localNodes[k]);
+            }
+        }
+        
+        // Insert generated labels into the method body
+        for (int n = methodSize - 1; n >= 0; n--) {
+            if (labels[n] != null) {
+                this.method.instructions.insert(this.insns[n], labels[n]);
+            }
+        }
+        
+        return localVariables;
+    }
+
+}
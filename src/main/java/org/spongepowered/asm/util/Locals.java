@@ -25,19 +25,16 @@
 package org.spongepowered.asm.util;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.spongepowered.asm.lib.Opcodes;
 import org.spongepowered.asm.lib.Type;
 import org.spongepowered.asm.lib.tree.AbstractInsnNode;
 import org.spongepowered.asm.lib.tree.ClassNode;
-import org.spongepowered.asm.lib.tree.FrameNode;
 import org.spongepowered.asm.lib.tree.InsnList;
 import org.spongepowered.asm.lib.tree.LabelNode;
-import org.spongepowered.asm.lib.tree.LineNumberNode;
 import org.spongepowered.asm.lib.tree.LocalVariableNode;
 import org.spongepowered.asm.lib.tree.MethodNode;
 import org.spongepowered.asm.lib.tree.VarInsnNode;
@@ -45,22 +42,36 @@ import org.spongepowered.asm.lib.tree.analysis.Analyzer;
 import org.spongepowered.asm.lib.tree.analysis.AnalyzerException;
 import org.spongepowered.asm.lib.tree.analysis.BasicValue;
 import org.spongepowered.asm.lib.tree.analysis.Frame;
-import org.spongepowered.asm.mixin.transformer.ClassInfo;
-import org.spongepowered.asm.mixin.transformer.ClassInfo.FrameData;
-import org.spongepowered.asm.mixin.transformer.ClassInfo.Method;
 import org.spongepowered.asm.mixin.transformer.verify.MixinVerifier;
 import org.spongepowered.asm.util.throwables.LVTGeneratorException;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 /**
  * Utility methods for working with local variables using ASM
  */
 public class Locals {
 
+    /**
+     * Maximum number of generated local variable tables to retain
+     */
+    private static final int MAX_CACHED_TABLES = 512;
+
     /**
      * Cached local variable lists, to avoid having to recalculate them
-     * (expensive) if multiple injectors are working with the same method
+     * (expensive) if multiple injectors are working with the same method.
+     * Tables are keyed by method node identity and weakly held, so they are
+     * discarded along with the class node once the target class has been
+     * transformed.
      */
-    private static final Map<String, List<LocalVariableNode>> calculatedLocalVariables = new HashMap<String, List<LocalVariableNode>>();
+    private static final Cache<MethodNode, List<LocalVariableNode>> calculatedLocalVariables = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(Locals.MAX_CACHED_TABLES)
+            .recordStats()
+            .build();
 
     /**
      * Injects appropriate LOAD opcodes into the supplied InsnList for each
@@ -123,97 +134,7 @@ public class Locals {
      *      specified location
      */
     public static LocalVariableNode[] getLocalsAt(ClassNode classNode, MethodNode method, AbstractInsnNode node) {
-        for (int i = 0; i < 3 && (node instanceof LabelNode || node instanceof LineNumberNode); i++) {
-            node = Locals.nextNode(method.instructions, node);
-        }
-            
-        ClassInfo classInfo = ClassInfo.forName(classNode.name);
-        if (classInfo == null) {
-            throw new LVTGeneratorException("Could not load class metadata for " + classNode.name + " generating LVT for " + method.name);
-        }
-        Method methodInfo = classInfo.findMethod(method);
-        if (methodInfo == null) {
-            throw new LVTGeneratorException("Could not locate method metadata for " + method.name + " generating LVT in " + classNode.name);
-        }
-        List<FrameData> frames = methodInfo.getFrames();
-
-        LocalVariableNode[] frame = new LocalVariableNode[method.maxLocals];
-        int local = 0, index = 0;
-
-        // Initialise implicit "this" reference in non-static methods
-        if ((method.access & Opcodes.ACC_STATIC) == 0) {
-            frame[local++] = new LocalVariableNode("this", classNode.name, null, null, null, 0);
-        }
-        
-        // Initialise method arguments
-        for (Type argType : Type.getArgumentTypes(method.desc)) {
-            frame[local] = new LocalVariableNode("arg" + index++, argType.toString(), null, null, null, local);
-            local += argType.getSize();
-        }
-        
-        int initialFrameSize = local;
-        int frameIndex = -1, locals = 0;
-
-        for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
-            AbstractInsnNode insn = iter.next();
-            if (insn instanceof FrameNode) {
-                frameIndex++;
-                FrameNode frameNode = (FrameNode)insn;
-                FrameData frameData = frameIndex < frames.size() ? frames.get(frameIndex) : null;
-                
-                locals = frameData != null && frameData.type == Opcodes.F_FULL ? Math.max(locals, frameNode.local.size()) : frameNode.local.size();
-
-                // localPos tracks the location in the frame node's locals list, which doesn't leave space for TOP entries
-                for (int localPos = 0, framePos = 0; framePos < frame.length; framePos++, localPos++) {
-                    // Get the local at the current position in the FrameNode's locals list
-                    final Object localType = (localPos < frameNode.local.size()) ? frameNode.local.get(localPos) : null;
-
-                    if (localType instanceof String) { // String refers to a reference type
-                        frame[framePos] = Locals.getLocalVariableAt(classNode, method, node, framePos);
-                    } else if (localType instanceof Integer) { // Integer refers to a primitive type or other marker
-                        boolean isMarkerType = localType == Opcodes.UNINITIALIZED_THIS || localType == Opcodes.NULL;
-                        boolean is32bitValue = localType == Opcodes.INTEGER || localType == Opcodes.FLOAT;
-                        boolean is64bitValue = localType == Opcodes.DOUBLE || localType == Opcodes.LONG;
-                        if (localType == Opcodes.TOP) {
-                            // Do nothing, explicit TOP entries are pretty much always bogus, and real ones are handled below
-                        } else if (isMarkerType) {
-                            frame[framePos] = null;
-                        } else if (is32bitValue || is64bitValue) {
-                            frame[framePos] = Locals.getLocalVariableAt(classNode, method, node, framePos);
-
-                            if (is64bitValue) {
-                                framePos++;
-                                frame[framePos] = null; // TOP
-                            }
-                        } else {
-                            throw new LVTGeneratorException("Unrecognised locals opcode " + localType + " in locals array at position " + localPos
-                                    + " in " + classNode.name + "." + method.name + method.desc);
-                        }
-                    } else if (localType == null) {
-                        if (framePos >= initialFrameSize && framePos >= locals && locals > 0) {
-                            frame[framePos] = null;
-                        }
-                    } else {
-                        throw new LVTGeneratorException("Invalid value " + localType + " in locals array at position " + localPos
-                                + " in " + classNode.name + "." + method.name + method.desc);
-                    }
-                }
-            } else if (insn instanceof VarInsnNode) {
-                VarInsnNode varNode = (VarInsnNode) insn;
-                frame[varNode.var] = Locals.getLocalVariableAt(classNode, method, node, varNode.var);
-            } else if (insn == node) {
-                break;
-            }
-        }
-        
-        // Null out any "unknown" locals
-        for (int l = 0; l < frame.length; l++) {
-            if (frame[l] != null && frame[l].desc == null) {
-                frame[l] = null;
-            }
-        }
-
-        return frame;
+        return new LocalsModel(classNode, method).getLocalsAt(node);
     }
 
     /**
@@ -298,27 +219,48 @@ public class Locals {
      * @param method Method
      * @return generated local variable table 
      */
-    public static List<LocalVariableNode> getGeneratedLocalVariableTable(ClassNode classNode, MethodNode method) {
-        String methodId = String.format("%s.%s%s", classNode.name, method.name, method.desc);
-        List<LocalVariableNode> localVars = Locals.calculatedLocalVariables.get(methodId);
-        if (localVars != null) {
-            return localVars;
+    public static List<LocalVariableNode> getGeneratedLocalVariableTable(final ClassNode classNode, final MethodNode method) {
+        try {
+            return Locals.calculatedLocalVariables.get(method, new Callable<List<LocalVariableNode>>() {
+                @Override
+                public List<LocalVariableNode> call() throws Exception {
+                    return Locals.generateLocalVariableTable(classNode, method);
+                }
+            });
+        } catch (ExecutionException ex) {
+            throw new LVTGeneratorException("Error generating LVT for " + classNode.name + "." + method.name + method.desc, ex.getCause());
+        } catch (UncheckedExecutionException ex) {
+            throw new LVTGeneratorException("Error generating LVT for " + classNode.name + "." + method.name + method.desc, ex.getCause());
         }
-
-        localVars = Locals.generateLocalVariableTable(classNode, method);
-        Locals.calculatedLocalVariables.put(methodId, localVars);
-        return localVars;
+    }
+    
+    /**
+     * Get statistics for the generated local variable table cache. Load time
+     * is the total time spent analysing methods to generate tables.
+     * 
+     * @return cache statistics
+     */
+    public static CacheStats getGeneratedLocalVariableTableStats() {
+        return Locals.calculatedLocalVariables.stats();
     }
 
     /**
-     * Use ASM Analyzer to generate the local variable table for the specified
-     * method
+     * Generate the local variable table for the specified method. The types of
+     * locals are inferred directly from the bytecode where possible, otherwise
+     * the ASM Analyzer is used
      * 
      * @param classNode Containing class
      * @param method Method
      * @return generated local variable table
      */
     public static List<LocalVariableNode> generateLocalVariableTable(ClassNode classNode, MethodNode method) {
+        // Try inferring the locals directly first, only use the Analyzer if the
+        // method contains something the inference can't handle
+        List<LocalVariableNode> inferred = LocalTypeInference.generateLocalVariableTable(classNode, method);
+        if (inferred != null) {
+            return inferred;
+        }
+        
         List<Type> interfaces = null;
         if (classNode.interfaces != null) {
             interfaces = new ArrayList<Type>();
@@ -427,20 +369,4 @@ public class Locals {
         return localVariables;
     }
     
-    /**
-     * Get the insn immediately following the specified insn, or return the same
-     * insn if the insn is the last insn in the list
-     * 
-     * @param insns Insn list to fetch from
-     * @param insn Insn node
-     * @return Next insn or the same insn if last in the list
-     */
-    private static AbstractInsnNode nextNode(InsnList insns, AbstractInsnNode insn) {
-        int index = insns.indexOf(insn) + 1;
-        if (index > 0 && index < insns.size()) {
-            return insns.get(index);
-        }
-        return insn;
-    }
-    
 }
@@ -0,0 +1,377 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.util;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.spongepowered.asm.lib.Opcodes;
+import org.spongepowered.asm.lib.Type;
+import org.spongepowered.asm.lib.tree.AbstractInsnNode;
+import org.spongepowered.asm.lib.tree.ClassNode;
+import org.spongepowered.asm.lib.tree.FrameNode;
+import org.spongepowered.asm.lib.tree.InsnList;
+import org.spongepowered.asm.lib.tree.LabelNode;
+import org.spongepowered.asm.lib.tree.LineNumberNode;
+import org.spongepowered.asm.lib.tree.LocalVariableNode;
+import org.spongepowered.asm.lib.tree.MethodNode;
+import org.spongepowered.asm.lib.tree.VarInsnNode;
+import org.spongepowered.asm.mixin.transformer.ClassInfo;
+import org.spongepowered.asm.mixin.transformer.ClassInfo.FrameData;
+import org.spongepowered.asm.mixin.transformer.ClassInfo.Method;
+import org.spongepowered.asm.util.throwables.LVTGeneratorException;
+
+/**
+ * Model of the locals in a method, built with a single forward pass over the
+ * method's instructions. For each instruction the model records which local
+ * slots have been defined by a stack map frame or a STORE/LOAD opcode, which
+ * allows the locals at any position to be enumerated without walking the
+ * method from the start. See {@link Locals#getLocalsAt} for details of the
+ * inference performed.
+ * 
+ * <p>Instructions inserted into the method after the model is built are
+ * resolved to the nearest original instruction which precedes them, which
+ * means a single model can be shared by successive injectors working on the
+ * same target method. This only holds while the inserted instructions do not
+ * touch locals, {@link #isCurrent} checks whether the model must be rebuilt.
+ * </p>
+ */
+public class LocalsModel {
+    
+    /**
+     * Slot holds its initial value, either the implicit "this" reference, a
+     * method argument, or nothing
+     */
+    private static final byte INITIAL = 0;
+
+    /**
+     * Slot has been explicitly cleared
+     */
+    private static final byte CLEARED = 1;
+    
+    /**
+     * Slot is defined, and its value is looked up in the local variable table
+     */
+    private static final byte DEFINED = 2;
+
+    /**
+     * Slot states before and after an original instruction in the method
+     */
+    static final class Entry {
+        
+        final int pos;
+        
+        final byte[] before;
+        
+        byte[] after;
+        
+        Entry(int pos, byte[] before) {
+            this.pos = pos;
+            this.before = this.after = before;
+        }
+        
+    }
+    
+    private final ClassNode classNode;
+    
+    private final MethodNode method;
+    
+    /**
+     * Locals on entry to the method
+     */
+    private final LocalVariableNode[] initialLocals;
+    
+    /**
+     * Entries for each instruction in the method when the model was built 
+     */
+    private final Map<AbstractInsnNode, Entry> entries = new IdentityHashMap<AbstractInsnNode, Entry>();
+    
+    /**
+     * Local variable table of the method, either its own or a generated one 
+     */
+    private final List<LocalVariableNode> localVariables;
+    
+    /**
+     * Slot states at the end of the method
+     */
+    private byte[] finalState;
+    
+    /**
+     * Number of instructions in the method when the model was last found to
+     * be current
+     */
+    private int size;
+    
+    /**
+     * Build a new locals model for the specified method
+     * 
+     * @param classNode ClassNode containing the method, used to initialise the
+     *      implicit "this" reference in simple methods with no stack frames
+     * @param method MethodNode to explore
+     */
+    public LocalsModel(ClassNode classNode, MethodNode method) {
+        this.classNode = classNode;
+        this.method = method;
+        
+        // Fetch the LVT first since generating it may add labels to the method
+        this.localVariables = Locals.getLocalVariableTable(classNode, method);
+        
+        ClassInfo classInfo = ClassInfo.forName(classNode.name);
+        if (classInfo == null) {
+            throw new LVTGeneratorException("Could not load class metadata for " + classNode.name + " generating LVT for " + method.name);
+        }
+        Method methodInfo = classInfo.findMethod(method);
+        if (methodInfo == null) {
+            throw new LVTGeneratorException("Could not locate method metadata for " + method.name + " generating LVT in " + classNode.name);
+        }
+        
+        this.initialLocals = new LocalVariableNode[method.maxLocals];
+        int initialFrameSize = this.initLocals();
+        this.analyse(methodInfo.getFrames(), initialFrameSize);
+        this.size = method.instructions.size();
+    }
+    
+    /**
+     * Get whether the model still describes the method. Instructions inserted
+     * since the model was built do not invalidate it unless they load, store
+     * or declare locals, in which case the locals after them will have
+     * changed. Removing original instructions invalidates the model. As with
+     * the instruction index, the check is skipped if the method has not grown
+     * or shrunk.
+     * 
+     * @return true if the model can still be used, false if it must be rebuilt
+     */
+    public boolean isCurrent() {
+        InsnList insns = this.method.instructions;
+        if (insns.size() == this.size) {
+            return true;
+        }
+        
+        int original = 0;
+        for (Iterator<AbstractInsnNode> iter = insns.iterator(); iter.hasNext();) {
+            AbstractInsnNode insn = iter.next();
+            if (this.entries.containsKey(insn)) {
+                original++;
+            } else if (insn instanceof VarInsnNode || insn instanceof FrameNode) {
+                return false;
+            }
+        }
+        
+        if (original != this.entries.size()) {
+            return false;
+        }
+        
+        this.size = insns.size();
+        return true;
+    }
+
+    private int initLocals() {
+        int local = 0, index = 0;
+
+        // Initialise implicit "this" reference in non-static methods
+        if ((this.method.access & Opcodes.ACC_STATIC) == 0) {
+            this.initialLocals[local++] = new LocalVariableNode("this", this.classNode.name, null, null, null, 0);
+        }
+        
+        // Initialise method arguments
+        for (Type argType : Type.getArgumentTypes(this.method.desc)) {
+            this.initialLocals[local] = new LocalVariableNode("arg" + index++, argType.toString(), null, null, null, local);
+            local += argType.getSize();
+        }
+        
+        return local;
+    }
+    
+    private void analyse(List<FrameData> frames, int initialFrameSize) {
+        byte[] state = new byte[this.method.maxLocals];
+        int frameIndex = -1, locals = 0, pos = 0;
+
+        for (Iterator<AbstractInsnNode> iter = this.method.instructions.iterator(); iter.hasNext();) {
+            AbstractInsnNode insn = iter.next();
+            Entry entry = new Entry(pos++, state);
+            this.entries.put(insn, entry);
+            
+            if (insn instanceof FrameNode) {
+                frameIndex++;
+                FrameNode frameNode = (FrameNode)insn;
+                FrameData frameData = frameIndex < frames.size() ? frames.get(frameIndex) : null;
+                
+                locals = frameData != null && frameData.type == Opcodes.F_FULL ? Math.max(locals, frameNode.local.size()) : frameNode.local.size();
+                state = state.clone();
+
+                // localPos tracks the location in the frame node's locals list, which doesn't leave space for TOP entries
+                for (int localPos = 0, framePos = 0; framePos < state.length; framePos++, localPos++) {
+                    // Get the local at the current position in the FrameNode's locals list
+                    final Object localType = (localPos < frameNode.local.size()) ? frameNode.local.get(localPos) : null;
+
+                    if (localType instanceof String) { // String refers to a reference type
+                        state[framePos] = LocalsModel.DEFINED;
+                    } else if (localType instanceof Integer) { // Integer refers to a primitive type or other marker
+                        boolean isMarkerType = localType == Opcodes.UNINITIALIZED_THIS || localType == Opcodes.NULL;
+                        boolean is32bitValue = localType == Opcodes.INTEGER || localType == Opcodes.FLOAT;
+                        boolean is64bitValue = localType == Opcodes.DOUBLE || localType == Opcodes.LONG;
+                        if (localType == Opcodes.TOP) {
+                            // Do nothing, explicit TOP entries are pretty much always bogus, and real ones are handled below
+                        } else if (isMarkerType) {
+                            state[framePos] = LocalsModel.CLEARED;
+                        } else if (is32bitValue || is64bitValue) {
+                            state[framePos] = LocalsModel.DEFINED;
+
+                            if (is64bitValue) {
+                                framePos++;
+                                state[framePos] = LocalsModel.CLEARED; // TOP
+                            }
+                        } else {
+                            throw new LVTGeneratorException("Unrecognised locals opcode " + localType + " in locals array at position " + localPos
+                                    + " in " + this.classNode.name + "." + this.method.name + this.method.desc);
+                        }
+                    } else if (localType == null) {
+                        if (framePos >= initialFrameSize && framePos >= locals && locals > 0) {
+                            state[framePos] = LocalsModel.CLEARED;
+                        }
+                    } else {
+                        throw new LVTGeneratorException("Invalid value " + localType + " in locals array at position " + localPos
+                                + " in " + this.classNode.name + "." + this.method.name + this.method.desc);
+                    }
+                }
+            } else if (insn instanceof VarInsnNode) {
+                VarInsnNode varNode = (VarInsnNode) insn;
+                if (state[varNode.var] != LocalsModel.DEFINED) {
+                    state = state.clone();
+                    state[varNode.var] = LocalsModel.DEFINED;
+                }
+            }
+            
+            entry.after = state;
+        }
+        
+        this.finalState = state;
+    }
+
+    /**
+     * Enumerate the locals at the specified position in the method, see
+     * {@link Locals#getLocalsAt} for details.
+     * 
+     * @param node Node indicating the position at which to determine the locals
+     *      state
+     * @return A sparse array containing a view (hopefully) of the locals at the
+     *      specified location
+     */
+    public LocalVariableNode[] getLocalsAt(AbstractInsnNode node) {
+        for (int i = 0; i < 3 && (node instanceof LabelNode || node instanceof LineNumberNode) && node.getNext() != null; i++) {
+            node = node.getNext();
+        }
+        
+        byte[] state = this.finalState;
+        
+        // The locals are enumerated up to the specified node unless the node is
+        // itself a frame or a STORE/LOAD, in which case the whole method is
+        // enumerated, this matches the original linear search
+        if (!(node instanceof FrameNode) && !(node instanceof VarInsnNode)) {
+            Entry entry = this.entries.get(node);
+            if (entry != null) {
+                state = entry.before;
+            } else {
+                Entry previous = this.findPrevious(node);
+                state = previous != null ? previous.after : new byte[0];
+            }
+        }
+        
+        int pos = this.getPosition(node);
+        LocalVariableNode[] frame = new LocalVariableNode[this.method.maxLocals];
+        for (int l = 0; l < frame.length; l++) {
+            byte slotState = l < state.length ? state[l] : LocalsModel.INITIAL;
+            if (slotState == LocalsModel.DEFINED) {
+                frame[l] = this.getLocalVariableAt(pos, l);
+            } else if (slotState == LocalsModel.INITIAL && l < this.initialLocals.length) {
+                frame[l] = this.initialLocals[l];
+            }
+            
+            // Null out any "unknown" locals
+            if (frame[l] != null && frame[l].desc == null) {
+                frame[l] = null;
+            }
+        }
+        
+        return frame;
+    }
+
+    /**
+     * Get the position of the supplied insn for range comparisons. Original
+     * insns are at even positions, inserted insns take the odd position after
+     * the original insn which precedes them.
+     */
+    private int getPosition(AbstractInsnNode insn) {
+        Entry entry = this.entries.get(insn);
+        if (entry != null) {
+            return entry.pos * 2;
+        }
+        Entry previous = this.findPrevious(insn);
+        return previous != null ? previous.pos * 2 + 1 : -1;
+    }
+
+    private Entry findPrevious(AbstractInsnNode insn) {
+        for (AbstractInsnNode node = insn.getPrevious(); node != null; node = node.getPrevious()) {
+            Entry entry = this.entries.get(node);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private LocalVariableNode getLocalVariableAt(int pos, int var) {
+        LocalVariableNode localVariableNode = null;
+        LocalVariableNode fallbackNode = null;
+
+        for (LocalVariableNode local : this.localVariables) {
+            if (local.index != var) {
+                continue;
+            }
+            if (this.isOpcodeInRange(local, pos)) {
+                localVariableNode = local;
+            } else if (localVariableNode == null) {
+                fallbackNode = local;
+            }
+        }
+        
+        if (localVariableNode == null && !this.method.localVariables.isEmpty()) {
+            for (LocalVariableNode local : Locals.getGeneratedLocalVariableTable(this.classNode, this.method)) {
+                if (local.index == var && this.isOpcodeInRange(local, pos)) {
+                    localVariableNode = local;
+                }
+            }
+        }
+        
+        return localVariableNode != null ? localVariableNode : fallbackNode;
+    }
+
+    private boolean isOpcodeInRange(LocalVariableNode local, int pos) {
+        return this.getPosition(local.start) < pos && this.getPosition(local.end) > pos;
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.refmap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Tests for the binary refmap index
+ */
+public class ReferenceMapIndexTest {
+    
+    private static final String RESOURCE = "test.refmap.json";
+    
+    private File dir;
+    
+    private ReferenceMapper refMapper;
+    
+    private byte[] json;
+    
+    private byte[] index;
+    
+    @Before
+    public void setUp() throws IOException {
+        this.dir = Files.createTempDir();
+        
+        this.refMapper = new ReferenceMapper();
+        this.refMapper.addMapping(null, "test/MixinA", "foo", "a");
+        this.refMapper.addMapping(null, "test/MixinA", "bar()V", "b()V");
+        this.refMapper.addMapping(null, "test/MixinB", "foo", "c");
+        this.refMapper.addMapping("searge", "test/MixinA", "foo", "field_1_a");
+        this.refMapper.addMapping("searge", "test/MixinA", "bar()V", "func_2_b()V");
+        this.refMapper.addMapping("searge", "test/MixinB", "baz", "field_3_c");
+        for (int i = 0; i < 100; i++) {
+            this.refMapper.addMapping("notch", "test/MixinC", "member" + i, "m" + i);
+        }
+        
+        StringBuilder json = new StringBuilder();
+        this.refMapper.write(json);
+        this.json = json.toString().getBytes(Charsets.UTF_8);
+        
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        this.refMapper.writeIndex(index, this.json);
+        this.index = index.toByteArray();
+    }
+    
+    @After
+    public void tearDown() {
+        for (File file : this.dir.listFiles()) {
+            file.delete();
+        }
+        this.dir.delete();
+    }
+    
+    @Test
+    public void testIndexMatchesJson() throws IOException {
+        ReferenceMapper parsed = ReferenceMapper.read(new InputStreamReader(new ByteArrayInputStream(this.json), Charsets.UTF_8));
+        ReferenceMapper indexed = ReferenceMapper.readIndex(ReferenceMapIndexTest.RESOURCE, this.writeFiles(this.json, this.index), this.json);
+        assertNotNull(indexed);
+        
+        String[] contexts = { null, "searge", "notch", "missing" };
+        String[] owners = { "test/MixinA", "test/MixinB", "test/MixinC", "test/MixinD", null };
+        String[] references = { "foo", "bar()V", "baz", "member0", "member99", "unmapped" };
+        for (String context : contexts) {
+            for (String owner : owners) {
+                for (String reference : references) {
+                    assertEquals(context + " " + owner + " " + reference, parsed.remapWithContext(context, owner, reference),
+                            indexed.remapWithContext(context, owner, reference));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testOwnerlessReferences() throws IOException {
+        ReferenceMapper indexed = ReferenceMapper.readIndex(ReferenceMapIndexTest.RESOURCE, this.writeFiles(this.json, this.index), this.json);
+        assertEquals("b()V", indexed.remapWithContext(null, null, "bar()V"));
+        assertEquals("field_3_c", indexed.remapWithContext("searge", null, "baz"));
+        assertEquals("m42", indexed.remapWithContext("notch", null, "member42"));
+        
+        // foo maps to a different value for each owner so is not remapped without one
+        assertEquals("foo", indexed.remapWithContext(null, null, "foo"));
+    }
+    
+    @Test
+    public void testIndexIgnoredWhenJsonChanged() throws IOException {
+        byte[] changedJson = new String(this.json, Charsets.UTF_8).replace("func_2_b", "func_9_b").getBytes(Charsets.UTF_8);
+        assertNull(ReferenceMapper.readIndex(ReferenceMapIndexTest.RESOURCE, this.writeFiles(changedJson, this.index), changedJson));
+    }
+    
+    @Test
+    public void testIndexMissing() throws IOException {
+        assertNull(ReferenceMapper.readIndex(ReferenceMapIndexTest.RESOURCE, this.writeFiles(this.json, null), this.json));
+    }
+    
+    @Test
+    public void testIndexResolvedInsideJar() throws IOException {
+        File jar = new File(this.dir, "test.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new ZipEntry(ReferenceMapIndexTest.RESOURCE));
+            out.write(this.json);
+            out.putNextEntry(new ZipEntry(ReferenceMapIndexTest.RESOURCE + ReferenceMapper.INDEX_SUFFIX));
+            out.write(this.index);
+        } finally {
+            out.close();
+        }
+        
+        // An index beside the jar must not be picked up for the refmap inside it
+        Files.write(new byte[] { 0 }, new File(this.dir, ReferenceMapIndexTest.RESOURCE + ReferenceMapper.INDEX_SUFFIX));
+        
+        URL url = new URL("jar:" + jar.toURI().toURL() + "!/" + ReferenceMapIndexTest.RESOURCE);
+        ReferenceMapper indexed = ReferenceMapper.readIndex(ReferenceMapIndexTest.RESOURCE, url, this.json);
+        assertNotNull(indexed);
+        assertEquals("func_2_b()V", indexed.remapWithContext("searge", "test/MixinA", "bar()V"));
+    }
+    
+    private URL writeFiles(byte[] json, byte[] index) throws IOException {
+        File jsonFile = new File(this.dir, ReferenceMapIndexTest.RESOURCE);
+        Files.write(json, jsonFile);
+        if (index != null) {
+            Files.write(index, new File(this.dir, ReferenceMapIndexTest.RESOURCE + ReferenceMapper.INDEX_SUFFIX));
+        }
+        return jsonFile.toURI().toURL();
+    }
+    
+}
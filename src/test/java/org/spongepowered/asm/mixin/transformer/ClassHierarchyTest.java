@@ -0,0 +1,88 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+
+import org.junit.Test;
+import org.spongepowered.asm.lib.Opcodes;
+import org.spongepowered.asm.lib.tree.ClassNode;
+
+/**
+ * Tests for invalidation of the memoised superclass queries in
+ * {@link ClassHierarchy}
+ */
+public class ClassHierarchyTest {
+    
+    @Test
+    public void testInvalidateDiscardsSubtypesOnly() throws Exception {
+        ClassInfo base = ClassHierarchyTest.createClass("test/HierarchyBase", "java/lang/Object");
+        ClassInfo derived = ClassHierarchyTest.createClass("test/HierarchyDerived", "test/HierarchyBase");
+        ClassInfo leaf = ClassHierarchyTest.createClass("test/HierarchyLeaf", "test/HierarchyDerived");
+        ClassInfo unrelated = ClassHierarchyTest.createClass("test/HierarchyUnrelated", "java/lang/Object");
+        
+        ClassHierarchy hierarchy = new ClassHierarchy();
+        assertSame(base, hierarchy.findSuperClass(leaf, "test/HierarchyBase"));
+        hierarchy.findSuperClass(unrelated, "java/lang/Object");
+        assertEquals("test/HierarchyBase", hierarchy.getCommonSuperClass("test/HierarchyLeaf", "test/HierarchyBase"));
+        assertEquals("java/lang/Object", hierarchy.getCommonSuperClass("test/HierarchyUnrelated", "java/lang/Object"));
+        
+        hierarchy.invalidate(derived);
+        
+        Map<?, ?> ancestors = ClassHierarchyTest.getCache(hierarchy, "ancestors");
+        assertFalse(ancestors.containsKey(derived));
+        assertFalse(ancestors.containsKey(leaf));
+        assertTrue(ancestors.containsKey(base));
+        assertTrue(ancestors.containsKey(unrelated));
+        
+        Map<?, ?> commonSuperClasses = ClassHierarchyTest.getCache(hierarchy, "commonSuperClasses");
+        assertFalse(commonSuperClasses.containsKey("test/HierarchyLeaf;test/HierarchyBase"));
+        assertTrue(commonSuperClasses.containsKey("test/HierarchyUnrelated;java/lang/Object"));
+        
+        assertSame(base, hierarchy.findSuperClass(leaf, "test/HierarchyBase"));
+    }
+    
+    private static Map<?, ?> getCache(ClassHierarchy hierarchy, String name) throws Exception {
+        Field field = ClassHierarchy.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return (Map<?, ?>)field.get(hierarchy);
+    }
+    
+    private static ClassInfo createClass(String name, String superName) {
+        ClassNode classNode = new ClassNode();
+        classNode.version = Opcodes.V1_6;
+        classNode.access = Opcodes.ACC_PUBLIC;
+        classNode.name = name;
+        classNode.superName = superName;
+        return ClassInfo.fromClassNode(classNode);
+    }
+    
+}
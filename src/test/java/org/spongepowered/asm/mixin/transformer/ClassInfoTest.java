@@ -0,0 +1,144 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+
+import org.junit.Test;
+import org.spongepowered.asm.lib.Opcodes;
+import org.spongepowered.asm.lib.tree.ClassNode;
+import org.spongepowered.asm.lib.tree.MethodNode;
+import org.spongepowered.asm.mixin.transformer.ClassInfo.Method;
+
+import com.google.common.cache.Cache;
+
+/**
+ * Tests for the member index and failed lookup cache of {@link ClassInfo}
+ */
+public class ClassInfoTest {
+    
+    @Test
+    public void testRenameReindexesMember() {
+        ClassInfo info = ClassInfoTest.createClass("test/RenameTarget", "java/lang/Object", "foo");
+        Method method = info.findMethod("foo", "()V", ClassInfo.INCLUDE_ALL);
+        assertNotNull(method);
+        
+        method.renameTo("bar");
+        assertSame(method, info.findMethod("bar", "()V", ClassInfo.INCLUDE_ALL));
+        assertSame(method, info.findMethod("foo", "()V", ClassInfo.INCLUDE_ALL));
+        
+        method.renameTo("baz");
+        assertNull(info.findMethod("bar", "()V", ClassInfo.INCLUDE_ALL));
+        assertSame(method, info.findMethod("baz", "()V", ClassInfo.INCLUDE_ALL));
+        assertSame(method, info.findMethod("foo", "()V", ClassInfo.INCLUDE_ALL));
+    }
+    
+    @Test
+    public void testRenameFromUnindexedName() {
+        ClassInfo info = ClassInfoTest.createClass("test/UnindexedRenameTarget", "java/lang/Object", "foo", "other");
+        Method method = info.findMethod("foo", "()V", ClassInfo.INCLUDE_ALL);
+        
+        // The bucket for "other" exists but does not contain the renamed member
+        info.onRenamed(method, "other");
+        assertNotNull(info.findMethod("other", "()V", ClassInfo.INCLUDE_ALL));
+        assertSame(method, info.findMethod("foo", "()V", ClassInfo.INCLUDE_ALL));
+    }
+    
+    @Test
+    public void testRenameCopyIsIgnored() {
+        ClassInfo info = ClassInfoTest.createClass("test/CopyRenameTarget", "java/lang/Object", "foo");
+        Method method = info.findMethod("foo", "()V", ClassInfo.INCLUDE_ALL);
+        
+        Method copy = info.new Method(method);
+        copy.renameTo("bar");
+        assertNull(info.findMethod("bar", "()V", ClassInfo.INCLUDE_ALL));
+        assertSame(method, info.findMethod("foo", "()V", ClassInfo.INCLUDE_ALL));
+    }
+    
+    @Test
+    public void testFailedLookupInvalidatedBySuperclass() {
+        ClassInfo base = ClassInfoTest.createClass("test/LookupBase", "java/lang/Object");
+        ClassInfo derived = ClassInfoTest.createClass("test/LookupDerived", "test/LookupBase");
+        ClassInfo unrelated = ClassInfoTest.createClass("test/LookupUnrelated", "java/lang/Object");
+        assertNull(derived.findMethodInHierarchy("late", "()V", true));
+        assertNull(unrelated.findMethodInHierarchy("late", "()V", true));
+        
+        base.addMethod(new MethodNode(Opcodes.ACC_PUBLIC, "late", "()V", null, null));
+        assertNotNull(derived.findMethodInHierarchy("late", "()V", true));
+        assertNull(unrelated.findMethodInHierarchy("late", "()V", true));
+    }
+    
+    @Test
+    public void testFailedLookupInvalidatedByRename() {
+        ClassInfo base = ClassInfoTest.createClass("test/RenameLookupBase", "java/lang/Object", "foo");
+        ClassInfo derived = ClassInfoTest.createClass("test/RenameLookupDerived", "test/RenameLookupBase");
+        assertNull(derived.findMethodInHierarchy("bar", "()V", true));
+        
+        base.findMethod("foo", "()V", ClassInfo.INCLUDE_ALL).renameTo("bar");
+        assertNotNull(derived.findMethodInHierarchy("bar", "()V", true));
+    }
+    
+    @Test
+    public void testFailedLookupKeyIncludesOptions() {
+        ClassInfo base = ClassInfoTest.createClass("test/KeyLookupBase", "java/lang/Object");
+        ClassInfo derived = ClassInfoTest.createClass("test/KeyLookupDerived", "test/KeyLookupBase", "own");
+        assertNull(derived.findMethodInHierarchy("own", "()V", false));
+        assertNotNull(derived.findMethodInHierarchy("own", "()V", true));
+        assertNull(base.findMethodInHierarchy("own", "()V", true));
+    }
+    
+    @Test
+    public void testFailedLookupsAreBounded() throws Exception {
+        ClassInfo info = ClassInfoTest.createClass("test/BoundedLookupTarget", "java/lang/Object");
+        for (int i = 0; i < ClassInfo.MAX_FAILED_LOOKUPS * 4; i++) {
+            assertNull(info.findMethodInHierarchy("missing" + i, "()V", true));
+        }
+        
+        Field field = ClassInfo.class.getDeclaredField("failedLookups");
+        field.setAccessible(true);
+        long size = ((Cache<?, ?>)field.get(info)).size();
+        assertTrue(size > 0);
+        assertTrue(size <= ClassInfo.MAX_FAILED_LOOKUPS);
+        assertNull(info.findMethodInHierarchy("missing0", "()V", true));
+    }
+    
+    private static ClassInfo createClass(String name, String superName, String... methods) {
+        ClassNode classNode = new ClassNode();
+        classNode.version = Opcodes.V1_6;
+        classNode.access = Opcodes.ACC_PUBLIC;
+        classNode.name = name;
+        classNode.superName = superName;
+        for (String method : methods) {
+            classNode.methods.add(new MethodNode(Opcodes.ACC_PUBLIC, method, "()V", null, null));
+        }
+        return ClassInfo.fromClassNode(classNode);
+    }
+    
+}
@@ -0,0 +1,154 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.spongepowered.asm.launch.Blackboard;
+import org.spongepowered.asm.launch.MixinBootstrap;
+import org.spongepowered.asm.lib.ClassReader;
+import org.spongepowered.asm.lib.util.CheckClassAdapter;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
+import org.spongepowered.asm.mixin.MixinEnvironment.Phase;
+import org.spongepowered.asm.mixin.Mixins;
+import org.spongepowered.asm.mixin.transformer.frames.FramesTarget;
+
+import net.minecraft.launchwrapper.Launch;
+import net.minecraft.launchwrapper.LaunchClassLoader;
+
+/**
+ * Tests that mixed classes pass verification with stack map frames computed
+ * for the whole class and with frames computed only for modified methods.
+ * Each mode is run in a separate VM since the environment options are read
+ * once.
+ */
+public class IncrementalFramesTest {
+    
+    private static final String CONFIG = "mixins.frames.json";
+    
+    private static final String PROPERTY = "mixin.incrementalFrames";
+    
+    @Test
+    public void testFullFrames() throws Exception {
+        this.assertResults(this.transform(false));
+    }
+    
+    @Test
+    public void testIncrementalFrames() throws Exception {
+        this.assertResults(this.transform(true));
+    }
+    
+    @Test
+    public void testModesBehaveTheSame() throws Exception {
+        assertEquals(this.transform(false), this.transform(true));
+    }
+    
+    private void assertResults(Map<String, String> results) {
+        assertEquals("27", results.get("count(10)"));
+        assertEquals("-1", results.get("count(-1)"));
+        assertEquals("2550", results.get("count(200)"));
+        assertEquals("10", results.get("untouched(4)"));
+        assertEquals("30", results.get("framesSum(10)"));
+    }
+    
+    private Map<String, String> transform(boolean incremental) throws Exception {
+        String vmArg = "-D" + IncrementalFramesTest.PROPERTY + "=" + incremental;
+        String output = MixinPremixerTest.run(Arrays.asList(vmArg), Transform.class, MixinPremixerTest.getClassesDir().getPath());
+        
+        Map<String, String> results = new HashMap<String, String>();
+        for (String line : output.split("\\r?\\n")) {
+            if (line.startsWith(Transform.RESULT)) {
+                String[] result = line.substring(Transform.RESULT.length()).split("=", 2);
+                results.put(result[0], result[1]);
+            }
+        }
+        assertEquals(output, String.valueOf(incremental), results.remove(IncrementalFramesTest.PROPERTY));
+        return results;
+    }
+    
+    /**
+     * Applies the test mixin to the target, fails if the result does not pass
+     * {@link CheckClassAdapter} and prints the results of calling the target's
+     * methods
+     */
+    public static final class Transform {
+        
+        static final String RESULT = "result ";
+        
+        public static void main(String[] args) throws Exception {
+            Launch.blackboard = new HashMap<String, Object>();
+            Launch.classLoader = new LaunchClassLoader(new URL[] { new File(args[0]).toURI().toURL() });
+            Blackboard.put(Blackboard.Keys.INIT, MixinBootstrap.VERSION);
+            Blackboard.put(Blackboard.Keys.TWEAKS, new ArrayList<Object>());
+            Blackboard.put(Blackboard.Keys.TWEAKCLASSES, new ArrayList<String>());
+            MixinEnvironment.init(Phase.DEFAULT);
+            Mixins.addConfiguration(IncrementalFramesTest.CONFIG);
+            
+            String target = FramesTarget.class.getName();
+            InputStream in = Transform.class.getClassLoader().getResourceAsStream(target.replace('.', '/') + ".class");
+            byte[] bytes = new MixinTransformer().transform(target, target, IOUtils.toByteArray(in));
+            in.close();
+            
+            StringWriter errors = new StringWriter();
+            CheckClassAdapter.verify(new ClassReader(bytes), Transform.class.getClassLoader(), false, new PrintWriter(errors));
+            if (errors.getBuffer().length() > 0) {
+                System.out.println(errors);
+                System.exit(1);
+            }
+            
+            boolean incremental = MixinEnvironment.getCurrentEnvironment().getOption(Option.INCREMENTAL_FRAMES);
+            System.out.println(Transform.RESULT + IncrementalFramesTest.PROPERTY + "=" + incremental);
+            
+            Class<?> targetClass = new MixinPremixerTest.TargetLoader(target, bytes).loadClass(target);
+            Object instance = targetClass.newInstance();
+            Transform.invoke(instance, "count", 10);
+            Transform.invoke(instance, "count", -1);
+            Transform.invoke(instance, "count", 200);
+            Transform.invoke(instance, "untouched", 4);
+            Transform.invoke(instance, "framesSum", 10);
+        }
+        
+        private static void invoke(Object instance, String name, int arg) throws Exception {
+            Object result = instance.getClass().getMethod(name, int.class).invoke(instance, arg);
+            if (result == null) {
+                result = instance.getClass().getMethod("getTotal").invoke(instance);
+            }
+            System.out.println(Transform.RESULT + name + "(" + arg + ")=" + result);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongepowered.asm.lib.Opcodes;
+import org.spongepowered.asm.lib.tree.ClassNode;
+import org.spongepowered.asm.lib.tree.FieldNode;
+import org.spongepowered.asm.lib.tree.MethodNode;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Tests for the persistent class cache
+ */
+public class MixinClassCacheTest {
+    
+    private File dir;
+    
+    private MixinClassCache cache;
+    
+    @Before
+    public void setUp() {
+        this.dir = Files.createTempDir();
+    }
+    
+    @After
+    public void tearDown() {
+        if (this.cache != null) {
+            this.cache.close();
+        }
+        for (File file : this.dir.listFiles()) {
+            file.delete();
+        }
+        this.dir.delete();
+    }
+    
+    @Test
+    public void testMissThenHit() {
+        this.cache = MixinClassCache.open(this.dir);
+        assertNotNull(this.cache);
+        
+        HashCode key = MixinClassCacheTest.key("a");
+        assertNull(this.cache.get(key));
+        assertEquals(1, this.cache.getMisses());
+        
+        byte[] bytes = MixinClassCacheTest.bytes(100, 1);
+        this.cache.put(key, bytes);
+        assertArrayEquals(bytes, this.cache.get(key));
+        assertEquals(1, this.cache.getHits());
+    }
+    
+    @Test
+    public void testHitAfterReopen() {
+        this.cache = MixinClassCache.open(this.dir);
+        byte[] first = MixinClassCacheTest.bytes(100, 1);
+        byte[] second = MixinClassCacheTest.bytes(50, 2);
+        this.cache.put(MixinClassCacheTest.key("a"), first);
+        this.cache.put(MixinClassCacheTest.key("b"), second);
+        this.cache.close();
+        
+        this.cache = MixinClassCache.open(this.dir);
+        assertArrayEquals(first, this.cache.get(MixinClassCacheTest.key("a")));
+        assertArrayEquals(second, this.cache.get(MixinClassCacheTest.key("b")));
+        assertNull(this.cache.get(MixinClassCacheTest.key("c")));
+        assertEquals(2, this.cache.getHits());
+        assertEquals(1, this.cache.getMisses());
+    }
+    
+    @Test
+    public void testPackLimit() {
+        this.cache = MixinClassCache.open(this.dir, 128);
+        this.cache.put(MixinClassCacheTest.key("a"), MixinClassCacheTest.bytes(100, 1));
+        this.cache.put(MixinClassCacheTest.key("b"), MixinClassCacheTest.bytes(100, 2));
+        assertNotNull(this.cache.get(MixinClassCacheTest.key("a")));
+        assertNull(this.cache.get(MixinClassCacheTest.key("b")));
+        this.cache.close();
+        
+        // A full cache is discarded and rebuilt when it is next opened
+        this.cache = MixinClassCache.open(this.dir, 128);
+        assertNull(this.cache.get(MixinClassCacheTest.key("a")));
+        assertEquals(0L, new File(this.dir, "classes.pack").length());
+        this.cache.put(MixinClassCacheTest.key("b"), MixinClassCacheTest.bytes(100, 2));
+        assertNotNull(this.cache.get(MixinClassCacheTest.key("b")));
+    }
+    
+    @Test
+    public void testInvalidIndexIsRebuilt() throws IOException {
+        Files.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 }, new File(this.dir, "classes.idx"));
+        Files.write(MixinClassCacheTest.bytes(100, 1), new File(this.dir, "classes.pack"));
+        this.cache = MixinClassCache.open(this.dir);
+        assertNotNull(this.cache);
+        assertNull(this.cache.get(MixinClassCacheTest.key("a")));
+        assertEquals(0L, new File(this.dir, "classes.pack").length());
+    }
+    
+    @Test
+    public void testCorruptEntryIsDiscarded() throws IOException {
+        this.cache = MixinClassCache.open(this.dir);
+        this.cache.put(MixinClassCacheTest.key("a"), MixinClassCacheTest.bytes(100, 1));
+        this.cache.close();
+        
+        RandomAccessFile pack = new RandomAccessFile(new File(this.dir, "classes.pack"), "rw");
+        try {
+            pack.seek(pack.length() - 10);
+            pack.write(0xFF);
+        } finally {
+            pack.close();
+        }
+        
+        this.cache = MixinClassCache.open(this.dir);
+        assertNull(this.cache.get(MixinClassCacheTest.key("a")));
+        assertEquals(0, this.cache.getHits());
+        assertEquals(1, this.cache.getMisses());
+    }
+    
+    @Test
+    public void testLockedCacheIsReadOnly() {
+        this.cache = MixinClassCache.open(this.dir);
+        assertFalse(this.cache.isReadOnly());
+        byte[] bytes = MixinClassCacheTest.bytes(100, 1);
+        this.cache.put(MixinClassCacheTest.key("a"), bytes);
+        long packSize = new File(this.dir, "classes.pack").length();
+        
+        MixinClassCache other = MixinClassCache.open(this.dir);
+        try {
+            assertNotNull(other);
+            assertTrue(other.isReadOnly());
+            assertArrayEquals(bytes, other.get(MixinClassCacheTest.key("a")));
+            other.put(MixinClassCacheTest.key("b"), MixinClassCacheTest.bytes(50, 2));
+            assertNull(other.get(MixinClassCacheTest.key("b")));
+        } finally {
+            other.close();
+        }
+        
+        assertEquals(packSize, new File(this.dir, "classes.pack").length());
+        assertArrayEquals(bytes, this.cache.get(MixinClassCacheTest.key("a")));
+    }
+    
+    @Test
+    public void testHierarchyHashMemoised() {
+        this.cache = MixinClassCache.open(this.dir);
+        ClassInfo base = ClassInfo.fromClassNode(MixinClassCacheTest.createClass("test/HashBase"));
+        ClassNode subNode = MixinClassCacheTest.createClass("test/HashSub");
+        subNode.superName = "test/HashBase";
+        ClassInfo sub = ClassInfo.fromClassNode(subNode);
+        
+        HashCode hash = this.cache.getHierarchyHash(sub);
+        assertSame(hash, this.cache.getHierarchyHash(sub));
+        
+        // A change to a superclass changes the hash of its subclasses
+        ClassNode mixed = MixinClassCacheTest.createClass("test/HashBase");
+        mixed.methods.add(new MethodNode(Opcodes.ACC_PUBLIC, "added", "()V", null, null));
+        base.addMembersFrom(mixed);
+        assertNotEquals(hash, this.cache.getHierarchyHash(sub));
+    }
+    
+    @Test
+    public void testOpenFailureDisablesCache() throws IOException {
+        File notADirectory = new File(this.dir, "file");
+        Files.write(new byte[0], notADirectory);
+        assertNull(MixinClassCache.open(notADirectory));
+    }
+    
+    @Test
+    public void testCachedMembersRestored() {
+        ClassNode original = MixinClassCacheTest.createClass("test/CachedTarget");
+        ClassInfo info = ClassInfo.fromClassNode(original);
+        assertNull(info.findField("mixinField", "I", ClassInfo.INCLUDE_ALL));
+        
+        ClassNode cached = MixinClassCacheTest.createClass("test/CachedTarget");
+        cached.interfaces.add("java/lang/Runnable");
+        cached.fields.add(new FieldNode(Opcodes.ACC_PRIVATE, "mixinField", "I", null, null));
+        cached.methods.add(new MethodNode(Opcodes.ACC_PUBLIC, "run", "()V", null, null));
+        info.addMembersFrom(cached);
+        
+        assertNotNull(info.findField("originalField", "Ljava/lang/String;", ClassInfo.INCLUDE_ALL));
+        assertNotNull(info.findField("mixinField", "I", ClassInfo.INCLUDE_ALL));
+        assertNotNull(info.findMethod("run", "()V", ClassInfo.INCLUDE_ALL));
+        assertTrue(info.getInterfaces().contains("java/lang/Runnable"));
+    }
+    
+    private static ClassNode createClass(String name) {
+        ClassNode classNode = new ClassNode();
+        classNode.version = Opcodes.V1_6;
+        classNode.access = Opcodes.ACC_PUBLIC;
+        classNode.name = name;
+        classNode.superName = "java/lang/Object";
+        classNode.fields.add(new FieldNode(Opcodes.ACC_PRIVATE, "originalField", "Ljava/lang/String;", null, null));
+        return classNode;
+    }
+    
+    private static HashCode key(String name) {
+        return Hashing.sha1().hashUnencodedChars(name);
+    }
+    
+    private static byte[] bytes(int length, int seed) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte)(i * seed);
+        }
+        return bytes;
+    }
+    
+}
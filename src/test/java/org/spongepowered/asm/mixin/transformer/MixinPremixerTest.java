@@ -0,0 +1,278 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongepowered.asm.launch.Blackboard;
+import org.spongepowered.asm.launch.MixinBootstrap;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Phase;
+import org.spongepowered.asm.mixin.Mixins;
+import org.spongepowered.asm.mixin.transformer.premix.PremixEarlyTarget;
+import org.spongepowered.asm.mixin.transformer.premix.PremixOtherTarget;
+import org.spongepowered.asm.mixin.transformer.premix.PremixTarget;
+import org.spongepowered.asm.util.Constants;
+
+import com.google.common.io.Files;
+
+import net.minecraft.launchwrapper.Launch;
+import net.minecraft.launchwrapper.LaunchClassLoader;
+
+/**
+ * Tests for premixed classes. The premixer and the runtime each take over the
+ * launch context, so both are run in a separate VM.
+ */
+public class MixinPremixerTest {
+    
+    private static final String CONFIG_A = "mixins.premix.a.json";
+    
+    private static final String CONFIG_B = "mixins.premix.b.json";
+    
+    private static final String CONFIG_EARLY = "mixins.premix.early.json";
+    
+    private static final String[] TARGETS = { PremixTarget.class.getName(), PremixOtherTarget.class.getName() };
+    
+    private File dir;
+    
+    private File premixedJar;
+    
+    @Before
+    public void setUp() throws Exception {
+        this.dir = Files.createTempDir();
+        File jar = new File(this.dir, "targets.jar");
+        MixinPremixerTest.writeTargetJar(jar, PremixTarget.class, PremixOtherTarget.class, PremixEarlyTarget.class);
+        
+        File outputDir = new File(this.dir, "out");
+        MixinPremixerTest.run(MixinPremixer.class, "--out", outputDir.getPath(), "--config", MixinPremixerTest.CONFIG_A,
+                "--config", MixinPremixerTest.CONFIG_B, "--config", MixinPremixerTest.CONFIG_EARLY,
+                "--cp", MixinPremixerTest.getClassesDir().getPath(), "--threads", "1", jar.getPath());
+        this.premixedJar = new File(outputDir, jar.getName());
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(this.dir);
+    }
+    
+    @Test
+    public void testPremixedJar() throws IOException {
+        JarFile jarFile = new JarFile(this.premixedJar);
+        try {
+            Manifest manifest = jarFile.getManifest();
+            for (String target : MixinPremixerTest.TARGETS) {
+                String entry = target.replace('.', '/') + ".class";
+                assertNotNull(manifest.getAttributes(entry).getValue(Constants.PREMIXED_ATTRIBUTE));
+                assertNotNull(jarFile.getEntry(Constants.PREMIXED_ORIGINALS_PATH + entry));
+            }
+            
+            // Mixins for earlier phases depend on when the class is loaded so the class is left to be mixed at runtime
+            String earlyEntry = PremixEarlyTarget.class.getName().replace('.', '/') + ".class";
+            assertNull(manifest.getAttributes(earlyEntry));
+            assertNull(jarFile.getEntry(Constants.PREMIXED_ORIGINALS_PATH + earlyEntry));
+        } finally {
+            jarFile.close();
+        }
+    }
+    
+    @Test
+    public void testLoadWithAllConfigs() throws Exception {
+        Map<String, String> results = this.load(MixinPremixerTest.CONFIG_A, MixinPremixerTest.CONFIG_B);
+        assertEquals("3", results.get(PremixTarget.class.getName()));
+        assertEquals("2", results.get(PremixOtherTarget.class.getName()));
+    }
+    
+    @Test
+    public void testLoadWithConfigRemoved() throws Exception {
+        Map<String, String> results = this.load(MixinPremixerTest.CONFIG_A);
+        assertEquals("1", results.get(PremixTarget.class.getName()));
+        assertEquals("0", results.get(PremixOtherTarget.class.getName()));
+    }
+    
+    private Map<String, String> load(String... configs) throws Exception {
+        List<String> args = new ArrayList<String>();
+        args.add(this.premixedJar.getPath());
+        args.add(MixinPremixerTest.getClassesDir().getPath());
+        args.addAll(Arrays.asList(configs));
+        String output = MixinPremixerTest.run(Load.class, args.toArray(new String[args.size()]));
+        
+        Map<String, String> results = new HashMap<String, String>();
+        for (String line : output.split("\\r?\\n")) {
+            if (line.startsWith(Load.RESULT)) {
+                String[] result = line.substring(Load.RESULT.length()).split("=", 2);
+                results.put(result[0], result[1]);
+            }
+        }
+        return results;
+    }
+    
+    static File getClassesDir() throws Exception {
+        return new File(PremixTarget.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+    
+    private static void writeTargetJar(File jar, Class<?>... targets) throws IOException {
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            for (Class<?> target : targets) {
+                String entry = target.getName().replace('.', '/') + ".class";
+                out.putNextEntry(new JarEntry(entry));
+                InputStream in = MixinPremixerTest.class.getClassLoader().getResourceAsStream(entry);
+                try {
+                    IOUtils.copy(in, out);
+                } finally {
+                    IOUtils.closeQuietly(in);
+                }
+                out.closeEntry();
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+    
+    /**
+     * Run the main method of a class in a new VM with the test classpath
+     */
+    private static String run(Class<?> mainClass, String... args) throws Exception {
+        return MixinPremixerTest.run(new ArrayList<String>(), mainClass, args);
+    }
+    
+    /**
+     * Run the main method of a class in a new VM with the test classpath and
+     * the specified VM arguments
+     */
+    static String run(List<String> vmArgs, Class<?> mainClass, String... args) throws Exception {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(vmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(mainClass.getName());
+        command.addAll(Arrays.asList(args));
+        
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = IOUtils.toString(process.getInputStream());
+        assertEquals(output, 0, process.waitFor());
+        return output;
+    }
+    
+    /**
+     * Loads the classes from a premixed jar with the specified configs
+     * selected, and prints the result of calling <tt>getMixed()</tt> on each
+     */
+    public static final class Load {
+        
+        static final String RESULT = "result ";
+        
+        public static void main(String[] args) throws Exception {
+            File premixedJar = new File(args[0]);
+            Launch.blackboard = new HashMap<String, Object>();
+            Launch.classLoader = new LaunchClassLoader(new URL[] { premixedJar.toURI().toURL(), new File(args[1]).toURI().toURL() });
+            Blackboard.put(Blackboard.Keys.INIT, MixinBootstrap.VERSION);
+            Blackboard.put(Blackboard.Keys.TWEAKS, new ArrayList<Object>());
+            Blackboard.put(Blackboard.Keys.TWEAKCLASSES, new ArrayList<String>());
+            MixinEnvironment.init(Phase.DEFAULT);
+            for (int i = 2; i < args.length; i++) {
+                Mixins.addConfiguration(args[i]);
+            }
+            
+            JarFile jarFile = new JarFile(premixedJar);
+            try {
+                Manifest manifest = jarFile.getManifest();
+                for (Enumeration<JarEntry> iter = jarFile.entries(); iter.hasMoreElements();) {
+                    String name = iter.nextElement().getName();
+                    Attributes attributes = manifest.getAttributes(name);
+                    String fingerprint = attributes != null ? attributes.getValue(Constants.PREMIXED_ATTRIBUTE) : null;
+                    if (fingerprint != null) {
+                        Mixins.registerPremixedClass(name.substring(0, name.length() - 6).replace('/', '.'), fingerprint);
+                    }
+                }
+                
+                MixinTransformer transformer = new MixinTransformer();
+                for (String target : MixinPremixerTest.TARGETS) {
+                    InputStream in = jarFile.getInputStream(jarFile.getEntry(target.replace('.', '/') + ".class"));
+                    byte[] bytes = transformer.transform(target, target, IOUtils.toByteArray(in));
+                    in.close();
+                    Object instance = new TargetLoader(target, bytes).loadClass(target).newInstance();
+                    System.out.println(Load.RESULT + target + "=" + instance.getClass().getMethod("getMixed").invoke(instance));
+                }
+            } finally {
+                jarFile.close();
+            }
+        }
+    }
+    
+    /**
+     * Defines a single transformed class, delegating everything else
+     */
+    static final class TargetLoader extends ClassLoader {
+        
+        private final String name;
+        
+        private final byte[] bytes;
+        
+        private Class<?> definedClass;
+        
+        TargetLoader(String name, byte[] bytes) {
+            super(MixinPremixerTest.class.getClassLoader());
+            this.name = name;
+            this.bytes = bytes;
+        }
+        
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!this.name.equals(name)) {
+                return super.loadClass(name, resolve);
+            }
+            if (this.definedClass == null) {
+                this.definedClass = this.defineClass(name, this.bytes, 0, this.bytes.length);
+            }
+            return this.definedClass;
+        }
+    }
+}
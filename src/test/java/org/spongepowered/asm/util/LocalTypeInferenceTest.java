@@ -0,0 +1,305 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.spongepowered.asm.lib.Opcodes;
+import org.spongepowered.asm.lib.tree.AbstractInsnNode;
+import org.spongepowered.asm.lib.tree.ClassNode;
+import org.spongepowered.asm.lib.tree.FieldInsnNode;
+import org.spongepowered.asm.lib.tree.InsnList;
+import org.spongepowered.asm.lib.tree.InsnNode;
+import org.spongepowered.asm.lib.tree.IntInsnNode;
+import org.spongepowered.asm.lib.tree.JumpInsnNode;
+import org.spongepowered.asm.lib.tree.LabelNode;
+import org.spongepowered.asm.lib.tree.LdcInsnNode;
+import org.spongepowered.asm.lib.tree.LocalVariableNode;
+import org.spongepowered.asm.lib.tree.MethodInsnNode;
+import org.spongepowered.asm.lib.tree.MethodNode;
+import org.spongepowered.asm.lib.tree.TryCatchBlockNode;
+import org.spongepowered.asm.lib.tree.TypeInsnNode;
+import org.spongepowered.asm.lib.tree.VarInsnNode;
+
+/**
+ * Tests for local variable type inference
+ */
+public class LocalTypeInferenceTest {
+    
+    @Test
+    public void testReassignedBooleanArgument() {
+        // static void test(boolean arg) { if (arg) { arg = false; } use(arg); }
+        MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "test", "(Z)V", null, null);
+        LabelNode merge = new LabelNode();
+        method.instructions.add(new VarInsnNode(Opcodes.ILOAD, 0));
+        method.instructions.add(new JumpInsnNode(Opcodes.IFEQ, merge));
+        method.instructions.add(new InsnNode(Opcodes.ICONST_0));
+        method.instructions.add(new VarInsnNode(Opcodes.ISTORE, 0));
+        method.instructions.add(merge);
+        method.instructions.add(new VarInsnNode(Opcodes.ILOAD, 0));
+        method.instructions.add(new InsnNode(Opcodes.POP));
+        method.instructions.add(new InsnNode(Opcodes.RETURN));
+        method.maxLocals = 1;
+        method.maxStack = 1;
+        
+        List<LocalVariableNode> locals = LocalTypeInference.generateLocalVariableTable(LocalTypeInferenceTest.createClass(), method);
+        assertNotNull(locals);
+        
+        List<LocalVariableNode> arg = LocalTypeInferenceTest.getLocals(locals, 0);
+        assertEquals(1, arg.size());
+        assertEquals("I", arg.get(0).desc);
+        assertSame(method.instructions.getLast(), arg.get(0).end);
+    }
+    
+    @Test
+    public void testSubIntArgumentsAreInts() {
+        MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC, "test", "(BCSJ)V", null, null);
+        method.instructions.add(new InsnNode(Opcodes.RETURN));
+        method.maxLocals = 6;
+        
+        List<LocalVariableNode> locals = LocalTypeInference.generateLocalVariableTable(LocalTypeInferenceTest.createClass(), method);
+        assertNotNull(locals);
+        assertEquals("Ltest/Inference;", LocalTypeInferenceTest.getLocals(locals, 0).get(0).desc);
+        assertEquals("I", LocalTypeInferenceTest.getLocals(locals, 1).get(0).desc);
+        assertEquals("I", LocalTypeInferenceTest.getLocals(locals, 2).get(0).desc);
+        assertEquals("I", LocalTypeInferenceTest.getLocals(locals, 3).get(0).desc);
+        assertEquals("J", LocalTypeInferenceTest.getLocals(locals, 4).get(0).desc);
+    }
+    
+    @Test
+    public void testStoredReferenceProducers() {
+        MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "test", "([Ljava/lang/String;)V", null, null);
+        InsnList insns = method.instructions;
+        insns.add(new InsnNode(Opcodes.ACONST_NULL));
+        insns.add(new VarInsnNode(Opcodes.ASTORE, 1));
+        insns.add(new LdcInsnNode("constant"));
+        insns.add(new VarInsnNode(Opcodes.ASTORE, 2));
+        insns.add(new TypeInsnNode(Opcodes.NEW, "test/Foo"));
+        insns.add(new InsnNode(Opcodes.DUP));
+        insns.add(new TypeInsnNode(Opcodes.NEW, "test/Bar"));
+        insns.add(new InsnNode(Opcodes.DUP));
+        insns.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, "test/Bar", "<init>", "()V", false));
+        insns.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, "test/Foo", "<init>", "(Ltest/Bar;)V", false));
+        insns.add(new VarInsnNode(Opcodes.ASTORE, 3));
+        insns.add(new FieldInsnNode(Opcodes.GETSTATIC, "test/Foo", "instance", "Ltest/Baz;"));
+        insns.add(new TypeInsnNode(Opcodes.CHECKCAST, "test/Qux"));
+        insns.add(new VarInsnNode(Opcodes.ASTORE, 4));
+        insns.add(new InsnNode(Opcodes.ICONST_2));
+        insns.add(new IntInsnNode(Opcodes.NEWARRAY, Opcodes.T_LONG));
+        insns.add(new VarInsnNode(Opcodes.ASTORE, 5));
+        insns.add(new MethodInsnNode(Opcodes.INVOKESTATIC, "test/Foo", "create", "()Ltest/Baz;", false));
+        insns.add(new VarInsnNode(Opcodes.ASTORE, 6));
+        insns.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        insns.add(new InsnNode(Opcodes.ICONST_1));
+        insns.add(new InsnNode(Opcodes.AALOAD));
+        insns.add(new VarInsnNode(Opcodes.ASTORE, 7));
+        insns.add(new InsnNode(Opcodes.RETURN));
+        method.maxLocals = 8;
+        method.maxStack = 4;
+        
+        List<LocalVariableNode> locals = LocalTypeInference.generateLocalVariableTable(LocalTypeInferenceTest.createClass(), method);
+        assertNotNull(locals);
+        assertEquals("Lnull;", LocalTypeInferenceTest.getLocals(locals, 1).get(0).desc);
+        assertEquals("Ljava/lang/String;", LocalTypeInferenceTest.getLocals(locals, 2).get(0).desc);
+        assertEquals("Ltest/Foo;", LocalTypeInferenceTest.getLocals(locals, 3).get(0).desc);
+        assertEquals("Ltest/Qux;", LocalTypeInferenceTest.getLocals(locals, 4).get(0).desc);
+        assertEquals("[J", LocalTypeInferenceTest.getLocals(locals, 5).get(0).desc);
+        assertEquals("Ltest/Baz;", LocalTypeInferenceTest.getLocals(locals, 6).get(0).desc);
+        assertEquals("Ljava/lang/String;", LocalTypeInferenceTest.getLocals(locals, 7).get(0).desc);
+    }
+    
+    @Test
+    public void testConstructorWithoutDupFallsBack() {
+        // The object created by NEW is consumed by <init>, the ASTORE stores "this"
+        MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC, "test", "()V", null, null);
+        method.instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        method.instructions.add(new TypeInsnNode(Opcodes.NEW, "test/Foo"));
+        method.instructions.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, "test/Foo", "<init>", "()V", false));
+        method.instructions.add(new VarInsnNode(Opcodes.ASTORE, 1));
+        method.instructions.add(new InsnNode(Opcodes.RETURN));
+        method.maxLocals = 2;
+        method.maxStack = 2;
+        
+        assertNull(LocalTypeInference.generateLocalVariableTable(LocalTypeInferenceTest.createClass(), method));
+    }
+    
+    @Test
+    public void testSuperConstructorFallsBack() {
+        // Nothing is left on the stack by super(), the ASTORE stores the argument
+        MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC, "<init>", "(Ltest/Foo;)V", null, null);
+        method.instructions.add(new VarInsnNode(Opcodes.ALOAD, 1));
+        method.instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        method.instructions.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false));
+        method.instructions.add(new VarInsnNode(Opcodes.ASTORE, 2));
+        method.instructions.add(new InsnNode(Opcodes.RETURN));
+        method.maxLocals = 3;
+        method.maxStack = 2;
+        
+        assertNull(LocalTypeInference.generateLocalVariableTable(LocalTypeInferenceTest.createClass(), method));
+    }
+    
+    @Test
+    public void testJoinPointMerges() {
+        // if (arg) { a = null; b = 1; } else { a = "x"; b = "y"; } return;
+        MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "test", "(Z)V", null, null);
+        LabelNode otherwise = new LabelNode(), merge = new LabelNode();
+        InsnList insns = method.instructions;
+        insns.add(new VarInsnNode(Opcodes.ILOAD, 0));
+        insns.add(new JumpInsnNode(Opcodes.IFEQ, otherwise));
+        insns.add(new InsnNode(Opcodes.ACONST_NULL));
+        insns.add(new VarInsnNode(Opcodes.ASTORE, 1));
+        insns.add(new InsnNode(Opcodes.ICONST_1));
+        insns.add(new VarInsnNode(Opcodes.ISTORE, 2));
+        insns.add(new JumpInsnNode(Opcodes.GOTO, merge));
+        insns.add(otherwise);
+        insns.add(new LdcInsnNode("x"));
+        insns.add(new VarInsnNode(Opcodes.ASTORE, 1));
+        insns.add(new LdcInsnNode("y"));
+        insns.add(new VarInsnNode(Opcodes.ASTORE, 2));
+        insns.add(merge);
+        AbstractInsnNode ret = new InsnNode(Opcodes.RETURN);
+        insns.add(ret);
+        method.maxLocals = 3;
+        method.maxStack = 1;
+        
+        List<LocalVariableNode> locals = LocalTypeInference.generateLocalVariableTable(LocalTypeInferenceTest.createClass(), method);
+        assertNotNull(locals);
+        
+        // null merged with String is a String
+        LocalVariableNode atMerge = LocalTypeInferenceTest.getLocalAt(method, locals, 1, ret);
+        assertNotNull(atMerge);
+        assertEquals("Ljava/lang/String;", atMerge.desc);
+        
+        // int merged with String is not a usable local
+        assertNull(LocalTypeInferenceTest.getLocalAt(method, locals, 2, ret));
+        assertEquals("I", LocalTypeInferenceTest.getLocals(locals, 2).get(0).desc);
+    }
+    
+    @Test
+    public void testExceptionHandlers() {
+        // try { i = 1; throwing(); } catch (Ex e) { } catch (Throwable t) { }
+        MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "test", "()V", null, null);
+        LabelNode start = new LabelNode(), end = new LabelNode(), handler = new LabelNode(), catchAll = new LabelNode();
+        InsnList insns = method.instructions;
+        insns.add(new InsnNode(Opcodes.ICONST_1));
+        insns.add(new VarInsnNode(Opcodes.ISTORE, 0));
+        insns.add(start);
+        insns.add(new MethodInsnNode(Opcodes.INVOKESTATIC, "test/Foo", "throwing", "()V", false));
+        insns.add(end);
+        insns.add(new InsnNode(Opcodes.RETURN));
+        insns.add(handler);
+        insns.add(new VarInsnNode(Opcodes.ASTORE, 1));
+        insns.add(new InsnNode(Opcodes.RETURN));
+        insns.add(catchAll);
+        insns.add(new VarInsnNode(Opcodes.ASTORE, 1));
+        AbstractInsnNode ret = new InsnNode(Opcodes.RETURN);
+        insns.add(ret);
+        method.tryCatchBlocks.add(new TryCatchBlockNode(start, end, handler, "test/Ex"));
+        method.tryCatchBlocks.add(new TryCatchBlockNode(start, end, catchAll, null));
+        method.maxLocals = 2;
+        method.maxStack = 1;
+        
+        List<LocalVariableNode> locals = LocalTypeInference.generateLocalVariableTable(LocalTypeInferenceTest.createClass(), method);
+        assertNotNull(locals);
+        List<LocalVariableNode> caught = LocalTypeInferenceTest.getLocals(locals, 1);
+        assertEquals(2, caught.size());
+        assertEquals("Ltest/Ex;", caught.get(0).desc);
+        assertEquals("Ljava/lang/Throwable;", caught.get(1).desc);
+        
+        // Locals stored before the protected range are live in the handlers
+        LocalVariableNode counter = LocalTypeInferenceTest.getLocalAt(method, locals, 0, ret);
+        assertNotNull(counter);
+        assertEquals("I", counter.desc);
+    }
+    
+    @Test
+    public void testUnsupportedInsnsFallBack() {
+        // Value produced by stack manipulation
+        MethodNode dup = new MethodNode(Opcodes.ACC_PUBLIC, "test", "()V", null, null);
+        dup.instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        dup.instructions.add(new InsnNode(Opcodes.DUP));
+        dup.instructions.add(new VarInsnNode(Opcodes.ASTORE, 1));
+        dup.instructions.add(new VarInsnNode(Opcodes.ASTORE, 2));
+        dup.instructions.add(new InsnNode(Opcodes.RETURN));
+        dup.maxLocals = 3;
+        dup.maxStack = 2;
+        assertNull(LocalTypeInference.generateLocalVariableTable(LocalTypeInferenceTest.createClass(), dup));
+        
+        // Subroutine
+        MethodNode jsr = new MethodNode(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "test", "()V", null, null);
+        LabelNode subroutine = new LabelNode();
+        jsr.instructions.add(new JumpInsnNode(Opcodes.JSR, subroutine));
+        jsr.instructions.add(new InsnNode(Opcodes.RETURN));
+        jsr.instructions.add(subroutine);
+        jsr.instructions.add(new VarInsnNode(Opcodes.ASTORE, 0));
+        jsr.instructions.add(new VarInsnNode(Opcodes.RET, 0));
+        jsr.maxLocals = 1;
+        jsr.maxStack = 1;
+        assertNull(LocalTypeInference.generateLocalVariableTable(LocalTypeInferenceTest.createClass(), jsr));
+    }
+    
+    /**
+     * Find the local in the specified slot whose range covers the insn
+     */
+    private static LocalVariableNode getLocalAt(MethodNode method, List<LocalVariableNode> locals, int index, AbstractInsnNode insn) {
+        int pos = method.instructions.indexOf(insn);
+        LocalVariableNode found = null;
+        for (LocalVariableNode local : LocalTypeInferenceTest.getLocals(locals, index)) {
+            if (method.instructions.indexOf(local.start) <= pos && method.instructions.indexOf(local.end) > pos) {
+                assertTrue("Overlapping locals in slot " + index, found == null);
+                found = local;
+            }
+        }
+        return found;
+    }
+    
+    private static List<LocalVariableNode> getLocals(List<LocalVariableNode> locals, int index) {
+        List<LocalVariableNode> matching = new ArrayList<LocalVariableNode>();
+        for (LocalVariableNode local : locals) {
+            if (local.index == index) {
+                matching.add(local);
+            }
+        }
+        return matching;
+    }
+    
+    private static ClassNode createClass() {
+        ClassNode classNode = new ClassNode();
+        classNode.version = Opcodes.V1_6;
+        classNode.access = Opcodes.ACC_PUBLIC;
+        classNode.name = "test/Inference";
+        classNode.superName = "java/lang/Object";
+        return classNode;
+    }
+    
+}
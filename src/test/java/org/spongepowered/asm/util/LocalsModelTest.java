@@ -0,0 +1,320 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.spongepowered.asm.lib.ClassReader;
+import org.spongepowered.asm.lib.Opcodes;
+import org.spongepowered.asm.lib.Type;
+import org.spongepowered.asm.lib.tree.AbstractInsnNode;
+import org.spongepowered.asm.lib.tree.ClassNode;
+import org.spongepowered.asm.lib.tree.FrameNode;
+import org.spongepowered.asm.lib.tree.InsnList;
+import org.spongepowered.asm.lib.tree.InsnNode;
+import org.spongepowered.asm.lib.tree.LabelNode;
+import org.spongepowered.asm.lib.tree.LineNumberNode;
+import org.spongepowered.asm.lib.tree.LocalVariableNode;
+import org.spongepowered.asm.lib.tree.MethodNode;
+import org.spongepowered.asm.lib.tree.VarInsnNode;
+import org.spongepowered.asm.mixin.injection.struct.Target;
+import org.spongepowered.asm.mixin.transformer.ClassInfo;
+import org.spongepowered.asm.mixin.transformer.ClassInfo.FrameData;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Tests that the locals model matches the linear frame walk it replaced
+ */
+public class LocalsModelTest {
+    
+    /**
+     * Methods with branches, loops, wide locals and exception handlers
+     */
+    static final class Fixture {
+        
+        private int field;
+        
+        int branches(int a, boolean flag) {
+            int b = a * 2;
+            if (flag) {
+                long c = b + 1L;
+                b = (int)c;
+            } else {
+                double d = a;
+                b -= (int)d;
+            }
+            int e = b;
+            for (int i = 0; i < a; i++) {
+                e += i;
+            }
+            return e;
+        }
+        
+        int handlers(int[] values, int index) {
+            int total = 0;
+            try {
+                total = values[index];
+                this.field = total;
+            } catch (ArrayIndexOutOfBoundsException ex) {
+                total = -1;
+            } finally {
+                total++;
+            }
+            return total;
+        }
+        
+        static long nested(long seed, int count) {
+            long result = seed;
+            for (int i = 0; i < count; i++) {
+                int j = i;
+                while (j > 0) {
+                    if ((j & 1) == 0) {
+                        result += j;
+                    } else {
+                        long k = result * 3;
+                        result = k - j;
+                    }
+                    j--;
+                }
+            }
+            return result;
+        }
+        
+    }
+    
+    private static ClassNode classNode;
+    
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        InputStream in = LocalsModelTest.class.getResourceAsStream("LocalsModelTest$Fixture.class");
+        try {
+            LocalsModelTest.classNode = new ClassNode();
+            new ClassReader(ByteStreams.toByteArray(in)).accept(LocalsModelTest.classNode, ClassReader.EXPAND_FRAMES);
+        } finally {
+            in.close();
+        }
+        
+        // Register the metadata directly since there is no class loader to read it from
+        java.lang.reflect.Method fromClassNode = ClassInfo.class.getDeclaredMethod("fromClassNode", ClassNode.class);
+        fromClassNode.setAccessible(true);
+        fromClassNode.invoke(null, LocalsModelTest.classNode);
+    }
+    
+    @Test
+    public void testParityWithFrameWalk() {
+        int checked = 0;
+        for (MethodNode method : LocalsModelTest.classNode.methods) {
+            if (method.name.startsWith("<")) {
+                continue;
+            }
+            LocalsModel model = new LocalsModel(LocalsModelTest.classNode, method);
+            for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
+                AbstractInsnNode insn = iter.next();
+                LocalsModelTest.assertLocalsEqual(method.name + " at " + method.instructions.indexOf(insn),
+                        LocalsModelTest.getLocalsByFrameWalk(LocalsModelTest.classNode, method, insn), model.getLocalsAt(insn));
+                checked++;
+            }
+        }
+        assertTrue(checked > 0);
+    }
+    
+    @Test
+    public void testHandlerLocals() {
+        MethodNode method = LocalsModelTest.getMethod("handlers");
+        AbstractInsnNode handler = method.tryCatchBlocks.get(0).handler;
+        LocalVariableNode[] locals = new LocalsModel(LocalsModelTest.classNode, method).getLocalsAt(handler);
+        assertNotNull(locals[0]);
+        assertNotNull(locals[1]);
+        assertNotNull(locals[2]);
+        assertNotNull(locals[3]);
+    }
+    
+    @Test
+    public void testInsertedCodeWithoutLocalsKeepsModel() {
+        MethodNode method = LocalsModelTest.copy(LocalsModelTest.getMethod("branches"));
+        LocalsModel model = new LocalsModel(LocalsModelTest.classNode, method);
+        AbstractInsnNode position = LocalsModelTest.findStore(method, 0);
+        
+        InsnList injected = new InsnList();
+        injected.add(new InsnNode(Opcodes.NOP));
+        injected.add(new LabelNode());
+        method.instructions.insertBefore(position, injected);
+        
+        assertTrue(model.isCurrent());
+        for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
+            AbstractInsnNode insn = iter.next();
+            LocalsModelTest.assertLocalsEqual("branches at " + method.instructions.indexOf(insn),
+                    LocalsModelTest.getLocalsByFrameWalk(LocalsModelTest.classNode, method, insn), model.getLocalsAt(insn));
+        }
+    }
+    
+    @Test
+    public void testInsertedStoreRebuildsModel() {
+        MethodNode method = LocalsModelTest.copy(LocalsModelTest.getMethod("branches"));
+        Target target = new Target(LocalsModelTest.classNode, method);
+        
+        // Query a position before the first local is stored, which builds the model
+        AbstractInsnNode store = LocalsModelTest.findStore(method, 0);
+        VarInsnNode storeInsn = (VarInsnNode)store;
+        AbstractInsnNode position = store.getPrevious();
+        assertNull(target.getLocalsAt(position)[storeInsn.var]);
+        
+        // Inject a store to the same local at the start of the method
+        InsnList injected = new InsnList();
+        injected.add(new InsnNode(Opcodes.ICONST_0));
+        injected.add(new VarInsnNode(Opcodes.ISTORE, storeInsn.var));
+        method.instructions.insert(injected);
+        
+        LocalVariableNode[] expected = LocalsModelTest.getLocalsByFrameWalk(LocalsModelTest.classNode, method, position);
+        assertNotNull(expected[storeInsn.var]);
+        LocalsModelTest.assertLocalsEqual("after injection", expected, target.getLocalsAt(position));
+    }
+    
+    @Test
+    public void testRemovedInsnInvalidatesModel() {
+        MethodNode method = LocalsModelTest.copy(LocalsModelTest.getMethod("branches"));
+        LocalsModel model = new LocalsModel(LocalsModelTest.classNode, method);
+        method.instructions.remove(LocalsModelTest.findStore(method, 1));
+        assertFalse(model.isCurrent());
+    }
+    
+    private static MethodNode getMethod(String name) {
+        for (MethodNode method : LocalsModelTest.classNode.methods) {
+            if (method.name.equals(name)) {
+                return method;
+            }
+        }
+        throw new AssertionError("Fixture method " + name + " not found");
+    }
+    
+    /**
+     * Copy a fixture method so that tests can modify it, the copy shares the
+     * name and descriptor of the original so the class metadata still applies
+     */
+    private static MethodNode copy(MethodNode method) {
+        MethodNode copy = new MethodNode(method.access, method.name, method.desc, method.signature, null);
+        method.accept(copy);
+        return copy;
+    }
+    
+    private static AbstractInsnNode findStore(MethodNode method, int ordinal) {
+        int found = 0;
+        for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
+            AbstractInsnNode insn = iter.next();
+            if (insn.getOpcode() >= Opcodes.ISTORE && insn.getOpcode() <= Opcodes.ASTORE && found++ == ordinal) {
+                return insn;
+            }
+        }
+        throw new AssertionError("Store " + ordinal + " not found in " + method.name);
+    }
+    
+    private static void assertLocalsEqual(String message, LocalVariableNode[] expected, LocalVariableNode[] actual) {
+        assertEquals(message, expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] == null || actual[i] == null) {
+                assertEquals(message + " local " + i, expected[i], actual[i]);
+                continue;
+            }
+            assertEquals(message + " local " + i, expected[i].name, actual[i].name);
+            assertEquals(message + " local " + i, expected[i].desc, actual[i].desc);
+            assertEquals(message + " local " + i, expected[i].index, actual[i].index);
+        }
+    }
+    
+    /**
+     * The linear frame walk which {@link LocalsModel} replaced, walks the
+     * method from the start up to the specified node on every call
+     */
+    private static LocalVariableNode[] getLocalsByFrameWalk(ClassNode classNode, MethodNode method, AbstractInsnNode node) {
+        for (int i = 0; i < 3 && (node instanceof LabelNode || node instanceof LineNumberNode) && node.getNext() != null; i++) {
+            node = node.getNext();
+        }
+        
+        List<FrameData> frames = ClassInfo.forName(classNode.name).findMethod(method).getFrames();
+        LocalVariableNode[] frame = new LocalVariableNode[method.maxLocals];
+        int local = 0, index = 0;
+        if ((method.access & Opcodes.ACC_STATIC) == 0) {
+            frame[local++] = new LocalVariableNode("this", classNode.name, null, null, null, 0);
+        }
+        for (Type argType : Type.getArgumentTypes(method.desc)) {
+            frame[local] = new LocalVariableNode("arg" + index++, argType.toString(), null, null, null, local);
+            local += argType.getSize();
+        }
+        
+        int initialFrameSize = local;
+        int frameIndex = -1, locals = 0;
+        for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
+            AbstractInsnNode insn = iter.next();
+            if (insn instanceof FrameNode) {
+                frameIndex++;
+                FrameNode frameNode = (FrameNode)insn;
+                FrameData frameData = frameIndex < frames.size() ? frames.get(frameIndex) : null;
+                locals = frameData != null && frameData.type == Opcodes.F_FULL ? Math.max(locals, frameNode.local.size()) : frameNode.local.size();
+                for (int localPos = 0, framePos = 0; framePos < frame.length; framePos++, localPos++) {
+                    Object localType = (localPos < frameNode.local.size()) ? frameNode.local.get(localPos) : null;
+                    if (localType instanceof String) {
+                        frame[framePos] = Locals.getLocalVariableAt(classNode, method, node, framePos);
+                    } else if (localType instanceof Integer) {
+                        boolean is64bitValue = localType == Opcodes.DOUBLE || localType == Opcodes.LONG;
+                        if (localType == Opcodes.UNINITIALIZED_THIS || localType == Opcodes.NULL) {
+                            frame[framePos] = null;
+                        } else if (localType == Opcodes.INTEGER || localType == Opcodes.FLOAT || is64bitValue) {
+                            frame[framePos] = Locals.getLocalVariableAt(classNode, method, node, framePos);
+                            if (is64bitValue) {
+                                frame[++framePos] = null;
+                            }
+                        }
+                    } else if (localType == null && framePos >= initialFrameSize && framePos >= locals && locals > 0) {
+                        frame[framePos] = null;
+                    }
+                }
+            } else if (insn instanceof VarInsnNode) {
+                VarInsnNode varNode = (VarInsnNode)insn;
+                frame[varNode.var] = Locals.getLocalVariableAt(classNode, method, node, varNode.var);
+            } else if (insn == node) {
+                break;
+            }
+        }
+        
+        for (int l = 0; l < frame.length; l++) {
+            if (frame[l] != null && frame[l].desc == null) {
+                frame[l] = null;
+            }
+        }
+        return frame;
+    }
+    
+}
@@ -0,0 +1,139 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.tools.agent;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the memory-mapped spill file used by the hot-swap agent
+ */
+public class MappedFileBytecodeStoreTest {
+    
+    private static final int SEGMENT_SIZE = 256;
+    
+    private File file;
+    
+    private MappedFileBytecodeStore store;
+    
+    @Before
+    public void setUp() throws IOException {
+        this.file = File.createTempFile("mixin-spill", ".bin");
+        this.store = new MappedFileBytecodeStore(this.file, MappedFileBytecodeStoreTest.SEGMENT_SIZE);
+    }
+    
+    @After
+    public void tearDown() {
+        this.store.close();
+        this.file.delete();
+    }
+    
+    @Test
+    public void testRoundTripAcrossSegments() {
+        for (int i = 0; i < 20; i++) {
+            this.store.put("Class" + i, MappedFileBytecodeStoreTest.bytes(100, i));
+        }
+        this.store.put("Large", MappedFileBytecodeStoreTest.bytes(1000, 7));
+        this.store.put("Small", MappedFileBytecodeStoreTest.bytes(10, 3));
+        
+        for (int i = 0; i < 20; i++) {
+            assertArrayEquals(MappedFileBytecodeStoreTest.bytes(100, i), this.store.get("Class" + i));
+        }
+        assertArrayEquals(MappedFileBytecodeStoreTest.bytes(1000, 7), this.store.get("Large"));
+        assertArrayEquals(MappedFileBytecodeStoreTest.bytes(10, 3), this.store.get("Small"));
+        assertNull(this.store.get("Missing"));
+        assertEquals(22, this.store.size());
+        assertEquals(20 * 100 + 1000 + 10, this.store.getBytecodeSize());
+    }
+    
+    @Test
+    public void testReplacedSlotsAreReused() {
+        this.store.put("A", MappedFileBytecodeStoreTest.bytes(100, 1));
+        this.store.put("B", MappedFileBytecodeStoreTest.bytes(100, 2));
+        assertEquals(200, this.store.getAllocatedSize());
+        
+        // Smaller bytecode is written over the previous slot
+        this.store.put("A", MappedFileBytecodeStoreTest.bytes(90, 3));
+        assertEquals(200, this.store.getAllocatedSize());
+        assertArrayEquals(MappedFileBytecodeStoreTest.bytes(90, 3), this.store.get("A"));
+        
+        // Larger bytecode moves, and the next class which fits takes the freed slot
+        this.store.put("A", MappedFileBytecodeStoreTest.bytes(150, 4));
+        assertEquals(350, this.store.getAllocatedSize());
+        this.store.put("C", MappedFileBytecodeStoreTest.bytes(80, 5));
+        assertEquals(350, this.store.getAllocatedSize());
+        
+        assertArrayEquals(MappedFileBytecodeStoreTest.bytes(150, 4), this.store.get("A"));
+        assertArrayEquals(MappedFileBytecodeStoreTest.bytes(100, 2), this.store.get("B"));
+        assertArrayEquals(MappedFileBytecodeStoreTest.bytes(80, 5), this.store.get("C"));
+        assertEquals(150 + 100 + 80, this.store.getBytecodeSize());
+        
+        // Re-recording the same classes does not grow the file
+        for (int i = 0; i < 10; i++) {
+            this.store.put("A", MappedFileBytecodeStoreTest.bytes(150, i));
+            this.store.put("B", MappedFileBytecodeStoreTest.bytes(100, i));
+        }
+        assertEquals(350, this.store.getAllocatedSize());
+    }
+    
+    @Test
+    public void testClose() {
+        this.store.put("A", MappedFileBytecodeStoreTest.bytes(100, 1));
+        this.store.close();
+        this.store.close();
+        
+        try {
+            this.store.get("A");
+            fail("Expected the closed store to reject reads");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        try {
+            this.store.put("B", MappedFileBytecodeStoreTest.bytes(100, 2));
+            fail("Expected the closed store to reject writes");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        assertEquals(0, this.store.size());
+    }
+    
+    private static byte[] bytes(int length, int seed) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte)(i * 31 + seed);
+        }
+        return bytes;
+    }
+    
+}
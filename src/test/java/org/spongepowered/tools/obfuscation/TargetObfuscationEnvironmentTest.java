@@ -0,0 +1,167 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.tools.obfuscation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongepowered.asm.mixin.refmap.ReferenceMapper;
+import org.spongepowered.asm.obfuscation.SrgContainer;
+import org.spongepowered.asm.obfuscation.SrgField;
+import org.spongepowered.asm.obfuscation.SrgMethod;
+import org.spongepowered.tools.obfuscation.interfaces.IMixinAnnotationProcessor;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Tests for the binary index of the SRG mappings
+ */
+public class TargetObfuscationEnvironmentTest {
+    
+    private static final String MAPPINGS = "CL: a/Foo b/Bar\nFD: a/Foo/field b/Bar/g\nMD: a/Foo/method (La/Foo;)V b/Bar/h (Lb/Bar;)V\n";
+    
+    private File dir;
+    
+    private File srgFile;
+    
+    private File indexDir;
+    
+    private final Map<String, String> options = new HashMap<String, String>();
+    
+    private final List<String> messages = new ArrayList<String>();
+    
+    @Before
+    public void setUp() throws IOException {
+        this.dir = Files.createTempDir();
+        this.srgFile = new File(this.dir, "mappings.srg");
+        this.indexDir = new File(this.dir, "index");
+        Files.write(TargetObfuscationEnvironmentTest.MAPPINGS, this.srgFile, Charsets.UTF_8);
+        this.options.put(SupportedOptions.REOBF_SRG_FILE, this.srgFile.getAbsolutePath());
+        this.options.put(SupportedOptions.SRG_INDEX_DIR, this.indexDir.getAbsolutePath());
+    }
+    
+    @After
+    public void tearDown() {
+        TargetObfuscationEnvironmentTest.delete(this.dir);
+    }
+    
+    @Test
+    public void testIndexRoundTrip() throws IOException {
+        SrgContainer srgs = new SrgContainer();
+        srgs.readSrg(this.srgFile);
+        File index = new File(this.dir, "mappings.srgx");
+        srgs.writeIndex(index);
+        
+        SrgContainer indexed = new SrgContainer();
+        indexed.readSrg(index);
+        assertEquals("b/Bar", indexed.getClassMapping("a/Foo"));
+        assertEquals("b/Bar/g", indexed.getFieldMapping(new SrgField("a/Foo/field")).getMapping());
+        SrgMethod method = indexed.getMethodMapping(new SrgMethod("a/Foo/method", "(La/Foo;)V"));
+        assertEquals("b/Bar/h", method.getName());
+        assertEquals("(Lb/Bar;)V", method.getDesc());
+        assertNull(indexed.getClassMapping("a/Missing"));
+    }
+    
+    @Test
+    public void testIndexWrittenAndUsed() {
+        TargetObfuscationEnvironment first = this.createEnvironment();
+        assertEquals("b/Bar", first.getObfClass("a/Foo"));
+        File index = first.getSrgIndexFile();
+        assertTrue(index.isFile());
+        
+        this.messages.clear();
+        TargetObfuscationEnvironment second = this.createEnvironment();
+        assertEquals("b/Bar", second.getObfClass("a/Foo"));
+        assertNotNull(second.getObfField("a/Foo/field"));
+        assertTrue(this.messages.toString(), this.messages.get(0).contains(index.getAbsolutePath()));
+    }
+    
+    @Test
+    public void testIndexInvalidatedWhenMappingsChange() throws IOException {
+        TargetObfuscationEnvironment first = this.createEnvironment();
+        assertNull(first.getObfClass("a/Baz"));
+        File index = first.getSrgIndexFile();
+        
+        Files.append("CL: a/Baz b/Qux\n", this.srgFile, Charsets.UTF_8);
+        TargetObfuscationEnvironment second = this.createEnvironment();
+        assertNotEquals(index, second.getSrgIndexFile());
+        assertEquals("b/Qux", second.getObfClass("a/Baz"));
+        assertTrue(second.getSrgIndexFile().isFile());
+    }
+    
+    @Test
+    public void testIndexNotWrittenForIncompleteMappings() {
+        this.options.put(SupportedOptions.REOBF_EXTRA_SRG_FILES, new File(this.dir, "missing.srg").getAbsolutePath());
+        TargetObfuscationEnvironment environment = this.createEnvironment();
+        assertEquals("b/Bar", environment.getObfClass("a/Foo"));
+        assertFalse(environment.getSrgIndexFile().exists());
+    }
+    
+    private TargetObfuscationEnvironment createEnvironment() {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getOption".equals(method.getName())) {
+                    return TargetObfuscationEnvironmentTest.this.options.get(args[0]);
+                } else if ("printMessage".equals(method.getName())) {
+                    TargetObfuscationEnvironmentTest.this.messages.add(String.valueOf(args[1]));
+                }
+                return null;
+            }
+        };
+        IMixinAnnotationProcessor ap = (IMixinAnnotationProcessor)Proxy.newProxyInstance(this.getClass().getClassLoader(),
+                new Class<?>[] { IMixinAnnotationProcessor.class }, handler);
+        return new TargetObfuscationEnvironment(ap, ObfuscationType.SRG, new ReferenceMapper());
+    }
+    
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                TargetObfuscationEnvironmentTest.delete(child);
+            }
+        }
+        file.delete();
+    }
+    
+}